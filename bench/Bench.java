@@ -0,0 +1,67 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * A small benchmark runner: warm-up iterations, then measured iterations of a fixed number of
+ * operations each. Reports the median time per operation and the bytes allocated per operation
+ * by the measuring thread, which is what the allocation-rate column of a GC profiler shows.
+ * Results are handed to a sink so the JIT cannot drop the work.
+ */
+final class Bench {
+
+    interface Op {
+        Object run(int i);
+    }
+
+    record Result(String name, double nanosPerOp, double bytesPerOp) {
+    }
+
+    static volatile Object sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int warmups;
+    private final int iterations;
+
+    Bench(int warmups, int iterations) {
+        this.warmups = warmups;
+        this.iterations = iterations;
+    }
+
+    Result run(String name, int opsPerIteration, Op op) {
+        return run(name, opsPerIteration, () -> { }, op);
+    }
+
+    /**
+     * @param setup runs before every iteration and is not measured
+     */
+    Result run(String name, int opsPerIteration, Runnable setup, Op op) {
+        long threadId = Thread.currentThread().threadId();
+        for (int w = 0; w < warmups; w++) {
+            setup.run();
+            iterate(opsPerIteration, op);
+        }
+        long[] nanos = new long[iterations];
+        long bytes = 0;
+        for (int it = 0; it < iterations; it++) {
+            setup.run();
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            iterate(opsPerIteration, op);
+            nanos[it] = System.nanoTime() - start;
+            bytes += THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        }
+        Arrays.sort(nanos);
+        return new Result(name, (double) nanos[iterations / 2] / opsPerIteration,
+                (double) bytes / iterations / opsPerIteration);
+    }
+
+    private static void iterate(int ops, Op op) {
+        Object last = null;
+        for (int i = 0; i < ops; i++) {
+            last = op.run(i);
+        }
+        sink = last;
+    }
+}
@@ -0,0 +1,175 @@
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.control.ListView;
+import javafx.stage.Stage;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scrolls a large cart up and down and checks that cart cells neither leak listeners nor
+ * build new cells while scrolling.
+ * <p>
+ * Every cart item gets a quantity property that counts its live listeners. After scrolling,
+ * each item may carry at most one listener (from the cell showing it), the total may not
+ * exceed the number of cells, no cell may have been built while scrolling, and a scroll step
+ * must allocate less than building one cell's nodes does. Exits with status 1 otherwise.
+ * Needs a display.
+ * <p>
+ * Usage: {@code java CartCellListenerCheck [items] [passes]}
+ */
+public class CartCellListenerCheck {
+
+    /** A quantity property that knows how many listeners are attached to it. */
+    static final class CountingIntegerProperty extends SimpleIntegerProperty {
+        final AtomicInteger listeners = new AtomicInteger();
+
+        CountingIntegerProperty(int value) {
+            super(value);
+        }
+
+        @Override
+        public void addListener(ChangeListener<? super Number> listener) {
+            listeners.incrementAndGet();
+            super.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(ChangeListener<? super Number> listener) {
+            listeners.decrementAndGet();
+            super.removeListener(listener);
+        }
+
+        @Override
+        public void addListener(InvalidationListener listener) {
+            listeners.incrementAndGet();
+            super.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(InvalidationListener listener) {
+            listeners.decrementAndGet();
+            super.removeListener(listener);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        List<JECRC_FoodsApp.CartItem> items = new ArrayList<>(count);
+        for (JECRC_FoodsApp.Product p : SyntheticCatalogue.generate(count, 42)) {
+            JECRC_FoodsApp.CartItem item = new JECRC_FoodsApp.CartItem(p);
+            item.quantity = new CountingIntegerProperty(1 + items.size() % 5);
+            items.add(item);
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        boolean[] ok = new boolean[1];
+        Platform.startup(() -> {
+            try {
+                ok[0] = run(items, passes);
+            } finally {
+                done.countDown();
+            }
+        });
+        done.await();
+        Platform.exit();
+        System.exit(ok[0] ? 0 : 1);
+    }
+
+    private static boolean run(List<JECRC_FoodsApp.CartItem> items, int passes) {
+        AtomicInteger cellsCreated = new AtomicInteger();
+        ListView<JECRC_FoodsApp.CartItem> list = new ListView<>();
+        list.setCellFactory(view -> {
+            cellsCreated.incrementAndGet();
+            return new CartItemCell(product -> { });
+        });
+        list.getItems().setAll(items);
+
+        Stage stage = new Stage();
+        stage.setScene(new Scene(list, 420, 600));
+        stage.show();
+        list.layout();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        int cellsBefore = 0;
+        long allocatedBefore = 0;
+        for (int pass = 0; pass <= passes; pass++) {
+            if (pass == 1) {
+                // The first pass warms up caches and lets the view settle on its cell count
+                cellsBefore = cellsCreated.get();
+                allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            }
+            for (int i = 0; i < items.size(); i += 3) {
+                list.scrollTo(i);
+                list.layout();
+            }
+            for (int i = items.size() - 1; i >= 0; i -= 3) {
+                list.scrollTo(i);
+                list.layout();
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        int newCells = cellsCreated.get() - cellsBefore;
+
+        int total = 0;
+        int worst = 0;
+        for (JECRC_FoodsApp.CartItem item : items) {
+            int live = ((CountingIntegerProperty) item.quantity).listeners.get();
+            total += live;
+            worst = Math.max(worst, live);
+        }
+        stage.close();
+
+        int steps = passes * 2 * ((items.size() + 2) / 3);
+        long perStep = allocated / steps;
+        long perCell = cellGraphBytes(threads, threadId);
+        System.out.printf("items=%d cells=%d new cells while scrolling=%d%n", items.size(), cellsCreated.get(), newCells);
+        System.out.printf("live quantity listeners=%d, most on one item=%d%n", total, worst);
+        System.out.printf("allocated on the FX thread: %.1f KB per scroll step, %.1f KB to build one cell%n",
+                perStep / 1024.0, perCell / 1024.0);
+
+        boolean ok = check(total > 0, "cells listen to the items they show");
+        ok &= check(worst <= 1, "at most one listener per cart item");
+        ok &= check(total <= cellsCreated.get(), "no more listeners than cells");
+        ok &= check(newCells == 0, "no cells built while scrolling");
+        // Each step rebinds a few cells; building even one cell's nodes again would cost more
+        ok &= check(perStep < perCell, "a scroll step allocates less than one cell's nodes");
+        return ok;
+    }
+
+    /**
+     * Bytes allocated on this thread to build one cell with its nodes and their skins, after a
+     * few warm-up builds.
+     */
+    private static long cellGraphBytes(com.sun.management.ThreadMXBean threads, long threadId) {
+        Group root = new Group();
+        new Scene(root);
+        int builds = 20;
+        long before = 0;
+        for (int i = 0; i < 2 * builds; i++) {
+            if (i == builds) {
+                before = threads.getThreadAllocatedBytes(threadId);
+            }
+            CartItemCell cell = new CartItemCell(product -> { });
+            root.getChildren().setAll(cell);
+            cell.applyCss();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / builds;
+    }
+
+    private static boolean check(boolean condition, String what) {
+        System.out.println((condition ? "  ok    " : "  FAIL  ") + what);
+        return condition;
+    }
+}
@@ -0,0 +1,135 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Compares the heap footprint and scan speed of the object catalogue ({@code List<Product>})
+ * with {@link ColumnarCatalogue}, then the footprint of the app's catalogue with each: a
+ * {@link CatalogueModel} with the search index listening from before the load, as the app sets
+ * it up, and the grid showing the whole menu with a screenful of cards bound.
+ * <p>
+ * Run with the serial collector and a fixed heap for stable numbers (G1 reports usage per
+ * region), e.g. {@code java -XX:+UseSerialGC -Xms2g -Xmx2g CatalogueFootprintBenchmark 100000}.
+ */
+public class CatalogueFootprintBenchmark {
+
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    /** Cards the grid has bound at once: a screenful or so. */
+    private static final int CARDS_ON_SCREEN = 24;
+
+    /** What the app keeps for its catalogue. */
+    private record App(CatalogueModel catalogue, ProductSearchIndex index,
+                       List<JECRC_FoodsApp.Product> shown, List<JECRC_FoodsApp.Product> cards) {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? new int[]{Integer.parseInt(args[0])} : new int[]{10_000, 100_000, 500_000};
+
+        // Load and initialize every class involved before the first heap reading
+        ColumnarCatalogue.of(SyntheticCatalogue.generate(1_000, 1));
+        load(CatalogueModel::new, 1_000);
+        load(CatalogueModel::columnar, 1_000);
+        usedHeap();
+
+        System.out.printf("%10s %16s %16s %10s %14s %14s%n",
+                "products", "objects (bytes)", "columnar (bytes)", "saving", "object scan", "columnar scan");
+        for (int size : sizes) {
+            long baseline = usedHeap();
+            List<JECRC_FoodsApp.Product> objects = new ArrayList<>(SyntheticCatalogue.generate(size, 42));
+            long objectBytes = usedHeap() - baseline;
+
+            baseline = usedHeap();
+            ColumnarCatalogue columnar = ColumnarCatalogue.of(SyntheticCatalogue.generate(size, 42));
+            long columnarBytes = usedHeap() - baseline;
+
+            long objectScan = time(() -> scanObjects(objects));
+            long columnarScan = time(() -> scanColumns(columnar));
+
+            System.out.printf("%10d %16d %16d %9.0f%% %11.2f ms %11.2f ms%n",
+                    size, objectBytes, columnarBytes, 100.0 * (objectBytes - columnarBytes) / objectBytes,
+                    objectScan / 1e6, columnarScan / 1e6);
+
+            // Keep both alive until measured
+            if (objects.size() != columnar.size()) {
+                throw new AssertionError();
+            }
+        }
+
+        System.out.printf("%n%10s %16s %16s %10s%n", "products", "app (bytes)", "columnar (bytes)", "saving");
+        for (int size : sizes) {
+            long baseline = usedHeap();
+            App objects = load(CatalogueModel::new, size);
+            long objectBytes = usedHeap() - baseline;
+
+            baseline = usedHeap();
+            App columnar = load(CatalogueModel::columnar, size);
+            long columnarBytes = usedHeap() - baseline;
+
+            System.out.printf("%10d %16d %16d %9.0f%%%n",
+                    size, objectBytes, columnarBytes, 100.0 * (objectBytes - columnarBytes) / objectBytes);
+            if (objects.index().size() != columnar.index().size() || objects.shown().size() != columnar.shown().size()
+                    || objects.cards().size() != columnar.cards().size()) {
+                throw new AssertionError();
+            }
+        }
+    }
+
+    /** Wires a catalogue up the way the app does, then loads the menu and shows all of it. */
+    private static App load(Supplier<CatalogueModel> model, int size) {
+        CatalogueModel catalogue = model.get();
+        ProductSearchIndex index = new ProductSearchIndex();
+        catalogue.addListener(index.listener());
+        catalogue.addAll(SyntheticCatalogue.generate(size, 42));
+        List<JECRC_FoodsApp.Product> shown = catalogue.view(CatalogueModel.ALL, CatalogueModel.Sort.DEFAULT);
+        List<JECRC_FoodsApp.Product> cards = new ArrayList<>(shown.subList(0, Math.min(CARDS_ON_SCREEN, shown.size())));
+        return new App(catalogue, index, shown, cards);
+    }
+
+    /** The filter/sort the grid used to do: one category, by price. */
+    private static int scanObjects(List<JECRC_FoodsApp.Product> products) {
+        List<JECRC_FoodsApp.Product> filtered = new ArrayList<>();
+        for (JECRC_FoodsApp.Product p : products) {
+            if (p.category.equals("Indian") && p.stock > 0) {
+                filtered.add(p);
+            }
+        }
+        filtered.sort((a, b) -> Double.compare(a.price, b.price));
+        return filtered.size();
+    }
+
+    private static int scanColumns(ColumnarCatalogue catalogue) {
+        int[] rows = catalogue.rowsIn("Indian");
+        int kept = 0;
+        for (int row : rows) {
+            if (catalogue.stock(row) > 0) {
+                rows[kept++] = row;
+            }
+        }
+        rows = java.util.Arrays.copyOf(rows, kept);
+        catalogue.sortByPrice(rows, true);
+        return rows.length;
+    }
+
+    private static long time(Runnable scan) {
+        for (int i = 0; i < 20; i++) {
+            scan.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            scan.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imports a generated vendor menu as CSV and as JSON and reports rows per second and heap use.
+ * <p>
+ * Each format is imported twice: once into a sink that only counts, which measures the parser
+ * and shows that heap use does not grow with the file, and once into a {@link CatalogueModel}
+ * and {@link StockLedger} the way the app does. The files contain a few invalid and duplicate
+ * rows; the run exits with status 1 if the importer does not account for them exactly.
+ * <p>
+ * Usage: {@code java CatalogueImportBenchmark [rows]}
+ */
+public class CatalogueImportBenchmark {
+
+    private static final int INVALID_EVERY = 10_000;
+    private static final int DUPLICATE_EVERY = 25_000;
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("import-bench");
+        Path csv = dir.resolve("menu.csv");
+        Path json = dir.resolve("menu.json");
+        generate(csv, json, rows);
+        System.out.printf("%,d rows: CSV %,d KB, JSON %,d KB%n", rows, Files.size(csv) / 1024, Files.size(json) / 1024);
+
+        boolean ok = true;
+        for (Path file : new Path[]{csv, json}) {
+            ok &= run(file, rows, false);
+            ok &= run(file, rows, true);
+        }
+        Files.delete(csv);
+        Files.delete(json);
+        Files.delete(dir);
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean run(Path file, int rows, boolean intoCatalogue) throws IOException, InterruptedException {
+        CatalogueModel catalogue = new CatalogueModel();
+        StockLedger ledger = new StockLedger(Duration.ofMinutes(10));
+        LongAdder received = new LongAdder();
+        CatalogueImporter importer = new CatalogueImporter(5_000, batch -> {
+            received.add(batch.size());
+            if (intoCatalogue) {
+                catalogue.addAll(batch);
+                batch.forEach(p -> ledger.loadAvailable(p.id, p.stock));
+            }
+        });
+
+        System.gc();
+        resetPeaks();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        CatalogueImporter.Result result = importer.importFile(file);
+        long peak = peakHeap();
+        ledger.close();
+
+        String target = intoCatalogue ? "catalogue" : "count only";
+        System.out.printf("%-5s %-10s %,6d ms  %,10.0f rows/s  peak heap +%,d MB  imported %,d, duplicates %,d, invalid %,d%n",
+                file.getFileName().toString().endsWith(".csv") ? "CSV" : "JSON", target, result.millis(),
+                result.rows() * 1000.0 / Math.max(1, result.millis()), Math.max(0, peak - before) / (1024 * 1024),
+                result.imported(), result.duplicates(), result.invalid());
+
+        long invalid = (rows + INVALID_EVERY - 1) / INVALID_EVERY;
+        long duplicates = rows / DUPLICATE_EVERY;
+        boolean ok = result.rows() == rows + duplicates
+                && result.invalid() == invalid
+                && result.imported() + result.duplicates() == rows + duplicates - invalid
+                && received.sum() == result.imported();
+        if (intoCatalogue) {
+            // Duplicates land in other batches than their originals, so the catalogue upserts them
+            ok &= catalogue.size() == rows - invalid;
+        }
+        if (!ok) {
+            System.out.println("  FAILED: counts do not match the generated file");
+        }
+        return ok;
+    }
+
+    /**
+     * Writes the same menu in both formats. Every INVALID_EVERY-th row has a negative price and
+     * every DUPLICATE_EVERY-th row is followed by a repeat of an earlier id.
+     */
+    private static void generate(Path csvFile, Path jsonFile, int rows) throws IOException {
+        Random random = new Random(42);
+        try (Writer csv = new BufferedWriter(Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8), 1 << 16);
+             Writer json = new BufferedWriter(Files.newBufferedWriter(jsonFile, StandardCharsets.UTF_8), 1 << 16)) {
+            csv.write("id,name,description,price,category,imageUrl,stock\n");
+            json.write("[\n");
+            boolean first = true;
+            for (int i = 0; i < rows; i++) {
+                String category = SyntheticCatalogue.CATEGORIES[random.nextInt(SyntheticCatalogue.CATEGORIES.length)];
+                String price = i % INVALID_EVERY == 0 ? "-1" : Double.toString(0.5 + random.nextInt(2000) / 100.0);
+                int stock = random.nextInt(50);
+                first = row(csv, json, "v" + i, category, price, stock, i, first);
+                if (i % DUPLICATE_EVERY == DUPLICATE_EVERY - 1) {
+                    first = row(csv, json, "v" + (i / 2), category, "1.0", stock, i, first);
+                }
+            }
+            json.write("\n]\n");
+        }
+    }
+
+    private static boolean row(Writer csv, Writer json, String id, String category, String price, int stock,
+                               int i, boolean first) throws IOException {
+        String name = "Item " + i;
+        // Quoted fields with commas and doubled quotes, as spreadsheet exports produce them
+        String description = "Fresh, \"house\" special no. " + (i % 997);
+        String image = "https://i.pinimg.com/736x/" + (i % 500) + ".jpg";
+        csv.write(id + "," + name + ",\"" + description.replace("\"", "\"\"") + "\"," + price + ","
+                + category + "," + image + "," + stock + "\n");
+        if (!first) {
+            json.write(",\n");
+        }
+        json.write("{\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"description\":\""
+                + description.replace("\"", "\\\"") + "\",\"price\":" + price + ",\"category\":\"" + category
+                + "\",\"imageUrl\":\"" + image + "\",\"stock\":" + stock + "}");
+        return false;
+    }
+
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** Sum of the per-pool peaks; an upper bound, as the pools need not peak together. */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
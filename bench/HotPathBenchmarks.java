@@ -0,0 +1,302 @@
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the operations a customer feels, on synthetic catalogues of 1k, 10k and 100k products
+ * and carts of 10 to 1000 lines: the product query (search, category filter and price sort,
+ * next to the linear filter/sort it replaced), building and rebinding product cards, adding to
+ * the cart and keeping its totals, and learning from an order and asking for recommendations.
+ * Runs headless; the card benchmarks need a JavaFX toolkit (e.g.
+ * {@code -Dglass.platform=Headless -Dprism.order=sw} on JavaFX 24+) and are skipped without one.
+ * <p>
+ * This is the quick check to run before and after a change. The JMH suite in {@code bench/jmh}
+ * runs the same operations with forked JVMs and the GC profiler, for numbers to rely on.
+ * <p>
+ * Results can be saved and compared with an earlier run; a slowdown beyond the threshold makes
+ * the run exit with status 1.
+ * <p>
+ * Usage: {@code java -XX:+UseSerialGC HotPathBenchmarks [--sizes=1000,10000,100000]
+ * [--out=results.csv] [--compare=baseline.csv] [--threshold=20]}
+ */
+public class HotPathBenchmarks {
+
+    private static final int[] CART_SIZES = {10, 100, 1000};
+
+    // Stock is plentiful in the benchmarks, so nothing ever falls short
+    static final CartReservations.Listener SILENT = new CartReservations.Listener() {
+        @Override
+        public void shortage(JECRC_FoodsApp.Product product, int held, int before) {
+        }
+
+        @Override
+        public void unreachable(IOException e) {
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {1_000, 10_000, 100_000};
+        Path out = null;
+        Path compare = null;
+        double threshold = 20;
+        for (String arg : args) {
+            if (arg.startsWith("--sizes=")) {
+                sizes = Arrays.stream(arg.substring(8).split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--out=")) {
+                out = Paths.get(arg.substring(6));
+            } else if (arg.startsWith("--compare=")) {
+                compare = Paths.get(arg.substring(10));
+            } else if (arg.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(arg.substring(12));
+            } else {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+        // Card binds look images up in the cache; keep them off the network and the user's cache
+        Path scratch = Files.createTempDirectory("jecrc-bench");
+        System.setProperty("jecrc.images.dir", scratch.resolve("images").toString());
+        System.setProperty("jecrc.cache.dir", scratch.resolve("cache").toString());
+
+        Bench bench = new Bench(5, 10);
+        List<Bench.Result> results = new ArrayList<>();
+        boolean fx = startToolkit();
+        System.out.printf("%-48s %14s %14s%n", "benchmark", "ns/op", "bytes/op");
+        for (int size : sizes) {
+            List<JECRC_FoodsApp.Product> products = SyntheticCatalogue.generate(size, 42);
+            queries(bench, size, products, results);
+            carts(bench, size, products, results);
+            recommendations(bench, size, products, results);
+            if (fx) {
+                cards(bench, size, products, results);
+            }
+        }
+        if (!fx) {
+            System.out.println("(card benchmarks skipped: no JavaFX toolkit)");
+        }
+
+        if (out != null) {
+            save(results, out);
+        }
+        boolean regressed = compare != null && compare(results, load(compare), threshold);
+        if (fx) {
+            Platform.exit();
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    private static void queries(Bench bench, int size, List<JECRC_FoodsApp.Product> products,
+                                List<Bench.Result> results) {
+        CatalogueModel catalogue = new CatalogueModel();
+        ProductSearchIndex index = new ProductSearchIndex();
+        catalogue.addListener(index.listener());
+        catalogue.addAll(products);
+        int ops = Math.max(1, 100_000 / size);
+
+        report(results, bench.run("query.linear.text+category+sort/" + size, ops,
+                i -> linearQuery(products, "paneer", "Indian")));
+        report(results, bench.run("query.indexed.text+category+sort/" + size, ops,
+                i -> catalogue.select("Indian", CatalogueModel.Sort.PRICE_LOW_TO_HIGH, index.search("paneer"))));
+        report(results, bench.run("query.linear.category+sort/" + size, ops,
+                i -> linearQuery(products, "", "Indian")));
+        report(results, bench.run("query.indexed.category+sort/" + size, ops,
+                i -> catalogue.view("Indian", CatalogueModel.Sort.PRICE_LOW_TO_HIGH)));
+        report(results, bench.run("query.indexed.typo/" + size, ops,
+                i -> index.search("panner tika")));
+    }
+
+    /** The filter/sort lambda the grid used to run over the whole list on every keystroke. */
+    static List<JECRC_FoodsApp.Product> linearQuery(List<JECRC_FoodsApp.Product> products,
+                                                           String text, String category) {
+        String search = text.toLowerCase();
+        List<JECRC_FoodsApp.Product> filtered = new ArrayList<>();
+        for (JECRC_FoodsApp.Product p : products) {
+            boolean matchesText = search.isEmpty() || p.name.toLowerCase().contains(search)
+                    || p.description.toLowerCase().contains(search);
+            if (matchesText && p.category.equals(category)) {
+                filtered.add(p);
+            }
+        }
+        filtered.sort(Comparator.comparingDouble(p -> p.price));
+        return filtered;
+    }
+
+    private static void carts(Bench bench, int size, List<JECRC_FoodsApp.Product> products,
+                              List<Bench.Result> results) throws InterruptedException {
+        for (int lines : CART_SIZES) {
+            if (lines > size) {
+                continue;
+            }
+            try (StockLedger ledger = new StockLedger(Duration.ofMinutes(10));
+                 OrderService service = new OrderService(new CatalogueModel(), ledger, null, 16, 1)) {
+                for (JECRC_FoodsApp.Product p : products) {
+                    ledger.setAvailable(p.id, 1_000_000);
+                }
+                CartModel cart = new CartModel();
+                String cartId = "bench";
+                Runnable empty = () -> {
+                    cart.clear();
+                    ledger.releaseCart(cartId);
+                };
+                // The station's own add path against the in-process backend, answers applied in place
+                CartReservations reservations = new CartReservations(cart, cartId, Runnable::run, SILENT);
+                reservations.connect(service);
+
+                report(results, bench.run("cart.addToCart/" + lines + "-lines/" + size, lines * 2, empty, i -> {
+                    JECRC_FoodsApp.Product p = products.get(i % lines);
+                    reservations.add(p, 1);
+                    return cart.get(p.id);
+                }));
+
+                empty.run();
+                for (int i = 0; i < lines; i++) {
+                    cart.add(products.get(i), 1);
+                }
+                List<JECRC_FoodsApp.CartItem> items = new ArrayList<>(cart.getItems());
+                report(results, bench.run("cart.quantityChange.running/" + lines + "-lines/" + size, 10_000, i -> {
+                    JECRC_FoodsApp.CartItem item = items.get(i % lines);
+                    item.quantity.set(1 + (i & 3));
+                    return cart.getTotalPaise();
+                }));
+                // What every change used to cost: walk the cart twice
+                report(results, bench.run("cart.quantityChange.recompute/" + lines + "-lines/" + size, 10_000, i -> {
+                    JECRC_FoodsApp.CartItem item = items.get(i % lines);
+                    item.quantity.set(1 + (i & 3));
+                    int count = items.stream().mapToInt(it -> it.quantity.get()).sum();
+                    double total = items.stream().mapToDouble(it -> it.product.price * it.quantity.get()).sum();
+                    return String.format("%d ₹%.0f", count, total * 83);
+                }));
+                empty.run();
+            }
+        }
+    }
+
+    private static void recommendations(Bench bench, int size, List<JECRC_FoodsApp.Product> products,
+                                        List<Bench.Result> results) {
+        List<Order> orders = orders(products);
+        RecommendationEngine engine = new RecommendationEngine(32, Duration.ofHours(4));
+        orders.forEach(engine::record);
+
+        report(results, bench.run("recommend.recordOrder/" + size, 10_000,
+                i -> {
+                    engine.record(orders.get(i % orders.size()));
+                    return engine;
+                }));
+        List<String> cart = new ArrayList<>();
+        for (int l = 0; l < 5; l++) {
+            cart.add(products.get(l * 3 % size).id);
+        }
+        report(results, bench.run("recommend.goesWellWith/5-lines/" + size, 10_000,
+                i -> engine.goesWellWith(cart, 3)));
+        List<JECRC_FoodsApp.Product> indian = products.stream().filter(p -> p.category.equals("Indian")).toList();
+        report(results, bench.run("recommend.rankByPopularity/" + indian.size() + "/" + size, Math.max(1, 100_000 / size),
+                i -> engine.rankByPopularity(indian)));
+    }
+
+    /** Orders of 1 to 4 lines, skewed towards the first products the way real menus sell. */
+    static List<Order> orders(List<JECRC_FoodsApp.Product> products) {
+        Random random = new Random(5);
+        int size = products.size();
+        List<Order> orders = new ArrayList<>(10_000);
+        long now = System.currentTimeMillis();
+        for (int n = 0; n < 10_000; n++) {
+            List<Order.Line> lines = new ArrayList<>();
+            int lineCount = 1 + random.nextInt(4);
+            for (int l = 0; l < lineCount; l++) {
+                int pick = (int) Math.min(size - 1, Math.abs(random.nextGaussian()) * size / 20);
+                lines.add(new Order.Line(products.get(pick).id, "", 1 + random.nextInt(2), 100));
+            }
+            orders.add(new Order(n, "o" + n, now + n * 1_000L, lines));
+        }
+        return orders;
+    }
+
+    private static void cards(Bench bench, int size, List<JECRC_FoodsApp.Product> products,
+                              List<Bench.Result> results) throws Exception {
+        // Cards are nodes and must be built on the FX thread
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                report(results, bench.run("grid.cardBuild/" + size, 200, i -> {
+                    ProductCard card = new ProductCard((p, q) -> { });
+                    card.bind(products.get(i % products.size()));
+                    return card;
+                }));
+                ProductCard pooled = new ProductCard((p, q) -> { });
+                report(results, bench.run("grid.cardRebind/" + size, 2_000,
+                        i -> {
+                            pooled.bind(products.get(i % products.size()));
+                            return pooled;
+                        }));
+                done.complete(null);
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+        done.get(10, TimeUnit.MINUTES);
+    }
+
+    private static boolean startToolkit() {
+        try {
+            CompletableFuture<Void> started = new CompletableFuture<>();
+            Platform.startup(() -> started.complete(null));
+            started.get(30, TimeUnit.SECONDS);
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private static void report(List<Bench.Result> results, Bench.Result result) {
+        results.add(result);
+        System.out.printf("%-48s %14.1f %14.1f%n", result.name(), result.nanosPerOp(), result.bytesPerOp());
+    }
+
+    private static void save(List<Bench.Result> results, Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Bench.Result r : results) {
+            lines.add(r.name() + "," + r.nanosPerOp() + "," + r.bytesPerOp());
+        }
+        Files.write(file, lines);
+    }
+
+    private static Map<String, Bench.Result> load(Path file) throws IOException {
+        Map<String, Bench.Result> results = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] parts = line.split(",");
+            if (parts.length == 3) {
+                results.put(parts[0], new Bench.Result(parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2])));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Prints the change against the baseline for every benchmark both runs have.
+     *
+     * @return true if any benchmark got slower by more than the threshold (in percent)
+     */
+    private static boolean compare(List<Bench.Result> results, Map<String, Bench.Result> baseline, double threshold) {
+        boolean regressed = false;
+        System.out.printf("%n%-48s %10s %10s%n", "compared with baseline", "time", "bytes");
+        for (Bench.Result r : results) {
+            Bench.Result before = baseline.get(r.name());
+            if (before == null) {
+                continue;
+            }
+            double time = 100 * (r.nanosPerOp() - before.nanosPerOp()) / before.nanosPerOp();
+            double bytes = before.bytesPerOp() > 0 ? 100 * (r.bytesPerOp() - before.bytesPerOp()) / before.bytesPerOp() : 0;
+            boolean slower = time > threshold;
+            regressed |= slower;
+            System.out.printf("%-48s %+9.1f%% %+9.1f%%%s%n", r.name(), time, bytes, slower ? "  REGRESSION" : "");
+        }
+        return regressed;
+    }
+}
@@ -0,0 +1,200 @@
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@link ImageCache} against a local server standing in for the image host.
+ * <p>
+ * A first session downloads some images and a second one, on the same disk tier, has to serve
+ * them without asking the server again. Then far more images than the disk budget holds are
+ * loaded; the disk tier must come back under its budget while the session goes on, keeping the
+ * images used last. Requests withdrawn while they wait behind a slow download must not reach
+ * the server, and an image the server does not have is asked for once however often it is
+ * requested again. Exits with status 1 if any of that does not hold.
+ * <p>
+ * Usage: {@code java -Dprism.order=sw ImageCacheCheck [images]}
+ */
+public class ImageCacheCheck {
+
+    private static final int WIDTH = 48;
+    private static final int HEIGHT = 32;
+
+    public static void main(String[] args) throws Exception {
+        int imageCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Map<String, byte[]> images = new HashMap<>();
+        Random random = new Random(9);
+        for (int i = 0; i < imageCount; i++) {
+            images.put("/img/" + i + ".png", png(random));
+        }
+        Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/img/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            byte[] body = images.get(path);
+            exchange.sendResponseHeaders(body != null ? 200 : 404, body != null ? body.length : -1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (body != null) {
+                    out.write(body);
+                }
+            }
+        });
+        // Stands in for a slow connection; each image takes a while to arrive
+        server.createContext("/slow/", exchange -> {
+            requests.computeIfAbsent(exchange.getRequestURI().getPath(), p -> new AtomicInteger()).incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = images.get("/img/0.png");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        String host = "http://127.0.0.1:" + server.getAddress().getPort();
+        ImageCache.Fetcher http = url -> URI.create(url).toURL().openStream();
+
+        Path dir = Files.createTempDirectory("image-cache");
+        // Room for about a quarter of the images
+        long diskBudget = images.values().stream().mapToLong(b -> b.length).sum() / 4;
+        boolean ok = true;
+
+        // First session: ten downloads
+        ImageCache first = new ImageCache(dir, 1024 * 1024, diskBudget, 2, http);
+        loadAll(first, host, 0, 10);
+        ok &= check(requests.size() == 10 && requests.values().stream().allMatch(n -> n.get() == 1),
+                "first session fetched each image once");
+
+        // Second session on the same disk tier: no network
+        ImageCache second = new ImageCache(dir, 1024 * 1024, diskBudget, 2, http);
+        loadAll(second, host, 0, 10);
+        ok &= check(requests.values().stream().allMatch(n -> n.get() == 1), "second session served them from disk");
+        ok &= check(second.getIfCached(host + "/img/0.png", WIDTH, HEIGHT) != null, "and keeps them decoded in memory");
+
+        // Many more than fit: the disk tier is trimmed as it goes
+        loadAll(second, host, 10, imageCount);
+        long used = waitForTrim(dir, diskBudget);
+        System.out.printf("disk tier: %d bytes after %d downloads, budget %d%n", used, imageCount, diskBudget);
+        ok &= check(used <= diskBudget, "disk tier back under its budget during the session");
+        List<String> kept = new ArrayList<>();
+        for (int i = imageCount - 5; i < imageCount; i++) {
+            kept.add(host + "/img/" + i + ".png");
+        }
+        int before = requests.values().stream().mapToInt(AtomicInteger::get).sum();
+        ImageCache third = new ImageCache(dir, 1024 * 1024, diskBudget, 2, http);
+        for (String url : kept) {
+            third.load(url, WIDTH, HEIGHT).get(30, TimeUnit.SECONDS);
+        }
+        ok &= check(requests.values().stream().mapToInt(AtomicInteger::get).sum() == before,
+                "the images used last are still on disk");
+
+        // Fast scrolling: requests withdrawn before their download started are skipped
+        ImageCache single = new ImageCache(Files.createTempDirectory("image-cache"), 1024 * 1024, diskBudget, 1, http);
+        List<CompletableFuture<?>> scrolled = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            scrolled.add(single.load(host + "/slow/" + i + ".png", WIDTH, HEIGHT));
+        }
+        CompletableFuture<?> wanted = single.load(host + "/slow/19.png", WIDTH, HEIGHT);
+        scrolled.forEach(load -> load.cancel(false));
+        boolean served;
+        try {
+            wanted.get(30, TimeUnit.SECONDS);
+            served = true;
+        } catch (CancellationException | ExecutionException e) {
+            served = false;
+        }
+        // One loader thread takes requests in order: once this one is served, the others are done
+        single.load(host + "/img/1.png", WIDTH, HEIGHT).get(30, TimeUnit.SECONDS);
+        long slowFetched = requests.keySet().stream().filter(path -> path.startsWith("/slow/")).count();
+        System.out.printf("scrolling: %d of 20 slow images fetched%n", slowFetched);
+        ok &= check(slowFetched <= 2, "withdrawn requests are not fetched");
+        ok &= check(served,
+                "a request still wanted is served when another for the same image is withdrawn");
+
+        // An image the server does not have is not asked for again right away
+        int failedLoads = 0;
+        for (int i = 0; i < 5; i++) {
+            try {
+                second.load(host + "/img/missing.png", WIDTH, HEIGHT).get(30, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failedLoads++;
+            }
+        }
+        AtomicInteger missing = requests.get("/img/missing.png");
+        ok &= check(failedLoads == 5 && missing != null && missing.get() == 1,
+                "a failed image is fetched once, not on every request");
+
+        server.stop(0);
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static void loadAll(ImageCache cache, String host, int from, int to) throws Exception {
+        List<CompletableFuture<?>> loads = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            loads.add(cache.load(host + "/img/" + i + ".png", WIDTH, HEIGHT));
+            // A few at a time, so downloads spread over the session rather than arrive at once
+            if (loads.size() == 4) {
+                CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+                loads.clear();
+            }
+        }
+        CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+    }
+
+    /** Bytes in the disk tier once a running trim has had a chance to finish. */
+    private static long waitForTrim(Path dir, long budget) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        long used;
+        while ((used = sizeOf(dir)) > budget && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        return used;
+    }
+
+    private static long sizeOf(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            long total = 0;
+            for (Path p : files.toList()) {
+                total += Files.size(p);
+            }
+            return total;
+        }
+    }
+
+    /** A small PNG of noise, which does not compress, so every image costs about the same. */
+    private static byte[] png(Random random) throws IOException {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static boolean check(boolean condition, String what) {
+        System.out.println((condition ? "  ok    " : "  FAIL  ") + what);
+        return condition;
+    }
+}
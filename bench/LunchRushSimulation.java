@@ -0,0 +1,233 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays a lunch rush through {@link KitchenScheduler} and reports how long tickets wait.
+ * <p>
+ * The trace is two and a half hours of orders (11:30 to 14:00) arriving at random, at a rate
+ * that peaks around 12:45, over a synthetic menu where a few dishes per category sell
+ * far more than the rest. The kitchen is simulated on a virtual clock: each station has a
+ * number of cooks, and a batch takes a fixed setup time (heating the oven, the tawa, the
+ * fryer) plus a little per unit. The same trace runs once without batching and once with it.
+ * Reported per run: ticket queue wait and order ready time percentiles, and how far the
+ * estimate given at checkout was off.
+ * <p>
+ * A second phase checks the queues under contention: producer threads submit orders while
+ * cook threads take and complete batches on the real clock, for a few seconds.
+ * <p>
+ * Usage: {@code java LunchRushSimulation [orders] [cooksPerStation] [maxBatchUnits]}
+ */
+public class LunchRushSimulation {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** Setup and per-unit seconds for each category's station. */
+    private static final Map<String, long[]> COOK_TIMES = Map.of(
+            "Pizza", new long[]{300, 15},
+            "Burgers", new long[]{90, 30},
+            "Salads", new long[]{20, 45},
+            "Indian", new long[]{150, 20},
+            "Desserts", new long[]{15, 20},
+            "Beverages", new long[]{10, 15},
+            "Chinese", new long[]{120, 20},
+            "South Indian", new long[]{60, 30});
+
+    record Arrival(long at, Order order) {
+    }
+
+    record Run(String name, long[] ticketWaits, long[] orderTimes, long[] estimateErrors, double unitsPerBatch) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int cooks = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int maxBatch = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        List<JECRC_FoodsApp.Product> products = SyntheticCatalogue.generate(80, 21);
+        CatalogueModel catalogue = new CatalogueModel();
+        catalogue.addAll(products);
+        List<Arrival> trace = lunchRush(products, orderCount, 5);
+        System.out.printf("%d orders, %d order lines, %d cooks per station%n", trace.size(),
+                trace.stream().mapToInt(a -> a.order().lines().size()).sum(), cooks);
+
+        System.out.printf("%-16s %10s %10s %10s %10s %10s %10s %12s %8s%n", "run",
+                "wait p50", "wait p90", "wait p99", "ready p50", "ready p90", "ready p99", "eta err p50", "units/b");
+        for (Run run : List.of(simulate("no batching", catalogue, trace, cooks, 1),
+                simulate("batch " + maxBatch, catalogue, trace, cooks, maxBatch))) {
+            System.out.printf("%-16s %10s %10s %10s %10s %10s %10s %12s %8.2f%n", run.name(),
+                    minutes(run.ticketWaits(), 0.5), minutes(run.ticketWaits(), 0.9), minutes(run.ticketWaits(), 0.99),
+                    minutes(run.orderTimes(), 0.5), minutes(run.orderTimes(), 0.9), minutes(run.orderTimes(), 0.99),
+                    minutes(run.estimateErrors(), 0.5), run.unitsPerBatch());
+        }
+
+        contention(catalogue, products, 4, 8, maxBatch, Duration.ofSeconds(3));
+    }
+
+    /**
+     * Discrete-event run of the trace: arrivals and finished batches in time order, idle cooks
+     * taking the next batch of their station as soon as there is one.
+     */
+    static Run simulate(String name, CatalogueModel catalogue, List<Arrival> trace, int cooksPerStation, int maxBatch) {
+        long[] now = {0};
+        KitchenScheduler kitchen = new KitchenScheduler(catalogue, Duration.ofSeconds(40), maxBatch, () -> now[0]);
+
+        // Finish time and batch id of every batch being cooked, earliest first
+        PriorityQueue<long[]> finishing = new PriorityQueue<>(Comparator.comparingLong(e -> e[0]));
+        Map<String, Integer> idleCooks = new HashMap<>();
+        Map<String, Integer> linesLeft = new HashMap<>();
+        Map<String, long[]> placedAndEstimate = new HashMap<>();
+        List<Long> ticketWaits = new ArrayList<>();
+        List<Long> orderTimes = new ArrayList<>();
+        List<Long> estimateErrors = new ArrayList<>();
+        long batches = 0;
+        long units = 0;
+
+        int next = 0;
+        while (next < trace.size() || !finishing.isEmpty()) {
+            boolean arrival = next < trace.size() && (finishing.isEmpty() || trace.get(next).at() <= finishing.peek()[0]);
+            if (arrival) {
+                Arrival a = trace.get(next++);
+                now[0] = a.at();
+                Duration estimate = kitchen.submit(a.order());
+                linesLeft.put(a.order().orderId(), a.order().lines().size());
+                placedAndEstimate.put(a.order().orderId(), new long[]{a.at(), estimate.toNanos()});
+            } else {
+                long[] done = finishing.poll();
+                now[0] = done[0];
+                KitchenScheduler.Batch batch = kitchen.complete(done[1]);
+                idleCooks.merge(batch.station(), 1, Integer::sum);
+                for (KitchenScheduler.Ticket ticket : batch.tickets()) {
+                    if (linesLeft.merge(ticket.orderId(), -1, Integer::sum) == 0) {
+                        long[] placed = placedAndEstimate.remove(ticket.orderId());
+                        long took = now[0] - placed[0];
+                        orderTimes.add(took);
+                        estimateErrors.add(Math.abs(took - placed[1]));
+                    }
+                }
+            }
+            // Every idle cook takes work while there is some
+            for (String station : kitchen.stations()) {
+                int idle = idleCooks.computeIfAbsent(station, s -> cooksPerStation);
+                KitchenScheduler.Batch batch;
+                while (idle > 0 && (batch = kitchen.takeBatch(station)) != null) {
+                    idle--;
+                    long[] cookTime = COOK_TIMES.getOrDefault(station, new long[]{60, 30});
+                    finishing.add(new long[]{now[0] + (cookTime[0] + cookTime[1] * batch.units()) * SECOND, batch.id()});
+                    for (KitchenScheduler.Ticket ticket : batch.tickets()) {
+                        ticketWaits.add(now[0] - ticket.queuedAt());
+                    }
+                    batches++;
+                    units += batch.units();
+                }
+                idleCooks.put(station, idle);
+            }
+        }
+        return new Run(name, sorted(ticketWaits), sorted(orderTimes), sorted(estimateErrors), (double) units / batches);
+    }
+
+    /**
+     * Submit and take/complete throughput with several checkout and cook threads at once.
+     */
+    static void contention(CatalogueModel catalogue, List<JECRC_FoodsApp.Product> products,
+                           int producers, int consumers, int maxBatch, Duration length) throws Exception {
+        KitchenScheduler kitchen = new KitchenScheduler(catalogue, Duration.ofSeconds(40), maxBatch);
+        List<Arrival> orders = lunchRush(products, 20_000, 9);
+        String[] stations = SyntheticCatalogue.CATEGORIES;
+        LongAdder submitted = new LongAdder();
+        LongAdder cooked = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int offset = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = offset; running.get(); i += producers) {
+                    kitchen.submit(orders.get(i % orders.size()).order());
+                    submitted.increment();
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            String station = stations[c % stations.length];
+            threads.add(Thread.ofPlatform().start(() -> {
+                while (running.get()) {
+                    KitchenScheduler.Batch batch = kitchen.takeBatch(station);
+                    if (batch == null) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                    kitchen.complete(batch.id());
+                    cooked.add(batch.tickets().size());
+                }
+            }));
+        }
+        Thread.sleep(length.toMillis());
+        running.set(false);
+        for (Thread t : threads) {
+            t.join();
+        }
+        double seconds = length.toNanos() / 1e9;
+        System.out.printf("contention: %d checkout threads %.0f orders/s, %d cook threads %.0f tickets/s (%d CPUs)%n",
+                producers, submitted.sum() / seconds, consumers, cooked.sum() / seconds,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Orders from 11:30 to 14:00, the arrival rate a bell curve peaking at 12:45. Each order has
+     * one to four lines; within a category the first few dishes sell most.
+     */
+    static List<Arrival> lunchRush(List<JECRC_FoodsApp.Product> products, int count, long seed) {
+        Random random = new Random(seed);
+        Map<String, List<JECRC_FoodsApp.Product>> byCategory = new TreeMap<>();
+        for (JECRC_FoodsApp.Product p : products) {
+            byCategory.computeIfAbsent(p.category, c -> new ArrayList<>()).add(p);
+        }
+        List<List<JECRC_FoodsApp.Product>> categories = new ArrayList<>(byCategory.values());
+
+        long span = 150 * MINUTE;
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            long at;
+            do {
+                at = (long) (75 * MINUTE + random.nextGaussian() * 30 * MINUTE);
+            } while (at < 0 || at >= span);
+            times[i] = at;
+        }
+        Arrays.sort(times);
+
+        List<Arrival> trace = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<Order.Line> lines = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            int lineCount = 1 + random.nextInt(4);
+            for (int l = 0; l < lineCount; l++) {
+                List<JECRC_FoodsApp.Product> menu = categories.get(random.nextInt(categories.size()));
+                // Skewed towards the start of the list: a handful of bestsellers per category
+                int index = (int) (menu.size() * Math.pow(random.nextDouble(), 4));
+                JECRC_FoodsApp.Product p = menu.get(index);
+                if (seen.add(p.id)) {
+                    lines.add(new Order.Line(p.id, p.name, 1 + (random.nextInt(5) == 0 ? 1 : 0), Math.round(p.price * 100)));
+                }
+            }
+            trace.add(new Arrival(times[i], new Order(0, "o" + i, 0, lines)));
+        }
+        return trace;
+    }
+
+    private static long[] sorted(List<Long> values) {
+        long[] array = values.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(array);
+        return array;
+    }
+
+    private static String minutes(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return "-";
+        }
+        long value = sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+        return String.format("%.1f min", (double) value / MINUTE);
+    }
+}
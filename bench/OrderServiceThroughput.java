@@ -0,0 +1,142 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Floods {@link OrderService} with orders from thousands of concurrent clients and reports
+ * throughput, latency and how well orders were grouped into log writes.
+ * <p>
+ * Every client is a virtual thread that places orders one after the other, half of them
+ * through a cart reservation and half directly. At the end the run checks that every order got
+ * an answer, that the log holds exactly the confirmed orders and that stock sold plus stock left
+ * equals the opening stock. Exits with status 1 otherwise.
+ * <p>
+ * Usage: {@code java OrderServiceThroughput [clients] [ordersPerClient] [workers]}
+ */
+public class OrderServiceThroughput {
+
+    private static final int PRODUCTS = 200;
+    private static final int OPENING_STOCK = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int perClient = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int workerCount = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        List<JECRC_FoodsApp.Product> products = SyntheticCatalogue.generate(PRODUCTS, 7);
+        CatalogueModel catalogue = new CatalogueModel();
+        catalogue.addAll(products);
+        StockLedger ledger = new StockLedger(Duration.ofMinutes(10));
+        // A few products are scarce so some orders are turned away
+        for (int p = 0; p < PRODUCTS; p++) {
+            ledger.setAvailable(products.get(p).id, p < 5 ? 500 : OPENING_STOCK);
+        }
+
+        Path dir = Files.createTempDirectory("order-bench");
+        OrderLog log = OrderLog.open(dir.resolve("orders.log"));
+        OrderService service = new OrderService(catalogue, ledger, log, 4_096, workerCount);
+
+        ConcurrentHashMap<OrderService.Status, LongAdder> outcomes = new ConcurrentHashMap<>();
+        long[] latencies = new long[clients * perClient];
+        LongAdder sold = new LongAdder();
+
+        long start = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                pool.execute(() -> {
+                    Random random = new Random(client);
+                    String cartId = "cart-" + client;
+                    for (int n = 0; n < perClient; n++) {
+                        Map<String, Integer> lines = new LinkedHashMap<>();
+                        int lineCount = 1 + random.nextInt(4);
+                        for (int l = 0; l < lineCount; l++) {
+                            lines.merge(products.get(random.nextInt(PRODUCTS)).id, 1 + random.nextInt(3), Integer::sum);
+                        }
+                        boolean viaCart = (n & 1) == 0;
+                        if (viaCart) {
+                            lines.replaceAll((productId, qty) -> ledger.reserve(cartId, productId, qty));
+                            lines.values().removeIf(qty -> qty == 0);
+                            if (lines.isEmpty()) {
+                                continue;
+                            }
+                        }
+                        long t0 = System.nanoTime();
+                        OrderService.OrderResult result;
+                        while (true) {
+                            result = service.submit(new OrderService.OrderRequest(
+                                    client + "-" + n, viaCart ? cartId : null, lines)).join();
+                            if (result.status() != OrderService.Status.BUSY) {
+                                break;
+                            }
+                            LockSupport.parkNanos(1_000_000);
+                        }
+                        latencies[client * perClient + n] = System.nanoTime() - t0;
+                        outcomes.computeIfAbsent(result.status(), s -> new LongAdder()).increment();
+                        if (result.confirmed()) {
+                            sold.add(result.order().itemCount());
+                        } else if (viaCart) {
+                            ledger.releaseCart(cartId);
+                        }
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        service.close();
+
+        long confirmed = count(outcomes, OrderService.Status.CONFIRMED);
+        long answered = outcomes.values().stream().mapToLong(LongAdder::sum).sum();
+        long batches = Metrics.getInstance().counter("orders.batches").sum();
+        long stockLeft = 0;
+        long opening = 0;
+        for (int p = 0; p < PRODUCTS; p++) {
+            stockLeft += ledger.available(products.get(p).id);
+            opening += p < 5 ? 500 : OPENING_STOCK;
+        }
+
+        long[] measured = Arrays.stream(latencies).filter(l -> l > 0).sorted().toArray();
+        System.out.printf("clients=%d workers=%d orders answered=%d in %.2f s (%.0f orders/s)%n",
+                clients, workerCount, answered, seconds, answered / seconds);
+        System.out.printf("outcomes=%s%n", outcomes);
+        System.out.printf("log writes=%d, %.1f orders per write%n", batches, batches > 0 ? (double) confirmed / batches : 0);
+        System.out.printf("latency p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                percentile(measured, 0.50), percentile(measured, 0.99), percentile(measured, 1.0));
+
+        boolean ok = log.liveOrderCount() == confirmed && sold.sum() + stockLeft == opening;
+        if (log.liveOrderCount() != confirmed) {
+            System.out.println("MISMATCH: log has " + log.liveOrderCount() + " orders, confirmed " + confirmed);
+        }
+        if (sold.sum() + stockLeft != opening) {
+            System.out.println("MISMATCH: sold " + sold.sum() + " + left " + stockLeft + " != " + opening);
+        }
+        System.out.println(ok ? "OK" : "FAILED");
+
+        log.close();
+        ledger.close();
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static long count(Map<OrderService.Status, LongAdder> outcomes, OrderService.Status status) {
+        LongAdder adder = outcomes.get(status);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    private static double percentile(long[] sorted, double q) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.max(0, Math.ceil(q * sorted.length) - 1));
+        return sorted[index] / 1e6;
+    }
+}
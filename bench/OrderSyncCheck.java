@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Runs a standalone terminal's order sync through an outage and a crash.
+ * <p>
+ * The terminal keeps confirming orders while its server is down, then the server comes up and
+ * the backlog has to drain. Next the terminal "crashes" after the server has confirmed a batch
+ * but before the terminal wrote its sync position, so the batch is sent a second time; then the
+ * server restarts from its own log and the whole log is sent once more. After each step the
+ * server must hold every order exactly once, and its kitchen must have got a ticket for every
+ * order line exactly once. Last, the newest orders are voided and compacted away before the
+ * terminal restarts, and the orders it takes next must still be synced. Exits with status 1
+ * otherwise.
+ * <p>
+ * Usage: {@code java OrderSyncCheck [orders]}
+ */
+public class OrderSyncCheck {
+
+    public static void main(String[] args) throws Exception {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        Path dir = Files.createTempDirectory("order-sync");
+        Path cursor = dir.resolve("orders.sync");
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        URI serverUri = URI.create("http://127.0.0.1:" + port + "/");
+        boolean ok = true;
+
+        OrderLog local = OrderLog.open(dir.resolve("terminal.log"));
+        OrderSyncer syncer = new OrderSyncer(local, cursor, new OrderingClient(serverUri), 200);
+        syncer.start();
+
+        // Outage: the terminal sells, the sync keeps failing and backing off
+        Random random = new Random(3);
+        for (int i = 0; i < orderCount; i++) {
+            local.append(randomOrder(random));
+        }
+        Thread.sleep(3_000);
+        long failures = Metrics.getInstance().counter("sync.failures").sum();
+        System.out.printf("outage: %d orders queued, %d failed attempts, synced up to %d%n",
+                local.liveOrderCount(), failures, syncer.syncedSeq());
+        ok &= check(failures > 0 && syncer.syncedSeq() == 0, "nothing synced during the outage");
+
+        // The server comes up: the backlog drains on the next retry
+        Path serverLogFile = dir.resolve("server.log");
+        OrderLog serverLog = OrderLog.open(serverLogFile);
+        OrderingServer server = startServer(port, serverLog);
+        long start = System.nanoTime();
+        long lastSeq = local.readFrom(0).getLast().seq();
+        while (syncer.syncedSeq() < lastSeq && System.nanoTime() - start < Duration.ofMinutes(2).toNanos()) {
+            Thread.sleep(50);
+        }
+        System.out.printf("recovery: backlog drained in %d ms, server holds %d orders%n",
+                Duration.ofNanos(System.nanoTime() - start).toMillis(), serverLog.liveOrderCount());
+        ok &= check(serverLog.liveOrderCount() == local.liveOrderCount(), "server holds every order after the outage");
+        syncer.close();
+        long lines = local.readFrom(0).stream().mapToLong(order -> order.lines().size()).sum();
+        ok &= check(tickets() == lines, "every synced order line reaches the kitchen");
+
+        // Crash between the server's confirmation and the local position write: roll the
+        // position back by one and a half batches and sync again
+        Files.writeString(cursor, Long.toString(lastSeq - 300));
+        try (OrderSyncer restarted = new OrderSyncer(local, cursor, new OrderingClient(serverUri), 200)) {
+            int resent = restarted.syncNow();
+            System.out.printf("crash replay: %d orders sent again, server holds %d orders%n",
+                    resent, serverLog.liveOrderCount());
+            ok &= check(resent == 300 && serverLog.liveOrderCount() == local.liveOrderCount(),
+                    "replayed orders are recorded once");
+        }
+
+        // The server restarts and rebuilds its order ids from its log; a full resend adds nothing
+        server.close();
+        serverLog.close();
+        serverLog = OrderLog.open(serverLogFile);
+        server = startServer(port, serverLog);
+        Files.delete(cursor);
+        try (OrderSyncer fresh = new OrderSyncer(local, cursor, new OrderingClient(serverUri), 200)) {
+            int resent = fresh.syncNow();
+            System.out.printf("server restart: %d orders sent again, server holds %d orders%n",
+                    resent, serverLog.liveOrderCount());
+            ok &= check(serverLog.liveOrderCount() == local.liveOrderCount(), "full resend is recorded once");
+        }
+        ok &= check(tickets() == lines, "resent orders are not cooked again");
+
+        // The last orders are refunded and compacted away, then the terminal restarts: their
+        // numbers must not be handed out again, or new orders would sit behind the sync position
+        for (Order order : local.readFrom(lastSeq - 9)) {
+            local.voidOrder(order.orderId());
+        }
+        local.compact();
+        local.close();
+        local = OrderLog.open(dir.resolve("terminal.log"));
+        int held = serverLog.liveOrderCount();
+        for (int i = 0; i < 10; i++) {
+            local.append(randomOrder(random));
+        }
+        try (OrderSyncer restarted = new OrderSyncer(local, cursor, new OrderingClient(serverUri), 200)) {
+            int sent = restarted.syncNow();
+            System.out.printf("compaction and restart: new orders from %d, %d sent%n", local.readFrom(0).getLast().seq() - 9, sent);
+            ok &= check(local.lastSeq() == lastSeq + 10 && sent == 10 && serverLog.liveOrderCount() == held + 10,
+                    "orders after a compaction and restart are synced");
+        }
+
+        server.close();
+        serverLog.close();
+        local.close();
+        System.out.println(Metrics.getInstance().getSnapshotText());
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static OrderingServer startServer(int port, OrderLog log) throws IOException {
+        // The sync endpoint only needs the log; catalogue and stock stay empty
+        CatalogueModel catalogue = new CatalogueModel();
+        ProductSearchIndex index = new ProductSearchIndex();
+        StockLedger ledger = new StockLedger(Duration.ofMinutes(5));
+        OrderService orders = new OrderService(catalogue, ledger, log, 64, 1);
+        OrderingServer server = new OrderingServer(catalogue, index, ledger, orders, log);
+        server.start(new InetSocketAddress("127.0.0.1", port));
+        return server;
+    }
+
+    private static long tickets() {
+        return Metrics.getInstance().counter("kitchen.tickets").sum();
+    }
+
+    private static Order randomOrder(Random random) {
+        List<Order.Line> lines = new ArrayList<>();
+        int count = 1 + random.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            int product = random.nextInt(200);
+            lines.add(new Order.Line("p" + product, "Product " + product, 1 + random.nextInt(3), 2_000 + product * 10L));
+        }
+        return new Order(0, UUID.randomUUID().toString(), System.currentTimeMillis(), lines);
+    }
+
+    private static boolean check(boolean condition, String what) {
+        System.out.println((condition ? "  ok    " : "  FAIL  ") + what);
+        return condition;
+    }
+}
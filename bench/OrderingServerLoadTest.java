@@ -0,0 +1,148 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load-tests {@link OrderingServer} on localhost.
+ * <p>
+ * Starts a server over a synthetic catalogue, then opens one connection per simulated client;
+ * each client loops through a customer session (search, add two products to its cart,
+ * check out) until the time is up. Reports requests per second and latency per endpoint, and
+ * exits with status 1 if any request failed with a server error.
+ * <p>
+ * Usage: {@code java OrderingServerLoadTest [clients] [seconds] [products]}
+ */
+public class OrderingServerLoadTest {
+
+    private static final String[] QUERIES = {"paneer", "masala dosa", "chiken", "coffee", "brownie", "veg roll"};
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int productCount = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        List<JECRC_FoodsApp.Product> products = SyntheticCatalogue.generate(productCount, 11);
+        CatalogueModel catalogue = new CatalogueModel();
+        ProductSearchIndex index = new ProductSearchIndex();
+        catalogue.addListener(index.listener());
+        catalogue.addAll(products);
+        StockLedger ledger = new StockLedger(Duration.ofMinutes(5));
+        products.forEach(p -> ledger.setAvailable(p.id, 1_000_000));
+        Path dir = Files.createTempDirectory("server-load");
+        OrderLog log = OrderLog.open(dir.resolve("orders.log"));
+        OrderService orders = new OrderService(catalogue, ledger, log, 8_192, Runtime.getRuntime().availableProcessors());
+        OrderingServer server = new OrderingServer(catalogue, index, ledger, orders, null);
+        server.start(new InetSocketAddress("127.0.0.1", 0));
+        URI base = URI.create("http://127.0.0.1:" + server.port() + "/");
+
+        Map<String, ConcurrentLinkedQueue<Long>> latencies = new ConcurrentHashMap<>();
+        LongAdder errors = new LongAdder();
+        LongAdder busy = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long start = System.nanoTime();
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                pool.execute(() -> {
+                    // One client per customer, so every customer holds its own connection
+                    try (HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+                        Random random = new Random(client);
+                        String cartId = "load-" + client;
+                        int session = 0;
+                        while (System.nanoTime() < deadline) {
+                            call(http, "search", HttpRequest.newBuilder(base.resolve(
+                                    "api/search?q=" + QUERIES[random.nextInt(QUERIES.length)].replace(" ", "+")
+                                            + "&category=All&sort=Low+to+High&limit=50")).GET(), latencies, errors);
+                            Map<String, Integer> lines = new LinkedHashMap<>();
+                            for (int i = 0; i < 2; i++) {
+                                String productId = products.get(random.nextInt(productCount)).id;
+                                int quantity = 1 + random.nextInt(3);
+                                call(http, "reserve", post(base, "api/carts/" + cartId + "/items",
+                                        "{\"productId\":\"" + productId + "\",\"quantity\":" + quantity + "}"), latencies, errors);
+                                lines.put(productId, quantity);
+                            }
+                            String body = call(http, "checkout", post(base, "api/carts/" + cartId + "/checkout",
+                                    Json.write(Map.of("orderId", cartId + "-" + session++, "lines", lines))), latencies, errors);
+                            if (body != null && body.contains("\"BUSY\"")) {
+                                busy.increment();
+                                call(http, "release", HttpRequest.newBuilder(base.resolve("api/carts/" + cartId)).DELETE(),
+                                        latencies, errors);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long total = 0;
+        System.out.printf("%-10s %10s %10s %10s %10s%n", "endpoint", "requests", "p50 ms", "p99 ms", "max ms");
+        for (String endpoint : List.of("search", "reserve", "checkout", "release")) {
+            ConcurrentLinkedQueue<Long> samples = latencies.get(endpoint);
+            if (samples == null) {
+                continue;
+            }
+            long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+            total += sorted.length;
+            System.out.printf("%-10s %10d %10.2f %10.2f %10.2f%n", endpoint, sorted.length,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        }
+        System.out.printf("clients=%d: %d requests in %.1f s (%.0f req/s), %d orders stored, %d busy, %d errors%n",
+                clients, total, elapsed, total / elapsed, log.liveOrderCount(), busy.sum(), errors.sum());
+
+        server.close();
+        orders.close();
+        ledger.close();
+        log.close();
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+        System.exit(errors.sum() == 0 ? 0 : 1);
+    }
+
+    private static HttpRequest.Builder post(URI base, String path, String json) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    /**
+     * @return the response body, or null if the request failed
+     */
+    private static String call(HttpClient http, String endpoint, HttpRequest.Builder request,
+                               Map<String, ConcurrentLinkedQueue<Long>> latencies, LongAdder errors) {
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            latencies.computeIfAbsent(endpoint, e -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - t0);
+            // 503 is the order service asking for a retry, not a failure
+            if (response.statusCode() >= 400 && response.statusCode() != 503) {
+                errors.increment();
+            }
+            return response.body();
+        } catch (Exception e) {
+            errors.increment();
+            return null;
+        }
+    }
+
+    private static double percentile(long[] sorted, double q) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.max(0, Math.ceil(q * sorted.length) - 1));
+        return sorted[index] / 1e6;
+    }
+}
@@ -0,0 +1,125 @@
+import javafx.application.Application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures cold start of the app: time to first frame and time to interactive, each from JVM
+ * start, over several fresh JVMs, first without and then with an AppCDS archive.
+ * <p>
+ * Every run starts the real app in a child JVM against a generated catalogue in a temporary
+ * data directory, with {@code -Djecrc.startup.report=true -Djecrc.startup.exit=true} so it
+ * prints its milestones (see {@link StartupTimer}) and quits once interactive. Between the two
+ * series one run dumps the classes it loaded into an archive with
+ * {@code -XX:ArchiveClassesAtExit}; the second series maps it with
+ * {@code -XX:SharedArchiveFile}. Needs a display.
+ * <p>
+ * Usage: {@code java StartupBenchmark [runs] [products]}
+ */
+public class StartupBenchmark {
+
+    private static final Pattern REPORT = Pattern.compile("startup firstFrame=(-?\\d+) interactive=(\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            // From the class path the app has to be launched through a class that is not itself
+            // an Application
+            Application.launch(JECRC_FoodsApp.class, Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int productCount = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        Path dir = Files.createTempDirectory("startup-bench");
+        Path dataDir = Files.createDirectories(dir.resolve("data"));
+        CatalogueFile.write(dataDir.resolve("catalogue.bin"), SyntheticCatalogue.generate(productCount, 3));
+        Path archive = dir.resolve("jecrc-foods.jsa");
+
+        System.out.printf("%,d products, %d runs per configuration%n", productCount, runs);
+        report("default", series(dir, runs, List.of()));
+        long[] dump = run(dir, List.of("-XX:ArchiveClassesAtExit=" + archive));
+        if (dump == null || !Files.exists(archive)) {
+            System.out.println("Could not create the AppCDS archive; skipping the CDS runs");
+            return;
+        }
+        System.out.printf("archive %,d KB%n", Files.size(archive) / 1024);
+        report("AppCDS", series(dir, runs, List.of("-XX:SharedArchiveFile=" + archive)));
+    }
+
+    private static List<long[]> series(Path dir, int runs, List<String> jvmOptions) throws Exception {
+        List<long[]> results = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            long[] result = run(dir, jvmOptions);
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Starts the app once in a fresh JVM.
+     *
+     * @return first frame and interactive in ms, or null if the run did not report them
+     */
+    private static long[] run(Path dir, List<String> jvmOptions) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        // Keep options such as --enable-preview or module flags, but not this JVM's own archive
+        for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!option.startsWith("-XX:SharedArchiveFile") && !option.startsWith("-XX:ArchiveClassesAtExit")
+                    && !option.startsWith("-agentlib") && !option.startsWith("-javaagent")) {
+                command.add(option);
+            }
+        }
+        command.addAll(jvmOptions);
+        command.addAll(List.of(
+                "-Djecrc.data.dir=" + dir.resolve("data"),
+                "-Djecrc.cache.dir=" + dir.resolve("cache"),
+                // No network: images come from an empty directory and show their placeholder
+                "-Djecrc.images.dir=" + dir.resolve("images"),
+                "-Djecrc.startup.report=true",
+                "-Djecrc.startup.exit=true",
+                "-cp", System.getProperty("java.class.path"),
+                StartupBenchmark.class.getName(), "--child"));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long[] result = null;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                Matcher m = REPORT.matcher(line);
+                if (m.find()) {
+                    result = new long[]{Long.parseLong(m.group(1)), Long.parseLong(m.group(2))};
+                }
+            }
+        }
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+        if (result == null) {
+            System.out.println("  run did not report startup times (exit " + process.exitValue() + ")");
+        }
+        return result;
+    }
+
+    private static void report(String label, List<long[]> results) {
+        if (results.isEmpty()) {
+            System.out.println(label + ": no successful runs");
+            return;
+        }
+        long[] firstFrame = results.stream().mapToLong(r -> r[0]).sorted().toArray();
+        long[] interactive = results.stream().mapToLong(r -> r[1]).sorted().toArray();
+        System.out.printf("%-8s first frame median %,5d ms (min %,d)   interactive median %,5d ms (min %,d)%n",
+                label, firstFrame[firstFrame.length / 2], firstFrame[0],
+                interactive[interactive.length / 2], interactive[0]);
+    }
+}
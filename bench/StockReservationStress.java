@@ -0,0 +1,124 @@
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hammers {@link StockLedger} from many threads and checks that nothing is oversold.
+ * <p>
+ * Every thread plays a kiosk: it fills a cart with a few scarce products, then checks out,
+ * clears the cart or walks away and lets the reservation expire. Meddler threads change lines
+ * of whatever cart a kiosk is working on, so reservations race with that cart's checkout. The
+ * reservation TTL is kept short so expiry races with checkouts too. At the end, for every
+ * product, the units sold plus the units still available must equal the opening stock, and no
+ * abandoned cart may be left in the ledger. Exits with status 1 otherwise.
+ * <p>
+ * Usage: {@code java StockReservationStress [threads] [seconds]}
+ */
+public class StockReservationStress {
+
+    private static final int PRODUCTS = 50;
+    // The first few products sell out early so checkouts keep fighting over the last units;
+    // the rest keep the run going
+    private static final int SCARCE_PRODUCTS = 10;
+    private static final int MEDDLERS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        StockLedger ledger = new StockLedger(Duration.ofMillis(20));
+        for (int p = 0; p < PRODUCTS; p++) {
+            ledger.setAvailable("p" + p, openingStock(p));
+        }
+
+        AtomicIntegerArray sold = new AtomicIntegerArray(PRODUCTS);
+        LongAdder checkouts = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        // The cart each kiosk is working on, for the meddlers
+        AtomicReferenceArray<String> currentCart = new AtomicReferenceArray<>(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + MEDDLERS);
+        for (int m = 0; m < MEDDLERS; m++) {
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    String cartId = currentCart.get(random.nextInt(threads));
+                    if (cartId != null) {
+                        // Lands in the cart before, during or after its checkout
+                        ledger.reserve(cartId, "p" + random.nextInt(PRODUCTS), random.nextInt(3));
+                    }
+                }
+            });
+        }
+        for (int t = 0; t < threads; t++) {
+            int kiosk = t;
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long carts = 0;
+                while (System.nanoTime() < deadline) {
+                    String cartId = "kiosk-" + kiosk + "-" + carts++;
+                    currentCart.set(kiosk, cartId);
+                    int lines = 1 + random.nextInt(4);
+                    for (int i = 0; i < lines; i++) {
+                        ledger.reserve(cartId, "p" + random.nextInt(PRODUCTS), 1 + random.nextInt(3));
+                    }
+
+                    int action = random.nextInt(10);
+                    if (action < 6) {
+                        StockLedger.CommitResult result = ledger.commit(cartId);
+                        if (result.committed()) {
+                            result.lines().forEach((id, qty) -> sold.addAndGet(Integer.parseInt(id.substring(1)), qty));
+                            checkouts.increment();
+                        } else {
+                            rejected.increment();
+                            ledger.releaseCart(cartId);
+                        }
+                    } else if (action < 8) {
+                        ledger.releaseCart(cartId);
+                    }
+                    // otherwise: abandoned, the sweeper has to give the stock back
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 30L, TimeUnit.SECONDS);
+
+        // Let every abandoned reservation expire, then let the sweeper drop the abandoned carts
+        Thread.sleep(100);
+        ledger.expireReservations();
+        ledger.close();
+
+        boolean ok = true;
+        if (ledger.cartCount() != 0) {
+            System.out.printf("VIOLATION: %d abandoned carts still held%n", ledger.cartCount());
+            ok = false;
+        }
+        long totalSold = 0;
+        long totalStock = 0;
+        for (int p = 0; p < PRODUCTS; p++) {
+            String id = "p" + p;
+            int left = ledger.available(id);
+            totalSold += sold.get(p);
+            totalStock += openingStock(p);
+            int opening = openingStock(p);
+            if (left < 0 || sold.get(p) > opening || left + sold.get(p) != opening || ledger.reserved(id) != 0) {
+                System.out.printf("VIOLATION %s: sold %d, available %d, reserved %d, opening %d%n",
+                        id, sold.get(p), left, ledger.reserved(id), opening);
+                ok = false;
+            }
+        }
+
+        System.out.printf("threads %d, %d s: %d checkouts (%.0f/s), %d rejected, %d of %d units sold%n",
+                threads, seconds, checkouts.sum(), checkouts.sum() / (double) seconds, rejected.sum(),
+                totalSold, totalStock);
+        System.out.println(ok ? "OK: nothing oversold, all stock accounted for" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static int openingStock(int product) {
+        return product < SCARCE_PRODUCTS ? 100 : 1_000_000;
+    }
+}
@@ -0,0 +1,41 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates menus that look like a large multi-outlet catalogue: unique names, descriptions
+ * and image URLs drawn from a limited set, a handful of categories. Every product gets its own
+ * string instances, the way a parser would produce them.
+ */
+final class SyntheticCatalogue {
+
+    static final String[] CATEGORIES = {"Pizza", "Burgers", "Salads", "Indian", "Desserts", "Beverages", "Chinese", "South Indian"};
+
+    private static final String[] WORDS = {
+            "paneer", "tikka", "masala", "butter", "garlic", "naan", "veg", "chicken", "spicy", "cheese",
+            "roll", "wrap", "dosa", "idli", "sambar", "coffee", "tea", "shake", "mango", "lassi",
+            "margherita", "farmhouse", "peri", "classic", "chocolate", "brownie", "noodles", "manchurian"
+    };
+
+    private SyntheticCatalogue() {
+    }
+
+    static List<JECRC_FoodsApp.Product> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<JECRC_FoodsApp.Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = word(random) + " " + word(random) + " " + (i % 997);
+            String description = "Fresh " + word(random) + " with " + word(random) + ".";
+            String category = new String(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            String image = "https://i.pinimg.com/736x/" + (i % 500) + ".jpg";
+            double price = 0.5 + random.nextInt(2000) / 100.0;
+            products.add(new JECRC_FoodsApp.Product("p" + i, name, description, price, category, image,
+                    random.nextInt(50)));
+        }
+        return products;
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,102 @@
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.Pane;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Theme toggle latency against the number of nodes on screen: the root pseudo-class toggle
+ * {@link ThemeManager} does, against swapping one stylesheet for another, which is what the
+ * theme switch used to do. Each toggle is followed by the CSS and layout pass the next pulse
+ * would run, which is where the cost lands.
+ * <p>
+ * The scenes hold real product cards (about 15 nodes each). The swap variant alternates two
+ * copies of the theme stylesheet, the second with the light palette promoted to {@code .root}.
+ * Needs a display.
+ * <p>
+ * Usage: {@code java ThemeToggleBenchmark [--cards=100,1000,5000]}
+ */
+public class ThemeToggleBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int[] cardCounts = {100, 1_000, 5_000};
+        for (String arg : args) {
+            if (arg.startsWith("--cards=")) {
+                cardCounts = java.util.Arrays.stream(arg.substring(8).split(",")).mapToInt(Integer::parseInt).toArray();
+            }
+        }
+        try {
+            CompletableFuture<Void> started = new CompletableFuture<>();
+            Platform.startup(() -> started.complete(null));
+            started.get(30, TimeUnit.SECONDS);
+        } catch (Throwable t) {
+            System.out.println("No JavaFX toolkit available (" + t + "); nothing to measure");
+            return;
+        }
+
+        String css = Files.readString(Path.of(ThemeToggleBenchmark.class.getResource("/theme.css").toURI()));
+        Path dir = Files.createTempDirectory("theme-bench");
+        Path darkSheet = Files.writeString(dir.resolve("dark.css"), css, StandardCharsets.UTF_8);
+        Path lightSheet = Files.writeString(dir.resolve("light.css"), css.replace(".root:light", ".root"), StandardCharsets.UTF_8);
+        String[] sheets = {darkSheet.toUri().toString(), lightSheet.toUri().toString()};
+
+        Bench bench = new Bench(5, 15);
+        System.out.printf("%-32s %14s%n", "benchmark", "us/toggle");
+        for (int cards : cardCounts) {
+            List<JECRC_FoodsApp.Product> products = SyntheticCatalogue.generate(cards, 11);
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            Platform.runLater(() -> {
+                try {
+                    Scene pseudo = scene(products);
+                    ThemeManager.getInstance().applyTheme(pseudo);
+                    report(bench.run("toggle.pseudoClass/" + cards, 1, i -> {
+                        ThemeManager.getInstance().toggleTheme(pseudo);
+                        return pulse(pseudo);
+                    }));
+
+                    Scene swap = scene(products);
+                    swap.getStylesheets().add(sheets[0]);
+                    report(bench.run("toggle.stylesheetSwap/" + cards, 1, i -> {
+                        String next = swap.getStylesheets().get(0).equals(sheets[0]) ? sheets[1] : sheets[0];
+                        swap.getStylesheets().setAll(next);
+                        return pulse(swap);
+                    }));
+                    done.complete(null);
+                } catch (Throwable t) {
+                    done.completeExceptionally(t);
+                }
+            });
+            done.get(10, TimeUnit.MINUTES);
+        }
+        Platform.exit();
+    }
+
+    private static Scene scene(List<JECRC_FoodsApp.Product> products) {
+        FlowPane grid = new FlowPane(20, 20);
+        grid.setPrefWrapLength(1200);
+        for (JECRC_FoodsApp.Product product : products) {
+            ProductCard card = new ProductCard((p, q) -> { });
+            card.bind(product);
+            grid.getChildren().add(card);
+        }
+        Scene scene = new Scene(new Pane(grid), 1200, 800);
+        pulse(scene);
+        return scene;
+    }
+
+    private static Object pulse(Scene scene) {
+        scene.getRoot().applyCss();
+        scene.getRoot().layout();
+        return scene.getRoot();
+    }
+
+    private static void report(Bench.Result result) {
+        System.out.printf("%-32s %14.1f%n", result.name(), result.nanosPerOp() / 1_000);
+    }
+}
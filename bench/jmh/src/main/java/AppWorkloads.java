@@ -0,0 +1,136 @@
+import jecrc.jmh.Workload;
+import jecrc.jmh.Workloads;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The app's hot paths for the JMH suite: the same operations on the same synthetic data as
+ * {@link HotPathBenchmarks}, called through the app's own classes. Cards are left to
+ * {@code HotPathBenchmarks}, as they need a JavaFX toolkit.
+ */
+public class AppWorkloads implements Workloads {
+
+    private static final Set<String> CART_WORKLOADS =
+            Set.of("cart.addToCart", "cart.quantityChange.running", "cart.quantityChange.recompute");
+
+    @Override
+    public Workload create(String name, int size, int lines) {
+        List<JECRC_FoodsApp.Product> products = SyntheticCatalogue.generate(size, 42);
+        if (name.startsWith("query.")) {
+            return query(name, products);
+        }
+        if (name.startsWith("recommend.")) {
+            return recommend(name, products);
+        }
+        if (name.startsWith("cart.")) {
+            return cart(name, products, lines);
+        }
+        throw new IllegalArgumentException("Unknown workload: " + name);
+    }
+
+    private static Workload query(String name, List<JECRC_FoodsApp.Product> products) {
+        CatalogueModel catalogue = new CatalogueModel();
+        ProductSearchIndex index = new ProductSearchIndex();
+        catalogue.addListener(index.listener());
+        catalogue.addAll(products);
+        return switch (name) {
+            case "query.linear.text+category+sort" -> i -> HotPathBenchmarks.linearQuery(products, "paneer", "Indian");
+            case "query.indexed.text+category+sort" ->
+                    i -> catalogue.select("Indian", CatalogueModel.Sort.PRICE_LOW_TO_HIGH, index.search("paneer"));
+            case "query.linear.category+sort" -> i -> HotPathBenchmarks.linearQuery(products, "", "Indian");
+            case "query.indexed.category+sort" -> i -> catalogue.view("Indian", CatalogueModel.Sort.PRICE_LOW_TO_HIGH);
+            case "query.indexed.typo" -> i -> index.search("panner tika");
+            default -> throw new IllegalArgumentException("Unknown workload: " + name);
+        };
+    }
+
+    private static Workload recommend(String name, List<JECRC_FoodsApp.Product> products) {
+        List<Order> orders = HotPathBenchmarks.orders(products);
+        RecommendationEngine engine = new RecommendationEngine(32, Duration.ofHours(4));
+        orders.forEach(engine::record);
+        return switch (name) {
+            case "recommend.recordOrder" -> i -> {
+                engine.record(orders.get(i % orders.size()));
+                return engine;
+            };
+            case "recommend.goesWellWith" -> {
+                List<String> cart = new ArrayList<>();
+                for (int l = 0; l < 5; l++) {
+                    cart.add(products.get(l * 3 % products.size()).id);
+                }
+                yield i -> engine.goesWellWith(cart, 3);
+            }
+            case "recommend.rankByPopularity" -> {
+                List<JECRC_FoodsApp.Product> indian = products.stream().filter(p -> p.category.equals("Indian")).toList();
+                yield i -> engine.rankByPopularity(indian);
+            }
+            default -> throw new IllegalArgumentException("Unknown workload: " + name);
+        };
+    }
+
+    private static Workload cart(String name, List<JECRC_FoodsApp.Product> products, int lines) {
+        if (!CART_WORKLOADS.contains(name)) {
+            throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+        if (lines < 1 || lines > products.size()) {
+            throw new IllegalArgumentException("A cart of " + lines + " lines from " + products.size() + " products");
+        }
+        StockLedger ledger = new StockLedger(Duration.ofMinutes(10));
+        OrderService service = new OrderService(new CatalogueModel(), ledger, null, 16, 1);
+        for (JECRC_FoodsApp.Product p : products) {
+            ledger.setAvailable(p.id, 1_000_000);
+        }
+        CartModel cart = new CartModel();
+        String cartId = "bench";
+        Workload operation;
+        if (name.equals("cart.addToCart")) {
+            // The station's own add path, answers applied in place. Every product is added
+            // twice, a new line and then one more unit, before the cart starts over.
+            CartReservations reservations = new CartReservations(cart, cartId, Runnable::run, HotPathBenchmarks.SILENT);
+            reservations.connect(service);
+            operation = i -> {
+                if (i % (lines * 2) == 0) {
+                    cart.clear();
+                    ledger.releaseCart(cartId);
+                }
+                JECRC_FoodsApp.Product p = products.get(i % lines);
+                reservations.add(p, 1);
+                return cart.get(p.id);
+            };
+        } else {
+            for (int l = 0; l < lines; l++) {
+                cart.add(products.get(l), 1);
+            }
+            List<JECRC_FoodsApp.CartItem> items = new ArrayList<>(cart.getItems());
+            operation = switch (name) {
+                case "cart.quantityChange.running" -> i -> {
+                    items.get(i % lines).quantity.set(1 + (i & 3));
+                    return cart.getTotalPaise();
+                };
+                // What every change used to cost: walk the cart twice
+                case "cart.quantityChange.recompute" -> i -> {
+                    items.get(i % lines).quantity.set(1 + (i & 3));
+                    int count = items.stream().mapToInt(it -> it.quantity.get()).sum();
+                    double total = items.stream().mapToDouble(it -> it.product.price * it.quantity.get()).sum();
+                    return String.format("%d ₹%.0f", count, total * 83);
+                };
+                default -> throw new IllegalArgumentException("Unknown workload: " + name);
+            };
+        }
+        return new Workload() {
+            @Override
+            public Object run(int i) {
+                return operation.run(i);
+            }
+
+            @Override
+            public void close() throws Exception {
+                service.close();
+                ledger.close();
+            }
+        };
+    }
+}
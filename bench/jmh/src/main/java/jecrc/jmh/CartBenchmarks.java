@@ -0,0 +1,46 @@
+package jecrc.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding to the cart through the station's reservation path against the in-process backend,
+ * and changing a line's quantity with the running totals, next to recomputing them the way
+ * every change used to.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class CartBenchmarks {
+
+    @Param({"cart.addToCart", "cart.quantityChange.running", "cart.quantityChange.recompute"})
+    public String workload;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"10", "100", "1000"})
+    public int lines;
+
+    private Workload running;
+    private int calls;
+
+    @Setup
+    public void setUp() {
+        running = Workloads.load().create(workload, size, lines);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        running.close();
+    }
+
+    @Benchmark
+    public Object run() {
+        return running.run(calls++);
+    }
+}
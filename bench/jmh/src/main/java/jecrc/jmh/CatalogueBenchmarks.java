@@ -0,0 +1,44 @@
+package jecrc.jmh;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The product query, next to the linear filter/sort it replaced, and the recommendations, on
+ * synthetic catalogues of 1k, 10k and 100k products.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@State(Scope.Thread)
+public class CatalogueBenchmarks {
+
+    @Param({"query.linear.text+category+sort", "query.indexed.text+category+sort",
+            "query.linear.category+sort", "query.indexed.category+sort", "query.indexed.typo",
+            "recommend.recordOrder", "recommend.goesWellWith", "recommend.rankByPopularity"})
+    public String workload;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Workload running;
+    private int calls;
+
+    @Setup
+    public void setUp() {
+        running = Workloads.load().create(workload, size, 0);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        running.close();
+    }
+
+    @Benchmark
+    public Object run() {
+        return running.run(calls++);
+    }
+}
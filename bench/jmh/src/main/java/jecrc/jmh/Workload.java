@@ -0,0 +1,21 @@
+package jecrc.jmh;
+
+/**
+ * One of the app's hot paths on a catalogue that is set up and ready to use.
+ */
+@FunctionalInterface
+public interface Workload extends AutoCloseable {
+
+    /**
+     * Runs the operation once.
+     *
+     * @param i how many times it ran before, to vary the input
+     * @return something the operation produced, so the JIT cannot drop it
+     */
+    Object run(int i);
+
+    /** Lets go of what the workload holds, e.g. a backend's threads. */
+    @Override
+    default void close() throws Exception {
+    }
+}
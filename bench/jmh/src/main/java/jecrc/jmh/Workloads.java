@@ -0,0 +1,32 @@
+package jecrc.jmh;
+
+import java.util.ServiceLoader;
+
+/**
+ * Sets up the app's hot paths for the benchmarks. JMH only runs benchmarks in a named package,
+ * which cannot see the app's classes in the default package, so the app provides this
+ * through {@link ServiceLoader} ({@code AppWorkloads} in this module).
+ * <p>
+ * Build and run from {@code bench/jmh}:
+ * <pre>
+ * mvn -B package
+ * java --enable-preview -jar target/benchmarks.jar -prof gc
+ * </pre>
+ * {@code gc.alloc.rate.norm} in the results is the bytes allocated per operation. JMH options
+ * narrow a run, e.g. {@code CartBenchmarks -p size=10000 -p lines=100}.
+ */
+public interface Workloads {
+
+    /**
+     * @param name  the operation, named as in {@code HotPathBenchmarks}, e.g. "query.indexed.typo"
+     * @param size  products in the synthetic catalogue
+     * @param lines lines in the cart, for the cart operations
+     * @throws IllegalArgumentException if there is no operation of that name
+     */
+    Workload create(String name, int size, int lines);
+
+    static Workloads load() {
+        return ServiceLoader.load(Workloads.class).findFirst()
+                .orElseThrow(() -> new IllegalStateException("No " + Workloads.class.getName() + " on the class path"));
+    }
+}
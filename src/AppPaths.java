@@ -0,0 +1,59 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Per-user locations the app writes to. Every directory can be overridden with a system
+ * property, which is also how local runs and tests keep their files apart.
+ */
+public final class AppPaths {
+
+    private static final String APP_DIR = "jecrc-foods";
+
+    private AppPaths() {
+    }
+
+    /**
+     * Data that must survive restarts, such as the catalogue and the order log: %APPDATA% on
+     * Windows, ~/Library/Application Support on macOS and $XDG_DATA_HOME (or ~/.local/share)
+     * elsewhere.
+     */
+    public static Path dataDir() {
+        String override = System.getProperty("jecrc.data.dir");
+        if (override != null) {
+            return Paths.get(override);
+        }
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        if (os.contains("win")) {
+            String roaming = System.getenv("APPDATA");
+            return Paths.get(roaming != null ? roaming : home, APP_DIR);
+        }
+        if (os.contains("mac")) {
+            return Paths.get(home, "Library", "Application Support", APP_DIR);
+        }
+        String xdg = System.getenv("XDG_DATA_HOME");
+        return Paths.get(xdg != null && !xdg.isEmpty() ? xdg : Paths.get(home, ".local", "share").toString(), APP_DIR);
+    }
+
+    /**
+     * Disposable data such as downloaded images: %LOCALAPPDATA% on Windows,
+     * ~/Library/Caches on macOS and $XDG_CACHE_HOME (or ~/.cache) elsewhere.
+     */
+    public static Path cacheDir() {
+        String override = System.getProperty("jecrc.cache.dir");
+        if (override != null) {
+            return Paths.get(override);
+        }
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String home = System.getProperty("user.home");
+        if (os.contains("win")) {
+            String local = System.getenv("LOCALAPPDATA");
+            return Paths.get(local != null ? local : home, APP_DIR, "cache");
+        }
+        if (os.contains("mac")) {
+            return Paths.get(home, "Library", "Caches", APP_DIR);
+        }
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        return Paths.get(xdg != null && !xdg.isEmpty() ? xdg : Paths.get(home, ".cache").toString(), APP_DIR);
+    }
+}
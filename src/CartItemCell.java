@@ -0,0 +1,148 @@
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * One line of the cart.
+ * <p>
+ * The node graph is built once per cell. {@link #updateItem} only moves the cell to another
+ * cart item: it detaches from the previous item's quantity and attaches to the new one, so a
+ * cell holds exactly one listener on at most one item however often it is reused.
+ */
+public class CartItemCell extends ListCell<JECRC_FoodsApp.CartItem> {
+
+    static final int IMAGE_WIDTH = 60;
+    static final int IMAGE_HEIGHT = 45;
+
+    private final HBox container = new HBox();
+    private final ImageView imageView = new ImageView();
+    private final Label nameLabel = new Label();
+    private final Label priceLabel = new Label();
+    private final SpinnerValueFactory.IntegerSpinnerValueFactory quantityFactory =
+            new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 1, 1);
+
+    // The item's quantity drives the spinner and the spinner writes back; one listener each way
+    private final ChangeListener<Number> quantityListener = (obs, oldQty, newQty) -> showQuantity(newQty.intValue());
+    private JECRC_FoodsApp.CartItem bound;
+    // The image request for the item shown; withdrawn when the cell moves on
+    private CompletableFuture<Image> imageLoad;
+    private boolean syncing;
+
+    public CartItemCell(Consumer<JECRC_FoodsApp.Product> onRemove) {
+        container.setSpacing(10);
+        container.setAlignment(Pos.CENTER_LEFT);
+
+        imageView.setFitWidth(IMAGE_WIDTH);
+        imageView.setFitHeight(IMAGE_HEIGHT);
+        imageView.setPreserveRatio(true);
+
+        VBox details = new VBox();
+        nameLabel.setStyle("-fx-font-weight: bold;");
+        details.getChildren().addAll(nameLabel, priceLabel);
+
+        Spinner<Integer> qtySpinner = new Spinner<>(quantityFactory);
+        qtySpinner.setPrefWidth(75);
+        quantityFactory.valueProperty().addListener((obs, oldQty, newQty) -> {
+            if (!syncing && bound != null && newQty != null) {
+                bound.quantity.set(newQty);
+            }
+        });
+
+        Button removeBtn = new Button("Remove");
+        removeBtn.setStyle("-fx-background-color:#ef4444; -fx-text-fill:white;");
+        removeBtn.setOnAction(e -> {
+            if (bound != null) {
+                onRemove.accept(bound.product);
+            }
+        });
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        container.getChildren().addAll(imageView, details, spacer, qtySpinner, removeBtn);
+    }
+
+    @Override
+    protected void updateItem(JECRC_FoodsApp.CartItem item, boolean empty) {
+        super.updateItem(item, empty);
+        setText(null);
+        if (empty || item == null) {
+            bind(null);
+            setGraphic(null);
+        } else {
+            bind(item);
+            setGraphic(container);
+        }
+    }
+
+    private void bind(JECRC_FoodsApp.CartItem item) {
+        if (bound == item) {
+            return;
+        }
+        if (bound != null) {
+            bound.quantity.removeListener(quantityListener);
+        }
+        bound = item;
+        if (imageLoad != null) {
+            imageLoad.cancel(false);
+            imageLoad = null;
+        }
+        if (item == null) {
+            imageView.setImage(null);
+            return;
+        }
+
+        JECRC_FoodsApp.Product product = item.product;
+        Image cached = ImageCache.getInstance().getIfCached(product.imageUrl, IMAGE_WIDTH, IMAGE_HEIGHT);
+        imageView.setImage(cached);
+        if (cached == null) {
+            imageLoad = ImageCache.getInstance().load(product.imageUrl, IMAGE_WIDTH, IMAGE_HEIGHT);
+            imageLoad.thenAccept(image -> Platform.runLater(() -> {
+                if (bound == item) {
+                    imageView.setImage(image);
+                }
+            }));
+        }
+
+        nameLabel.setText(product.name);
+        priceLabel.setText(Money.format(item.unitPricePaise) + " each");
+
+        // product.stock is what is left for others; this cart can go up to that plus what it holds
+        syncing = true;
+        quantityFactory.setMax(Math.max(1, product.stock + item.quantity.get()));
+        syncing = false;
+        showQuantity(item.quantity.get());
+        item.quantity.addListener(quantityListener);
+    }
+
+    private void showQuantity(int quantity) {
+        syncing = true;
+        try {
+            if (quantity > quantityFactory.getMax()) {
+                quantityFactory.setMax(quantity);
+            }
+            quantityFactory.setValue(Math.max(1, quantity));
+        } finally {
+            syncing = false;
+        }
+    }
+
+    /** The item this cell currently listens to, if any. */
+    JECRC_FoodsApp.CartItem getBoundItem() {
+        return bound;
+    }
+}
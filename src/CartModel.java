@@ -0,0 +1,144 @@
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.*;
+
+/**
+ * The cart of one ordering station.
+ * <p>
+ * Item count and total are running sums: every quantity change applies its delta, so nothing is
+ * recomputed by walking the cart. Each add or remove is one targeted change to the observable
+ * item list, and quantity edits don't touch the list at all. Amounts are exact paise.
+ * <p>
+ * Must be used on the JavaFX Application Thread.
+ */
+public class CartModel {
+
+    private final ObservableList<JECRC_FoodsApp.CartItem> items = FXCollections.observableArrayList();
+    private final ObservableList<JECRC_FoodsApp.CartItem> readOnlyItems = FXCollections.unmodifiableObservableList(items);
+    private final HashMap<String, JECRC_FoodsApp.CartItem> byProductId = new HashMap<>();
+    private final IdentityHashMap<JECRC_FoodsApp.CartItem, ChangeListener<Number>> quantityListeners = new IdentityHashMap<>();
+
+    private final ReadOnlyIntegerWrapper count = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyLongWrapper totalPaise = new ReadOnlyLongWrapper();
+
+    public ObservableList<JECRC_FoodsApp.CartItem> getItems() {
+        return readOnlyItems;
+    }
+
+    public JECRC_FoodsApp.CartItem get(String productId) {
+        return byProductId.get(productId);
+    }
+
+    public boolean isEmpty() {
+        return byProductId.isEmpty();
+    }
+
+    /**
+     * Adds a line for a product that is not in the cart yet.
+     */
+    public JECRC_FoodsApp.CartItem add(JECRC_FoodsApp.Product product, int quantity) {
+        if (byProductId.containsKey(product.id)) {
+            throw new IllegalArgumentException("Already in cart: " + product.id);
+        }
+        JECRC_FoodsApp.CartItem item = new JECRC_FoodsApp.CartItem(product);
+        item.quantity.set(quantity);
+
+        ChangeListener<Number> listener = (obs, oldQty, newQty) ->
+                apply(item, newQty.intValue() - oldQty.intValue());
+        item.quantity.addListener(listener);
+        quantityListeners.put(item, listener);
+
+        byProductId.put(product.id, item);
+        items.add(item);
+        apply(item, quantity);
+        return item;
+    }
+
+    public JECRC_FoodsApp.CartItem remove(String productId) {
+        JECRC_FoodsApp.CartItem item = byProductId.remove(productId);
+        if (item == null) {
+            return null;
+        }
+        item.quantity.removeListener(quantityListeners.remove(item));
+        items.remove(item);
+        apply(item, -item.quantity.get());
+        return item;
+    }
+
+    /**
+     * Replaces a line with one at the product's current price, keeping its quantity and its
+     * place in the cart.
+     */
+    public JECRC_FoodsApp.CartItem reprice(JECRC_FoodsApp.Product product) {
+        JECRC_FoodsApp.CartItem old = byProductId.get(product.id);
+        if (old == null) {
+            return null;
+        }
+        int index = items.indexOf(old);
+        int quantity = old.quantity.get();
+        old.quantity.removeListener(quantityListeners.remove(old));
+        apply(old, -quantity);
+
+        JECRC_FoodsApp.CartItem item = new JECRC_FoodsApp.CartItem(product);
+        item.quantity.set(quantity);
+        ChangeListener<Number> listener = (obs, oldQty, newQty) ->
+                apply(item, newQty.intValue() - oldQty.intValue());
+        item.quantity.addListener(listener);
+        quantityListeners.put(item, listener);
+        byProductId.put(product.id, item);
+        items.set(index, item);
+        apply(item, quantity);
+        return item;
+    }
+
+    public void clear() {
+        for (JECRC_FoodsApp.CartItem item : items) {
+            item.quantity.removeListener(quantityListeners.get(item));
+        }
+        quantityListeners.clear();
+        byProductId.clear();
+        items.clear();
+        count.set(0);
+        totalPaise.set(0);
+    }
+
+    public ReadOnlyIntegerProperty countProperty() {
+        return count.getReadOnlyProperty();
+    }
+
+    public ReadOnlyLongProperty totalPaiseProperty() {
+        return totalPaise.getReadOnlyProperty();
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+
+    public long getTotalPaise() {
+        return totalPaise.get();
+    }
+
+    /**
+     * The cart as order lines, priced at the unit prices captured when the items were added.
+     */
+    public List<Order.Line> toOrderLines() {
+        List<Order.Line> lines = new ArrayList<>(items.size());
+        for (JECRC_FoodsApp.CartItem item : items) {
+            lines.add(new Order.Line(item.product.id, item.product.name, item.quantity.get(), item.unitPricePaise));
+        }
+        return lines;
+    }
+
+    private void apply(JECRC_FoodsApp.CartItem item, int quantityDelta) {
+        if (quantityDelta != 0) {
+            count.set(count.get() + quantityDelta);
+            totalPaise.set(totalPaise.get() + quantityDelta * item.unitPricePaise);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a station's cart in step with the stock it holds at the counter: every add, quantity
+ * edit and removal is sent to the {@link OrderingBackend} under the cart's id, and each line is
+ * then corrected to what the cart could hold, which may be less.
+ * <p>
+ * Calls to a remote backend are made one after another on a thread of the cart's own, so the
+ * FX thread never waits on the network and the counter sees them in the order they were made;
+ * an in-process backend is called directly. Answers are applied through {@code answers}, the
+ * FX thread for a station, as the cart must only be changed there.
+ */
+public class CartReservations {
+
+    /** Hears what the counter could not do, to tell the customer. Called through {@code answers}. */
+    public interface Listener {
+
+        /**
+         * The counter holds less of a product than the cart asked for.
+         *
+         * @param held   what the cart holds now; the line is removed if that is 0
+         * @param before what the line held before the change that fell short
+         */
+        void shortage(JECRC_FoodsApp.Product product, int held, int before);
+
+        /** The counter could not be reached; the line is back to what it held before. */
+        void unreachable(IOException e);
+    }
+
+    private interface BackendCall<T> {
+        T call() throws IOException;
+    }
+
+    private final CartModel cart;
+    private final String cartId;
+    private final Executor answers;
+    private final Listener listener;
+    // Null until connected
+    private OrderingBackend backend;
+    private Executor calls;
+    // Set while a line is corrected to what the backend holds, so that is not sent back
+    private boolean applyingHeld;
+    // Id of the order being checked out, kept until an answer says whether it was placed
+    private String orderId;
+    private boolean closed;
+
+    public CartReservations(CartModel cart, String cartId, Executor answers, Listener listener) {
+        this.cart = cart;
+        this.cartId = cartId;
+        this.answers = answers;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts reserving through the given backend.
+     */
+    public void connect(OrderingBackend backend) {
+        this.backend = backend;
+        this.calls = backend.isRemote()
+                ? Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("cart-" + cartId).factory())
+                : Runnable::run;
+    }
+
+    public boolean isConnected() {
+        return backend != null;
+    }
+
+    /**
+     * Adds units of a product to the cart and reserves them.
+     */
+    public void add(JECRC_FoodsApp.Product product, int quantity) {
+        JECRC_FoodsApp.CartItem existing = cart.get(product.id);
+        if (existing != null) {
+            // The quantity listener reserves the new amount
+            existing.quantity.set(existing.quantity.get() + quantity);
+        } else {
+            JECRC_FoodsApp.CartItem item = cart.add(product, quantity);
+            followQuantity(item);
+            reserve(item, 0);
+        }
+    }
+
+    /**
+     * Takes a product out of the cart and hands its stock back.
+     */
+    public void remove(String productId) {
+        if (cart.remove(productId) != null) {
+            call(() -> {
+                backend.release(cartId, productId);
+                return null;
+            }, released -> {
+            }, () -> {
+            });
+        }
+    }
+
+    /**
+     * Moves a line to the product's current price; what the cart holds stays as it is.
+     */
+    public void reprice(JECRC_FoodsApp.Product product) {
+        if (cart.get(product.id) != null) {
+            followQuantity(cart.reprice(product));
+        }
+    }
+
+    /**
+     * Reserves every line again, after the counter put the cart's stock back.
+     */
+    public void holdAgain() {
+        new ArrayList<>(cart.getItems()).forEach(item -> reserve(item, item.quantity.get()));
+    }
+
+    /**
+     * Orders what the cart holds at the prices it shows, after any reservation still on its
+     * way, so the counter's cart matches the order.
+     * <p>
+     * After a {@link OrderService.Status#FAILED} answer the order may have been placed all the
+     * same, e.g. when the answer was lost on the network, so the next checkout sends the same
+     * order id and the counter answers with the order it already has. Any other answer settles
+     * the order, and the checkout after it is a new one. The returned future completes after
+     * that is settled, on {@code answers}.
+     */
+    public CompletableFuture<OrderService.OrderResult> checkout() {
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        Map<String, Long> prices = new HashMap<>();
+        for (JECRC_FoodsApp.CartItem item : cart.getItems()) {
+            lines.put(item.product.id, item.quantity.get());
+            prices.put(item.product.id, item.unitPricePaise);
+        }
+        boolean retry = orderId != null;
+        if (!retry) {
+            orderId = UUID.randomUUID().toString();
+        }
+        String id = orderId;
+        OrderService.OrderRequest request = new OrderService.OrderRequest(id, cartId, lines, prices);
+        return CompletableFuture.supplyAsync(() -> backend.checkout(request), calls)
+                .thenCompose(result -> result)
+                .whenCompleteAsync((result, error) -> {
+                    if (result == null || result.status() == OrderService.Status.FAILED || !id.equals(orderId)) {
+                        return;
+                    }
+                    orderId = null;
+                    if (retry && result.confirmed()) {
+                        // The cart was held again after the failed attempt; if that attempt
+                        // had placed the order, nothing used the new holds
+                        call(() -> {
+                            backend.releaseCart(cartId);
+                            return null;
+                        }, released -> {
+                        }, () -> {
+                        });
+                    }
+                }, answers);
+    }
+
+    /**
+     * Hands the cart's stock back. Later calls are ignored.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (backend == null) {
+            return;
+        }
+        calls.execute(() -> {
+            try {
+                backend.releaseCart(cartId);
+            } catch (IOException e) {
+                // The counter lets the holds expire
+                System.err.println("Failed to release cart: " + e.getMessage());
+            }
+        });
+        if (calls instanceof ExecutorService service) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Quantity edits in the cart move the reservation along with them.
+     */
+    private void followQuantity(JECRC_FoodsApp.CartItem item) {
+        item.quantity.addListener((obs, oldQty, newQty) -> {
+            if (!applyingHeld) {
+                reserve(item, oldQty.intValue());
+            }
+        });
+    }
+
+    /**
+     * Reserves what a line shows and corrects it to what the cart could hold. If the counter
+     * cannot be reached, the line goes back to {@code before}.
+     */
+    private void reserve(JECRC_FoodsApp.CartItem item, int before) {
+        int wanted = item.quantity.get();
+        call(() -> backend.reserve(cartId, item.product.id, wanted), held -> {
+            if (item.quantity.get() != wanted) {
+                // Edited again since; the newer reservation settles the line
+                return;
+            }
+            setHeld(item, held);
+            if (held < wanted) {
+                listener.shortage(item.product, held, before);
+            }
+        }, () -> {
+            if (item.quantity.get() == wanted) {
+                setHeld(item, before);
+            }
+        });
+    }
+
+    private void setHeld(JECRC_FoodsApp.CartItem item, int held) {
+        if (cart.get(item.product.id) != item) {
+            // Removed or repriced meanwhile
+            return;
+        }
+        if (held == 0) {
+            cart.remove(item.product.id);
+            return;
+        }
+        applyingHeld = true;
+        try {
+            item.quantity.set(held);
+        } finally {
+            applyingHeld = false;
+        }
+    }
+
+    /**
+     * Makes a backend call after the cart's earlier ones, then hands its answer to
+     * {@code answered}. If the counter cannot be reached, {@code failed} runs and the listener
+     * is told.
+     */
+    private <T> void call(BackendCall<T> request, Consumer<T> answered, Runnable failed) {
+        if (closed || backend == null) {
+            return;
+        }
+        calls.execute(() -> {
+            try {
+                T answer = request.call();
+                answers.execute(() -> {
+                    if (!closed) {
+                        answered.accept(answer);
+                    }
+                });
+            } catch (IOException e) {
+                answers.execute(() -> {
+                    if (!closed) {
+                        failed.run();
+                        listener.unreachable(e);
+                    }
+                });
+            }
+        });
+    }
+}
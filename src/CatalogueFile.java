@@ -0,0 +1,124 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary catalogue file.
+ * <p>
+ * Layout: magic, version, product count, the products, then a CRC32C of everything before it.
+ * Each product is its id, name, description, price, category, image URL and stock; strings are
+ * a length followed by UTF-8 bytes. Files are read through a memory mapping, so loading is one
+ * pass over the page cache without intermediate streams.
+ */
+public final class CatalogueFile {
+
+    private static final int MAGIC = 0x4A464331; // "JFC1"
+    private static final int VERSION = 1;
+
+    private CatalogueFile() {
+    }
+
+    public static List<JECRC_FoodsApp.Product> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    public static List<JECRC_FoodsApp.Product> read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 16 || buffer.getInt(buffer.position()) != MAGIC) {
+            throw new IOException("Not a catalogue file");
+        }
+        int start = buffer.position();
+        int end = buffer.limit() - 4;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(end));
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException("Catalogue file is corrupt (checksum mismatch)");
+        }
+
+        buffer.position(start + 4);
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported catalogue version " + version);
+        }
+        int count = buffer.getInt();
+        List<JECRC_FoodsApp.Product> products = new ArrayList<>(count);
+        // Categories repeat on every product; share one string per category
+        Map<String, String> categories = new HashMap<>();
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < count; i++) {
+            String id = getString(buffer, scratch);
+            String name = getString(buffer, scratch);
+            String description = getString(buffer, scratch);
+            double price = buffer.getDouble();
+            String category = categories.computeIfAbsent(getString(buffer, scratch), c -> c);
+            String imageUrl = getString(buffer, scratch);
+            int stock = buffer.getInt();
+            products.add(new JECRC_FoodsApp.Product(id, name, description, price, category, imageUrl, stock));
+        }
+        return products;
+    }
+
+    /**
+     * Writes the catalogue next to the target, forces it to disk and moves it into place, so
+     * readers see either the old or the new file, even after a power loss.
+     */
+    public static void write(Path file, Collection<? extends JECRC_FoodsApp.Product> products) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(Channels.newOutputStream(channel), products);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void write(OutputStream out, Collection<? extends JECRC_FoodsApp.Product> products) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + products.size() * 128);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(products.size());
+        for (JECRC_FoodsApp.Product p : products) {
+            putString(data, p.id);
+            putString(data, p.name);
+            putString(data, p.description);
+            data.writeDouble(p.price);
+            putString(data, p.category);
+            putString(data, p.imageUrl);
+            data.writeInt(p.stock);
+        }
+        data.flush();
+
+        CRC32C crc = new CRC32C();
+        byte[] body = bytes.toByteArray();
+        crc.update(body);
+        out.write(body);
+        new DataOutputStream(out).writeInt((int) crc.getValue());
+        out.flush();
+    }
+
+    static void putString(DataOutputStream out, String value) throws IOException {
+        byte[] encoded = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    static String getString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        byte[] target = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(target, 0, length);
+        return new String(target, 0, length, StandardCharsets.UTF_8);
+    }
+}
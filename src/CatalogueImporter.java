@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Streams vendor menu files into the catalogue.
+ * <p>
+ * CSV (with a header row naming the columns) and JSON (an array of product objects) are
+ * parsed row by row and handed on in batches, so memory use depends on the batch size, not on
+ * the file size. Rows are validated; bad rows are counted and the first few reported with
+ * their row number. Duplicate ids within a batch keep the last row; across batches the
+ * catalogue's upsert does the same.
+ * <p>
+ * Recognised columns/fields: id, name, description, price, category, imageUrl (or image),
+ * stock. Only id, name and price are required.
+ */
+public class CatalogueImporter {
+
+    /** Called with every batch of valid products, on the importing thread. */
+    @FunctionalInterface
+    public interface BatchSink {
+        void accept(List<JECRC_FoodsApp.Product> batch) throws InterruptedException;
+    }
+
+    public record Result(long rows, long imported, long duplicates, long invalid, List<String> errors, long millis) {
+    }
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final String DEFAULT_CATEGORY = "Other";
+
+    private final int batchSize;
+    private final BatchSink sink;
+
+    private LinkedHashMap<String, JECRC_FoodsApp.Product> batch;
+    private long rows;
+    private long imported;
+    private long duplicates;
+    private long invalid;
+    private final List<String> errors = new ArrayList<>();
+
+    public CatalogueImporter(int batchSize, BatchSink sink) {
+        this.batchSize = batchSize;
+        this.sink = sink;
+        this.batch = new LinkedHashMap<>(batchSize * 2);
+    }
+
+    /**
+     * Imports a file, choosing the format by its extension (.json, otherwise CSV).
+     */
+    public Result importFile(Path file) throws IOException, InterruptedException {
+        try (Reader in = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json") ? importJson(in) : importCsv(in);
+        }
+    }
+
+    public Result importCsv(Reader in) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        CsvReader csv = new CsvReader(in);
+        List<String> header = csv.next();
+        if (header == null) {
+            return result(started);
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        Integer id = columns.get("id");
+        Integer name = columns.get("name");
+        Integer price = columns.get("price");
+        if (id == null || name == null || price == null) {
+            throw new IOException("CSV header must name at least id, name and price columns");
+        }
+        Integer description = columns.get("description");
+        Integer category = columns.get("category");
+        Integer image = columns.containsKey("imageurl") ? columns.get("imageurl") : columns.get("image");
+        Integer stock = columns.get("stock");
+
+        List<String> row;
+        while ((row = csv.next()) != null) {
+            if (row.size() == 1 && row.get(0).isEmpty()) {
+                continue; // blank line
+            }
+            accept(cell(row, id), cell(row, name), cell(row, description), cell(row, price),
+                    cell(row, category), cell(row, image), cell(row, stock));
+        }
+        flush();
+        return result(started);
+    }
+
+    public Result importJson(Reader in) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        try {
+            Json.readArray(in, element -> {
+                if (!(element instanceof Map<?, ?> fields)) {
+                    rows++;
+                    reject("not an object");
+                    return;
+                }
+                Object image = fields.containsKey("imageUrl") ? fields.get("imageUrl") : fields.get("image");
+                try {
+                    accept(text(fields.get("id")), text(fields.get("name")), text(fields.get("description")),
+                            text(fields.get("price")), text(fields.get("category")), text(image), text(fields.get("stock")));
+                } catch (InterruptedException e) {
+                    throw new ImportInterrupted(e);
+                }
+            });
+        } catch (ImportInterrupted e) {
+            throw (InterruptedException) e.getCause();
+        }
+        flush();
+        return result(started);
+    }
+
+    /** Carries an interrupt out of the JSON element callback. */
+    private static final class ImportInterrupted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ImportInterrupted(InterruptedException cause) {
+            super(cause);
+        }
+    }
+
+    private void accept(String id, String name, String description, String price, String category,
+                        String image, String stock) throws InterruptedException {
+        rows++;
+        if (id == null || id.isBlank()) {
+            reject("missing id");
+            return;
+        }
+        if (name == null || name.isBlank()) {
+            reject("missing name for " + id);
+            return;
+        }
+        double parsedPrice;
+        int parsedStock;
+        try {
+            parsedPrice = Double.parseDouble(price);
+            parsedStock = stock == null || stock.isBlank() ? 0 : Integer.parseInt(stock.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            reject("bad price or stock for " + id);
+            return;
+        }
+        if (!Double.isFinite(parsedPrice) || parsedPrice < 0 || parsedStock < 0) {
+            reject("negative price or stock for " + id);
+            return;
+        }
+
+        JECRC_FoodsApp.Product product = new JECRC_FoodsApp.Product(id.trim(), name.trim(),
+                description != null ? description.trim() : "", parsedPrice,
+                category != null && !category.isBlank() ? category.trim() : DEFAULT_CATEGORY,
+                image != null ? image.trim() : "", parsedStock);
+        if (batch.put(product.id, product) != null) {
+            duplicates++;
+        } else {
+            imported++;
+        }
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Import cancelled");
+        }
+        sink.accept(new ArrayList<>(batch.values()));
+        batch = new LinkedHashMap<>(batchSize * 2);
+    }
+
+    private void reject(String reason) {
+        invalid++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("Row " + rows + ": " + reason);
+        }
+    }
+
+    private Result result(long started) {
+        return new Result(rows, imported, duplicates, invalid, List.copyOf(errors), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static String cell(List<String> row, Integer column) {
+        return column != null && column < row.size() ? row.get(column) : null;
+    }
+
+    private static String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Double d && d == Math.rint(d)) {
+            return Long.toString(d.longValue());
+        }
+        return value.toString();
+    }
+
+    /**
+     * RFC 4180 records: comma separated, fields optionally in double quotes, quotes doubled
+     * inside quoted fields, which may span lines.
+     */
+    static final class CsvReader {
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private int offset;
+        private int limit;
+        private final StringBuilder field = new StringBuilder();
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /** The next record, or null at the end of the input. */
+        List<String> next() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> record = new ArrayList<>();
+            boolean quoted = false;
+            field.setLength(0);
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        int after = read();
+                        if (after == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = after;
+                            continue;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    break;
+                } else if (c == '\r') {
+                    int after = read();
+                    if (after != '\n' && after != -1) {
+                        unread();
+                    }
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+            record.add(field.toString());
+            return record;
+        }
+
+        private int read() throws IOException {
+            if (offset == limit) {
+                int n = in.read(buffer, 0, buffer.length);
+                if (n <= 0) {
+                    return -1;
+                }
+                offset = 0;
+                limit = n;
+            }
+            return buffer[offset++];
+        }
+
+        private void unread() {
+            offset--;
+        }
+    }
+}
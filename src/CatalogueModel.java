@@ -0,0 +1,682 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The catalogue with its orderings and facet counts kept up to date as products change.
+ * <p>
+ * Every category (plus "All") keeps its products both in catalogue order and in price order,
+ * so switching the category or the sort is a view switch instead of a sort. Facets count the
+ * in-stock products per category and per price band and are adjusted per change.
+ * <p>
+ * Reads and writes may come from different threads. A {@link #select} whose thread is
+ * interrupted stops with a {@link CancellationException}.
+ * <p>
+ * A catalogue made with {@link #columnar()} keeps its products in a {@link ColumnarCatalogue}
+ * instead of holding the objects it is given; the products it hands out are views of their rows.
+ * Its query results make a view only when an element is read, so a grid showing the whole
+ * menu only costs views for the cards on screen.
+ */
+public class CatalogueModel {
+
+    public static final String ALL = "All";
+
+    public enum Sort {
+        DEFAULT("Default"), PRICE_LOW_TO_HIGH("Low to High"), PRICE_HIGH_TO_LOW("High to Low");
+
+        private final String label;
+
+        Sort(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        public static Sort fromLabel(String label) {
+            for (Sort sort : values()) {
+                if (sort.label.equals(label)) {
+                    return sort;
+                }
+            }
+            return DEFAULT;
+        }
+    }
+
+    /** Upper bounds (exclusive, in rupees) of the price bands; the last band is open-ended. */
+    private static final int[] BAND_LIMITS = {200, 400, 800};
+    private static final String[] BAND_LABELS = {"Under ₹200", "₹200 - ₹399", "₹400 - ₹799", "₹800 and up"};
+
+    /** Batches at least this large are merged into the orderings instead of inserted one by one. */
+    private static final int BULK_THRESHOLD = 32;
+
+    /** Long loops look for a cancelled query once per this many steps, plus one. */
+    private static final int CANCEL_CHECK_MASK = 4095;
+
+    /**
+     * Change notifications, delivered on the thread that changed the model. Batches arrive as
+     * one call per kind of change.
+     */
+    public interface Listener {
+        default void productsAdded(List<JECRC_FoodsApp.Product> products) {
+        }
+
+        default void productsRemoved(List<JECRC_FoodsApp.Product> products) {
+        }
+
+        default void productsUpdated(List<JECRC_FoodsApp.Product> products) {
+        }
+
+        /** Called once per change or batch, after the model is consistent again. */
+        default void facetsChanged() {
+        }
+    }
+
+    /**
+     * What the model last saw of a product, so edits can be undone in the indexes. In a columnar
+     * catalogue it stays the same object for as long as the product is in the catalogue.
+     */
+    private static final class Entry {
+        // Null in a columnar catalogue, which keeps the product's row instead, until it is removed
+        JECRC_FoodsApp.Product product;
+        int row;
+        final long seq;
+        double price;
+        String category;
+        boolean inStock;
+
+        Entry(JECRC_FoodsApp.Product product, int row, long seq) {
+            this.product = product;
+            this.row = row;
+            this.seq = seq;
+        }
+
+        void capture(JECRC_FoodsApp.Product current) {
+            price = current.price;
+            category = current.category;
+            inStock = current.stock > 0;
+        }
+    }
+
+    private static final Comparator<Entry> BY_SEQ = Comparator.comparingLong(e -> e.seq);
+    private static final Comparator<Entry> BY_PRICE = (a, b) -> {
+        int byPrice = Double.compare(a.price, b.price);
+        return byPrice != 0 ? byPrice : Long.compare(a.seq, b.seq);
+    };
+
+    /** One category's orderings and facet counts. */
+    private static final class View {
+        final ArrayList<Entry> bySeq = new ArrayList<>();
+        final ArrayList<Entry> byPrice = new ArrayList<>();
+        int inStock;
+        final int[] bands = new int[BAND_LABELS.length];
+
+        void add(Entry e) {
+            insert(bySeq, e, BY_SEQ);
+            insert(byPrice, e, BY_PRICE);
+            count(e, 1);
+        }
+
+        /**
+         * Files a batch at once: sorts it and merges it into each ordering in one pass, instead
+         * of shifting the lists once per entry.
+         */
+        void addAll(List<Entry> batch) {
+            if (batch.size() < BULK_THRESHOLD) {
+                batch.forEach(this::add);
+                return;
+            }
+            List<Entry> sorted = new ArrayList<>(batch);
+            sorted.sort(BY_SEQ);
+            merge(bySeq, sorted, BY_SEQ);
+            sorted.sort(BY_PRICE);
+            merge(byPrice, sorted, BY_PRICE);
+            for (Entry e : batch) {
+                count(e, 1);
+            }
+        }
+
+        void remove(Entry e) {
+            delete(bySeq, e, BY_SEQ);
+            delete(byPrice, e, BY_PRICE);
+            count(e, -1);
+        }
+
+        void count(Entry e, int delta) {
+            if (e.inStock) {
+                inStock += delta;
+                bands[bandOf(e.price)] += delta;
+            }
+        }
+
+        boolean isEmpty() {
+            return bySeq.isEmpty();
+        }
+
+        private static void insert(ArrayList<Entry> list, Entry e, Comparator<Entry> order) {
+            int at = Collections.binarySearch(list, e, order);
+            list.add(at < 0 ? -at - 1 : at, e);
+        }
+
+        private static void merge(ArrayList<Entry> list, List<Entry> sorted, Comparator<Entry> order) {
+            int i = list.size() - 1;
+            if (i < 0 || order.compare(list.get(i), sorted.get(0)) <= 0) {
+                // New entries usually come after everything else in catalogue order
+                list.addAll(sorted);
+                return;
+            }
+            int j = sorted.size() - 1;
+            list.ensureCapacity(list.size() + sorted.size());
+            for (int k = 0; k < sorted.size(); k++) {
+                list.add(null);
+            }
+            // Merge from the back so nothing is moved twice
+            int write = list.size() - 1;
+            while (j >= 0) {
+                if (i >= 0 && order.compare(list.get(i), sorted.get(j)) > 0) {
+                    list.set(write--, list.get(i--));
+                } else {
+                    list.set(write--, sorted.get(j--));
+                }
+            }
+        }
+
+        private static void delete(ArrayList<Entry> list, Entry e, Comparator<Entry> order) {
+            int at = Collections.binarySearch(list, e, order);
+            if (at >= 0) {
+                list.remove(at);
+            }
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashMap<String, Entry> byId = new HashMap<>();
+    // A columnar catalogue finds rows by id itself and keeps its entries by row instead
+    private final ArrayList<Entry> byRow = new ArrayList<>();
+    private final View all = new View();
+    private final TreeMap<String, View> categories = new TreeMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Null unless the products are kept in columns
+    private final ColumnarCatalogue columns;
+    private long nextSeq;
+
+    public CatalogueModel() {
+        this(null);
+    }
+
+    private CatalogueModel(ColumnarCatalogue columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * A catalogue that keeps prices and stock in primitive columns and text in a shared pool,
+     * for large menus. A product it hands out is the same object for as long as anything holds
+     * on to it, and follows {@link #update} and {@link #updateStock}.
+     */
+    public static CatalogueModel columnar() {
+        return new CatalogueModel(new ColumnarCatalogue());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void add(JECRC_FoodsApp.Product product) {
+        addAll(List.of(product));
+    }
+
+    /**
+     * Adds new products and refreshes products already in the catalogue (matched by id),
+     * firing a single facet change for the whole batch.
+     */
+    public void addAll(Collection<? extends JECRC_FoodsApp.Product> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        // The last occurrence of an id within the batch wins
+        LinkedHashMap<String, JECRC_FoodsApp.Product> batch = new LinkedHashMap<>(products.size() * 2);
+        for (JECRC_FoodsApp.Product p : products) {
+            batch.put(p.id, p);
+        }
+        List<JECRC_FoodsApp.Product> added = new ArrayList<>();
+        List<JECRC_FoodsApp.Product> updated = new ArrayList<>();
+        // Without listeners, a columnar catalogue need not make views of the batch
+        boolean notify = !listeners.isEmpty();
+        lock.writeLock().lock();
+        try {
+            List<Entry> fresh = new ArrayList<>();
+            for (JECRC_FoodsApp.Product p : batch.values()) {
+                Entry existing = entry(p.id);
+                if (existing != null) {
+                    unfile(existing);
+                    // A replaced product keeps its place in catalogue order
+                    Entry entry = keep(p, existing.seq);
+                    file(entry);
+                    if (notify) {
+                        updated.add(product(entry));
+                    }
+                } else {
+                    Entry entry = keep(p, nextSeq++);
+                    fresh.add(entry);
+                    if (notify) {
+                        added.add(product(entry));
+                    }
+                }
+            }
+            fileAll(fresh);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Listener l : listeners) {
+            if (!added.isEmpty()) {
+                l.productsAdded(added);
+            }
+            if (!updated.isEmpty()) {
+                l.productsUpdated(updated);
+            }
+            l.facetsChanged();
+        }
+    }
+
+    public void remove(JECRC_FoodsApp.Product product) {
+        removeAll(List.of(product.id));
+    }
+
+    public void removeAll(Collection<String> ids) {
+        List<JECRC_FoodsApp.Product> removed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Entry entry = entry(id);
+                if (entry != null) {
+                    unfile(entry);
+                    removed.add(product(entry));
+                    forget(id, entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        for (Listener l : listeners) {
+            l.productsRemoved(removed);
+            l.facetsChanged();
+        }
+    }
+
+    /**
+     * Re-files a product after its fields were edited in place (price, category, stock, text).
+     */
+    public void update(JECRC_FoodsApp.Product product) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entry(product.id);
+            if (entry == null) {
+                return;
+            }
+            if (columns != null) {
+                columns.put(product);
+            }
+            boolean moved = entry.price != product.price || !entry.category.equals(product.category);
+            if (moved) {
+                unfile(entry);
+                entry.capture(product);
+                file(entry);
+            } else {
+                recount(entry, product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Listener l : listeners) {
+            l.productsUpdated(List.of(product));
+            l.facetsChanged();
+        }
+    }
+
+    /**
+     * Sets a product's stock. Only touches the facet counts, the orderings do not depend on stock.
+     */
+    public void updateStock(JECRC_FoodsApp.Product product, int stock) {
+        boolean changed;
+        lock.writeLock().lock();
+        try {
+            product.stock = stock;
+            changed = setStock(product.id, stock);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (changed) {
+            for (Listener l : listeners) {
+                l.facetsChanged();
+            }
+        }
+    }
+
+    /**
+     * Sets the stock of several products, by id, under one lock, e.g. changes collected while
+     * reservations come in. Ids that are not in the catalogue are skipped.
+     */
+    public void updateStocks(Map<String, Integer> stockById) {
+        boolean changed = false;
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Integer> e : stockById.entrySet()) {
+                changed |= setStock(e.getKey(), e.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (changed) {
+            for (Listener l : listeners) {
+                l.facetsChanged();
+            }
+        }
+    }
+
+    public JECRC_FoodsApp.Product get(String id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entry(id);
+            return entry != null ? product(entry) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return columns != null ? columns.size() : byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The products of a category (or {@link #ALL}) in the requested order.
+     */
+    public List<JECRC_FoodsApp.Product> view(String category, Sort sort) {
+        return select(category, sort, null);
+    }
+
+    /**
+     * Narrows search results to a category and puts them in the requested order.
+     * <p>
+     * With {@link Sort#DEFAULT} the matches keep their relevance order. Price orders are read
+     * from the precomputed index: small result sets are sorted directly, large ones are
+     * collected by walking the category's price order once.
+     *
+     * @param matches ids of the search results, or null for the whole category
+     */
+    public List<JECRC_FoodsApp.Product> select(String category, Sort sort, List<String> matches) {
+        lock.readLock().lock();
+        try {
+            View view = ALL.equals(category) || category == null ? all : categories.get(category);
+            if (view == null) {
+                return new ArrayList<>();
+            }
+            if (matches == null) {
+                return collect(sort == Sort.DEFAULT ? view.bySeq : view.byPrice, sort, null);
+            }
+
+            List<Entry> hits = new ArrayList<>(matches.size());
+            int n = 0;
+            for (String id : matches) {
+                if ((n++ & CANCEL_CHECK_MASK) == 0) {
+                    checkCancelled();
+                }
+                Entry e = entry(id);
+                if (e != null && (view == all || e.category.equals(category))) {
+                    hits.add(e);
+                }
+            }
+            if (sort == Sort.DEFAULT || hits.size() * 8 < view.byPrice.size()) {
+                if (sort != Sort.DEFAULT) {
+                    hits.sort(BY_PRICE);
+                }
+                return collect(hits, sort, null);
+            }
+            Set<Entry> wanted = Collections.newSetFromMap(new IdentityHashMap<>(hits.size() * 2));
+            wanted.addAll(hits);
+            return collect(view.byPrice, sort, wanted);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<JECRC_FoodsApp.Product> collect(List<Entry> entries, Sort sort, Set<Entry> only) {
+        Entry[] out = new Entry[only != null ? only.size() : entries.size()];
+        int count = 0;
+        boolean reversed = sort == Sort.PRICE_HIGH_TO_LOW;
+        for (int n = 0; n < entries.size(); n++) {
+            if ((n & CANCEL_CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            Entry e = entries.get(reversed ? entries.size() - 1 - n : n);
+            if (only == null || only.contains(e)) {
+                out[count++] = e;
+            }
+        }
+        if (columns != null) {
+            return new Results(out, count);
+        }
+        List<JECRC_FoodsApp.Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(out[i].product);
+        }
+        return products;
+    }
+
+    /**
+     * Query results of a columnar catalogue: entries, made into products as they are read. A
+     * product removed since reads as it was when it was removed.
+     */
+    private final class Results extends AbstractList<JECRC_FoodsApp.Product> implements RandomAccess {
+        private final Entry[] entries;
+        private final int size;
+
+        Results(Entry[] entries, int size) {
+            this.entries = entries;
+            this.size = size;
+        }
+
+        @Override
+        public JECRC_FoodsApp.Product get(int index) {
+            Objects.checkIndex(index, size);
+            lock.readLock().lock();
+            try {
+                return product(entries[index]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Gives up on a query whose thread was interrupted, e.g. by the query pipeline once a newer
+     * query came in.
+     */
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Query cancelled");
+        }
+    }
+
+    /**
+     * Category names in alphabetical order, without "All".
+     */
+    public List<String> categories() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(categories.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of in-stock products in a category, or in the whole catalogue for {@link #ALL}.
+     */
+    public int inStockCount(String category) {
+        lock.readLock().lock();
+        try {
+            View view = ALL.equals(category) ? all : categories.get(category);
+            return view != null ? view.inStock : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * In-stock product counts per price band for a category, labelled, cheapest band first.
+     */
+    public LinkedHashMap<String, Integer> priceBandCounts(String category) {
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            View view = ALL.equals(category) || category == null ? all : categories.get(category);
+            for (int band = 0; band < BAND_LABELS.length; band++) {
+                counts.put(BAND_LABELS[band], view != null ? view.bands[band] : 0);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    private Entry entry(String id) {
+        if (columns == null) {
+            return byId.get(id);
+        }
+        int row = columns.rowOf(id);
+        return row >= 0 ? byRow.get(row) : null;
+    }
+
+    /**
+     * Files a product under its id, replacing what was there; a columnar catalogue copies it
+     * into its row.
+     */
+    private Entry keep(JECRC_FoodsApp.Product product, long seq) {
+        Entry entry;
+        if (columns == null) {
+            entry = new Entry(product, -1, seq);
+            byId.put(product.id, entry);
+        } else {
+            int row = columns.put(product);
+            if (row == byRow.size()) {
+                entry = new Entry(null, row, seq);
+                byRow.add(entry);
+            } else {
+                // The same product again: query results handed out still find it through its entry
+                entry = byRow.get(row);
+            }
+        }
+        entry.capture(product);
+        return entry;
+    }
+
+    private void forget(String id, Entry entry) {
+        if (columns == null) {
+            byId.remove(id);
+            return;
+        }
+        // Query results handed out keep showing it
+        entry.product = columns.view(entry.row);
+        columns.remove(entry.row);
+        // The last row takes its place
+        Entry last = byRow.remove(byRow.size() - 1);
+        if (last != entry) {
+            byRow.set(entry.row, last);
+            last.row = entry.row;
+        }
+    }
+
+    /**
+     * Called under the write lock.
+     *
+     * @return whether the product went in or out of stock, which moves it between facet counts
+     */
+    private boolean setStock(String id, int stock) {
+        Entry entry = entry(id);
+        if (entry == null) {
+            return false;
+        }
+        if (columns != null) {
+            columns.setStock(entry.row, stock);
+        } else {
+            entry.product.stock = stock;
+        }
+        if (entry.inStock == (stock > 0)) {
+            return false;
+        }
+        recount(entry, product(entry));
+        return true;
+    }
+
+    private JECRC_FoodsApp.Product product(Entry entry) {
+        return entry.product != null ? entry.product : columns.view(entry.row);
+    }
+
+    private void file(Entry entry) {
+        all.add(entry);
+        categories.computeIfAbsent(entry.category, c -> new View()).add(entry);
+    }
+
+    private void fileAll(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        all.addAll(entries);
+        Map<String, List<Entry>> byCategory = new HashMap<>();
+        for (Entry e : entries) {
+            byCategory.computeIfAbsent(e.category, c -> new ArrayList<>()).add(e);
+        }
+        byCategory.forEach((category, batch) -> categories.computeIfAbsent(category, c -> new View()).addAll(batch));
+    }
+
+    private void unfile(Entry entry) {
+        all.remove(entry);
+        View view = categories.get(entry.category);
+        if (view != null) {
+            view.remove(entry);
+            if (view.isEmpty()) {
+                categories.remove(entry.category);
+            }
+        }
+    }
+
+    private void recount(Entry entry, JECRC_FoodsApp.Product current) {
+        View view = categories.get(entry.category);
+        all.count(entry, -1);
+        view.count(entry, -1);
+        entry.capture(current);
+        all.count(entry, 1);
+        view.count(entry, 1);
+    }
+
+    private static int bandOf(double price) {
+        // In the whole rupees a card shows, so ₹199.60, shown as ₹200, is in the ₹200 band
+        long rupees = Money.rupees(Money.toPaise(price));
+        for (int band = 0; band < BAND_LIMITS.length; band++) {
+            if (rupees < BAND_LIMITS[band]) {
+                return band;
+            }
+        }
+        return BAND_LIMITS.length;
+    }
+}
@@ -0,0 +1,391 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Column-oriented product store for large catalogues.
+ * <p>
+ * Prices and stock live in primitive arrays, categories are dictionary-encoded into small ids
+ * and all text goes through a string pool, so repeated descriptions, image URLs and category
+ * names are stored once. Scans over price, stock and category never touch an object per row.
+ * <p>
+ * Existing UI code that works on {@link JECRC_FoodsApp.Product} can use {@link #view(int)}
+ * or {@link #asList()}: views are created on demand and decode their text from the pool, so
+ * only the rows something holds on to cost objects; the slot of a view that was collected is
+ * cleared again the next time a view is made. A row has one view at a time, the same
+ * object for as long as anything references it, and {@link #put}, {@link #setPrice} and
+ * {@link #setStock} update it along with the columns; edits made to a view directly reach the
+ * columns when it is put again.
+ * <p>
+ * Changes must not overlap with other calls; views may be read from several threads at once.
+ */
+public class ColumnarCatalogue {
+
+    /**
+     * Interns strings into ids. Each distinct value is stored once as UTF-8 in a shared byte
+     * arena and found again through an open-addressing table of ids, so a pooled string costs
+     * its bytes plus a few ints instead of a String, a byte[] and a map entry.
+     */
+    static final class StringPool {
+        private byte[] bytes = new byte[1024];
+        private int used;
+        private int[] offsets = new int[65];
+        private int[] hashes = new int[64];
+        private int[] table = new int[128]; // id + 1, 0 for an empty slot
+        private int size;
+
+        int intern(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            int hash = hash(encoded);
+            int slot = probe(encoded, hash);
+            if (table[slot] != 0) {
+                return table[slot] - 1;
+            }
+
+            if (used + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, used + encoded.length));
+            }
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            }
+            System.arraycopy(encoded, 0, bytes, used, encoded.length);
+            used += encoded.length;
+            hashes[size] = hash;
+            offsets[size + 1] = used;
+            table[slot] = size + 1;
+            size++;
+
+            // Keep the table at most half full
+            if (size * 2 > table.length) {
+                rehash(table.length * 2);
+            }
+            return size - 1;
+        }
+
+        int find(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            return table[probe(encoded, hash(encoded))] - 1;
+        }
+
+        String get(int id) {
+            return new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int probe(byte[] encoded, int hash) {
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] != 0) {
+                int id = table[slot] - 1;
+                if (hashes[id] == hash && Arrays.equals(bytes, offsets[id], offsets[id + 1], encoded, 0, encoded.length)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void rehash(int capacity) {
+            table = new int[capacity];
+            int mask = capacity - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = hashes[id] & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+        }
+
+        private static int hash(byte[] encoded) {
+            int h = Arrays.hashCode(encoded);
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /** Not generic, so the views can be kept in a plain array. */
+    private static final class ViewRef extends WeakReference<JECRC_FoodsApp.Product> {
+        // Follows the row when it moves
+        int row;
+
+        ViewRef(JECRC_FoodsApp.Product view, int row, ReferenceQueue<JECRC_FoodsApp.Product> queue) {
+            super(view, queue);
+            this.row = row;
+        }
+    }
+
+    private final StringPool text = new StringPool();
+    private final StringPool categories = new StringPool();
+    // Decoded once, so views share them; there are only a few
+    private final List<String> categoryNames = new ArrayList<>();
+    // Row of each product, indexed by the pool id of the product id; -1 for other strings
+    private int[] rowByTextId = new int[0];
+
+    private int[] ids = new int[0];
+    private int[] names = new int[0];
+    private int[] descriptions = new int[0];
+    private int[] images = new int[0];
+    private short[] categoryIds = new short[0];
+    private double[] prices = new double[0];
+    private int[] stock = new int[0];
+    // The view of each row, while something holds on to it
+    private ViewRef[] views = new ViewRef[0];
+    private final ReferenceQueue<JECRC_FoodsApp.Product> collectedViews = new ReferenceQueue<>();
+    private int size;
+
+    public ColumnarCatalogue() {
+        this(64);
+    }
+
+    public ColumnarCatalogue(int capacity) {
+        grow(Math.max(16, capacity));
+    }
+
+    public static ColumnarCatalogue of(Collection<? extends JECRC_FoodsApp.Product> products) {
+        ColumnarCatalogue catalogue = new ColumnarCatalogue(Math.max(16, products.size()));
+        products.forEach(catalogue::put);
+        return catalogue;
+    }
+
+    /**
+     * Adds a product, or overwrites the row of the product with the same id.
+     *
+     * @return the row of the product
+     */
+    public int put(JECRC_FoodsApp.Product product) {
+        int row = rowOf(product.id);
+        if (row < 0) {
+            if (size == prices.length) {
+                grow(size * 2);
+            }
+            row = size++;
+            ids[row] = text.intern(product.id);
+            if (ids[row] >= rowByTextId.length) {
+                int from = rowByTextId.length;
+                rowByTextId = Arrays.copyOf(rowByTextId, Math.max(ids[row] + 1, from * 2));
+                Arrays.fill(rowByTextId, from, rowByTextId.length, -1);
+            }
+            rowByTextId[ids[row]] = row;
+        }
+        names[row] = text.intern(product.name);
+        descriptions[row] = text.intern(product.description);
+        images[row] = text.intern(product.imageUrl);
+        int category = categories.intern(product.category);
+        if (category > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many categories: " + categories.size());
+        }
+        categoryIds[row] = (short) category;
+        prices[row] = product.price;
+        stock[row] = product.stock;
+        synchronized (this) {
+            if (category == categoryNames.size()) {
+                categoryNames.add(product.category);
+            }
+            JECRC_FoodsApp.Product view = liveView(row);
+            if (view != null && view != product) {
+                view.name = product.name;
+                view.description = product.description;
+                view.price = product.price;
+                view.category = product.category;
+                view.imageUrl = product.imageUrl;
+                view.stock = product.stock;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Removes a row; the last row moves into its place. Its text stays in the pool.
+     */
+    public synchronized void remove(int row) {
+        Objects.checkIndex(row, size);
+        rowByTextId[ids[row]] = -1;
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            names[row] = names[last];
+            descriptions[row] = descriptions[last];
+            images[row] = images[last];
+            categoryIds[row] = categoryIds[last];
+            prices[row] = prices[last];
+            stock[row] = stock[last];
+            views[row] = views[last];
+            if (views[row] != null) {
+                views[row].row = row;
+            }
+            rowByTextId[ids[row]] = row;
+        }
+        views[last] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int rowOf(String id) {
+        int textId = text.find(id);
+        return textId >= 0 && textId < rowByTextId.length ? rowByTextId[textId] : -1;
+    }
+
+    public double price(int row) {
+        return prices[row];
+    }
+
+    public int stock(int row) {
+        return stock[row];
+    }
+
+    public synchronized String category(int row) {
+        return categoryNames.get(categoryIds[row]);
+    }
+
+    public synchronized void setPrice(int row, double price) {
+        prices[row] = price;
+        JECRC_FoodsApp.Product view = liveView(row);
+        if (view != null) {
+            view.price = price;
+        }
+    }
+
+    public synchronized void setStock(int row, int value) {
+        stock[row] = value;
+        JECRC_FoodsApp.Product view = liveView(row);
+        if (view != null) {
+            view.stock = value;
+        }
+    }
+
+    /**
+     * The row as a product: its current view, or a new one with the text decoded from the pool.
+     */
+    public synchronized JECRC_FoodsApp.Product view(int row) {
+        Objects.checkIndex(row, size);
+        JECRC_FoodsApp.Product view = liveView(row);
+        if (view == null) {
+            expungeViews();
+            view = new JECRC_FoodsApp.Product(text.get(ids[row]), text.get(names[row]), text.get(descriptions[row]),
+                    prices[row], categoryNames.get(categoryIds[row]), text.get(images[row]), stock[row]);
+            views[row] = new ViewRef(view, row, collectedViews);
+        }
+        return view;
+    }
+
+    /** Empties the slots of views that were collected. */
+    private void expungeViews() {
+        for (Reference<?> r = collectedViews.poll(); r != null; r = collectedViews.poll()) {
+            ViewRef ref = (ViewRef) r;
+            // A removed row's slot may have gone to another row since
+            if (ref.row < size && views[ref.row] == ref) {
+                views[ref.row] = null;
+            }
+        }
+    }
+
+    private JECRC_FoodsApp.Product liveView(int row) {
+        ViewRef ref = views[row];
+        return ref != null ? ref.get() : null;
+    }
+
+    /**
+     * The rows as a list of products, creating views only for the elements that are read.
+     */
+    public List<JECRC_FoodsApp.Product> asList() {
+        return new AbstractList<>() {
+            @Override
+            public JECRC_FoodsApp.Product get(int index) {
+                return view(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Rows in a category (null or "All" for every row), in insertion order.
+     */
+    public int[] rowsIn(String category) {
+        if (category == null || CatalogueModel.ALL.equals(category)) {
+            int[] rows = new int[size];
+            for (int i = 0; i < size; i++) {
+                rows[i] = i;
+            }
+            return rows;
+        }
+        int id = categories.find(category);
+        if (id < 0) {
+            return new int[0];
+        }
+        short wanted = (short) id;
+        int[] rows = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (categoryIds[i] == wanted) {
+                rows[count++] = i;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Sorts rows by price in place without boxing. Stable, so ties keep their current order.
+     */
+    public void sortByPrice(int[] rows, boolean ascending) {
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int from = 0; from < rows.length - width; from += 2 * width) {
+                merge(rows, buffer, from, from + width, Math.min(from + 2 * width, rows.length), ascending);
+            }
+        }
+    }
+
+    private void merge(int[] rows, int[] buffer, int from, int mid, int to, boolean ascending) {
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            boolean takeLeft;
+            if (left >= mid) {
+                takeLeft = false;
+            } else if (right >= to) {
+                takeLeft = true;
+            } else {
+                int cmp = Double.compare(prices[buffer[left]], prices[buffer[right]]);
+                takeLeft = ascending ? cmp <= 0 : cmp >= 0;
+            }
+            rows[i] = takeLeft ? buffer[left++] : buffer[right++];
+        }
+    }
+
+    /**
+     * Number of rows with stock left in a category.
+     */
+    public int inStockCount(String category) {
+        int count = 0;
+        for (int row : rowsIn(category)) {
+            if (stock[row] > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        images = Arrays.copyOf(images, capacity);
+        categoryIds = Arrays.copyOf(categoryIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        stock = Arrays.copyOf(stock, capacity);
+        views = Arrays.copyOf(views, capacity);
+    }
+}
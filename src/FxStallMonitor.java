@@ -0,0 +1,57 @@
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how long the JavaFX Application Thread takes to get to new work.
+ * <p>
+ * A daemon thread posts a no-op to the FX thread every {@value #PERIOD_MILLIS} ms and records
+ * how long it waited. A busy FX thread delays the ping, so the histogram is the input latency a
+ * customer would see. Waits beyond {@value #STALL_MILLIS} ms count as stalls. At most one ping
+ * is outstanding, so a hung FX thread doesn't pile up work.
+ */
+public class FxStallMonitor implements AutoCloseable {
+
+    private static final long PERIOD_MILLIS = 100;
+    private static final long STALL_MILLIS = 50;
+
+    private final Metrics.Histogram latency = Metrics.getInstance().histogram("fx.latency");
+    private final LongAdder stalls = Metrics.getInstance().counter("fx.stalls");
+    private final LongAdder stallMillis = Metrics.getInstance().counter("fx.stallMs");
+    private final AtomicBoolean outstanding = new AtomicBoolean();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fx-stall-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public void start() {
+        timer.scheduleAtFixedRate(this::ping, PERIOD_MILLIS, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void ping() {
+        if (!outstanding.compareAndSet(false, true)) {
+            return;
+        }
+        long posted = System.nanoTime();
+        Platform.runLater(() -> {
+            long waited = System.nanoTime() - posted;
+            outstanding.set(false);
+            latency.record(waited);
+            long millis = TimeUnit.NANOSECONDS.toMillis(waited);
+            if (millis > STALL_MILLIS) {
+                stalls.increment();
+                stallMillis.add(millis);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,390 @@
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier image cache for product and cart thumbnails.
+ * <p>
+ * Decoded images live in an LRU memory tier keyed by (url, width, height) and bounded by an
+ * approximate byte budget. Raw downloads are kept on disk under {@link AppPaths#cacheDir()},
+ * so repeat views and restarts never go back to the network. Loads run on a small fixed pool
+ * and concurrent requests for the same key share one load.
+ * <p>
+ * A card that scrolls away cancels its request. A load nobody waits for any more is skipped if
+ * it has not started yet, so fast scrolling does not leave the pool working through images
+ * that are no longer on screen. A URL that failed is not tried again for
+ * {@value #FAILURE_RETRY_SECONDS} seconds; requests for it fail right away until then.
+ * <p>
+ * The disk tier is trimmed at startup and again in the background whenever downloads take it
+ * past its budget; a trim leaves it a little under the budget, so the next download does not
+ * start another one.
+ */
+public class ImageCache {
+
+    /** Where the original image bytes come from. Swappable so a local folder can stand in for the image host. */
+    @FunctionalInterface
+    public interface Fetcher {
+        InputStream open(String url) throws IOException;
+    }
+
+    private record Key(String url, int width, int height) {
+    }
+
+    /** A load of one key, shared by every request for it. */
+    private final class Load implements Runnable {
+        final Key key;
+        final CompletableFuture<Image> result = new CompletableFuture<>();
+        // Requests still waiting for the result; -1 once the load was skipped for lack of any
+        final AtomicInteger waiting = new AtomicInteger();
+
+        Load(Key key) {
+            this.key = key;
+        }
+
+        /** Adds a request, unless the load was already skipped. */
+        boolean join() {
+            for (int w = waiting.get(); w >= 0; w = waiting.get()) {
+                if (waiting.compareAndSet(w, w + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void leave() {
+            for (int w = waiting.get(); w > 0; w = waiting.get()) {
+                if (waiting.compareAndSet(w, w - 1)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (waiting.compareAndSet(0, -1)) {
+                    dropped.increment();
+                    result.cancel(false);
+                    return;
+                }
+                long started = System.nanoTime();
+                try {
+                    Image image = decode(key);
+                    remember(key, image);
+                    loadTime.recordSince(started);
+                    result.complete(image);
+                } catch (Throwable t) {
+                    failures.increment();
+                    failedAt.put(key.url(), System.nanoTime());
+                    result.completeExceptionally(t);
+                }
+            } finally {
+                inFlight.remove(key, this);
+            }
+        }
+    }
+
+    private static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+    private static final long DEFAULT_DISK_BUDGET = 256L * 1024 * 1024;
+    private static final int DEFAULT_THREADS = 4;
+    private static final long FAILURE_RETRY_SECONDS = 30;
+    private static final long FAILURE_RETRY_NANOS = TimeUnit.SECONDS.toNanos(FAILURE_RETRY_SECONDS);
+    /** Past this many remembered failures, expired ones are swept out. */
+    private static final int FAILURES_SWEEP_SIZE = 1024;
+
+    private static final ImageCache instance = new ImageCache(
+            AppPaths.cacheDir().resolve("images"), DEFAULT_MEMORY_BUDGET, DEFAULT_DISK_BUDGET,
+            DEFAULT_THREADS, defaultFetcher());
+
+    private final Path diskDir;
+    private final long memoryBudget;
+    private final long diskBudget;
+    private final Fetcher fetcher;
+    private final ExecutorService executor;
+
+    private final LongAdder hits = Metrics.getInstance().counter("image.hit");
+    private final LongAdder misses = Metrics.getInstance().counter("image.miss");
+    private final LongAdder diskHits = Metrics.getInstance().counter("image.diskHit");
+    private final LongAdder failures = Metrics.getInstance().counter("image.failures");
+    private final LongAdder recentFailures = Metrics.getInstance().counter("image.recentFailure");
+    private final LongAdder dropped = Metrics.getInstance().counter("image.dropped");
+    private final Metrics.Histogram loadTime = Metrics.getInstance().histogram("image.load");
+    private final Metrics.Histogram fetchTime = Metrics.getInstance().histogram("image.fetch");
+
+    private final ConcurrentHashMap<Key, Load> inFlight = new ConcurrentHashMap<>();
+    // When each URL that could not be loaded last failed
+    private final ConcurrentHashMap<String, Long> failedAt = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Key, Image> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    // Bytes on disk as of the last trim plus what was downloaded since; approximate
+    private final AtomicLong diskBytes = new AtomicLong();
+    // Set from when a trim is queued until it is done, so only one runs at a time
+    private final AtomicBoolean trimQueued = new AtomicBoolean(true);
+
+    public ImageCache(Path diskDir, long memoryBudget, long diskBudget, int threads, Fetcher fetcher) {
+        this.diskDir = diskDir;
+        this.memoryBudget = memoryBudget;
+        this.diskBudget = diskBudget;
+        this.fetcher = fetcher;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "image-loader-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.execute(this::trimDisk);
+    }
+
+    public static ImageCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the image if it is already decoded in memory, without starting a load.
+     */
+    public Image getIfCached(String url, int width, int height) {
+        Image cached;
+        synchronized (memory) {
+            cached = memory.get(new Key(url, width, height));
+        }
+        // A miss here is followed by load(), which counts it
+        if (cached != null) {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Loads an image scaled to fit the given box. The future completes on a loader thread;
+     * callers must hop to the FX thread before touching the scene graph. Cancelling it, e.g.
+     * when the card shows another product, withdraws the request.
+     */
+    public CompletableFuture<Image> load(String url, int width, int height) {
+        Key key = new Key(url, width, height);
+        Image cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+        }
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        Long failed = failedAt.get(url);
+        if (failed != null) {
+            if (System.nanoTime() - failed < FAILURE_RETRY_NANOS) {
+                recentFailures.increment();
+                return CompletableFuture.failedFuture(new IOException("Image failed to load recently: " + url));
+            }
+            failedAt.remove(url, failed);
+        }
+        misses.increment();
+
+        Load load;
+        while (true) {
+            Load created = new Load(key);
+            load = inFlight.putIfAbsent(key, created);
+            if (load == null) {
+                load = created;
+                load.join();
+                start(load);
+                break;
+            }
+            if (load.join()) {
+                break;
+            }
+            // Skipped just now; it is leaving the map
+            inFlight.remove(key, load);
+        }
+
+        Load joined = load;
+        CompletableFuture<Image> request = new CompletableFuture<>();
+        joined.result.whenComplete((image, error) -> {
+            if (error != null) {
+                request.completeExceptionally(error);
+            } else {
+                request.complete(image);
+            }
+        });
+        request.whenComplete((image, error) -> {
+            if (request.isCancelled()) {
+                joined.leave();
+            }
+        });
+        return request;
+    }
+
+    private void start(Load load) {
+        if (failedAt.size() > FAILURES_SWEEP_SIZE) {
+            long now = System.nanoTime();
+            failedAt.values().removeIf(at -> now - at >= FAILURE_RETRY_NANOS);
+        }
+        try {
+            executor.execute(load);
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(load.key, load);
+            failures.increment();
+            load.result.completeExceptionally(e);
+        }
+    }
+
+    private Image decode(Key key) throws IOException {
+        byte[] bytes = readThroughDisk(key.url());
+        Image image = new Image(new ByteArrayInputStream(bytes), key.width(), key.height(), true, true);
+        if (image.isError()) {
+            throw new IOException("Cannot decode image " + key.url(), image.getException());
+        }
+        return image;
+    }
+
+    private byte[] readThroughDisk(String url) throws IOException {
+        Path file = diskDir.resolve(hash(url));
+        if (Files.isRegularFile(file)) {
+            try {
+                byte[] bytes = Files.readAllBytes(file);
+                // Mark as recently used for the disk trim
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                diskHits.increment();
+                return bytes;
+            } catch (IOException e) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        byte[] bytes;
+        long started = System.nanoTime();
+        try (InputStream in = fetcher.open(url)) {
+            bytes = in.readAllBytes();
+        }
+        fetchTime.recordSince(started);
+
+        // Write to a temp file first so a crash never leaves a half-written entry behind
+        try {
+            Files.createDirectories(diskDir);
+            Path tmp = Files.createTempFile(diskDir, "dl-", ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (diskBytes.addAndGet(bytes.length) > diskBudget && trimQueued.compareAndSet(false, true)) {
+                executor.execute(this::trimDisk);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to cache image on disk: " + e.getMessage());
+        }
+        return bytes;
+    }
+
+    private void remember(Key key, Image image) {
+        long size = sizeOf(image);
+        synchronized (memory) {
+            Image previous = memory.put(key, image);
+            if (previous != null) {
+                memoryBytes -= sizeOf(previous);
+            }
+            memoryBytes += size;
+
+            Iterator<Map.Entry<Key, Image>> it = memory.entrySet().iterator();
+            while (memoryBytes > memoryBudget && it.hasNext()) {
+                Map.Entry<Key, Image> eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                memoryBytes -= sizeOf(eldest.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the least recently used files once the disk tier is over its budget, down to a
+     * tenth below it.
+     */
+    private void trimDisk() {
+        try (Stream<Path> files = Files.list(diskDir)) {
+            List<Path> entries = new ArrayList<>(files.filter(Files::isRegularFile).toList());
+            Map<Path, Long> modified = new HashMap<>();
+            Map<Path, Long> sizes = new HashMap<>();
+            long total = 0;
+            for (Path p : entries) {
+                try {
+                    modified.put(p, Files.getLastModifiedTime(p).toMillis());
+                    sizes.put(p, Files.size(p));
+                    total += sizes.get(p);
+                } catch (NoSuchFileException e) {
+                    // Dropped by a failed read meanwhile
+                }
+            }
+            entries.removeIf(p -> !sizes.containsKey(p));
+            if (total > diskBudget) {
+                entries.sort(Comparator.comparingLong(modified::get));
+                long target = diskBudget - diskBudget / 10;
+                for (Path p : entries) {
+                    if (total <= target) {
+                        break;
+                    }
+                    total -= sizes.get(p);
+                    Files.deleteIfExists(p);
+                }
+            }
+            diskBytes.set(total);
+        } catch (NoSuchFileException e) {
+            // Nothing downloaded yet
+        } catch (IOException e) {
+            System.err.println("Failed to trim image cache: " + e.getMessage());
+        } finally {
+            trimQueued.set(false);
+        }
+    }
+
+    private static long sizeOf(Image image) {
+        // Decoded images are held as 32-bit ARGB
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    private static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Fetcher defaultFetcher() {
+        String localDir = System.getProperty("jecrc.images.dir");
+        return localDir != null ? directoryFetcher(Paths.get(localDir)) : ImageCache::openUrl;
+    }
+
+    private static InputStream openUrl(String url) throws IOException {
+        URLConnection connection = URI.create(url).toURL().openConnection();
+        connection.setConnectTimeout(5_000);
+        connection.setReadTimeout(10_000);
+        return connection.getInputStream();
+    }
+
+    /**
+     * Serves images from a local folder instead of the image host, matching on the last
+     * path segment of the URL. Handy for offline kiosks and for exercising the cache.
+     */
+    public static Fetcher directoryFetcher(Path dir) {
+        return url -> {
+            String name = url.substring(url.lastIndexOf('/') + 1);
+            return Files.newInputStream(dir.resolve(name));
+        };
+    }
+}
@@ -1,16 +1,16 @@
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.*;
-import javafx.collections.*;
-import javafx.geometry.*;
-import javafx.scene.Scene;
-import javafx.scene.control.*;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-import javafx.scene.layout.*;
-import javafx.scene.text.Font;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
     /**
      * JECRC FOODS - Food Ordering Desktop App using JavaFX
@@ -22,6 +22,13 @@ import java.util.stream.Collectors;
      * - Right cart sidebar with live updates and checkout preview
      * - Add to cart with quantity control
      * - Cart updates and total price calculation
+     * - Runs standalone, or as a thin client of an {@link OrderingServer} with --server=http://host:port
+     * - Standalone terminals can copy their orders to such a server with --sync=http://host:port;
+     *   they keep selling while it is unreachable and catch up once it is back
+     * - --token=... (or JECRC_API_TOKEN) is sent to a server that requires one
+     * - Several ordering stations on one catalogue with --stations=N or Ctrl+N, see {@link OrderingStation}
+     * - --catalogue=columnar keeps a large menu in columns rather than one object per product,
+     *   see {@link CatalogueModel#columnar()}
      * <p>
      */
     public class JECRC_FoodsApp extends Application {
@@ -50,18 +57,21 @@ import java.util.stream.Collectors;
         static class CartItem {
             Product product;
             IntegerProperty quantity = new SimpleIntegerProperty(1);
+            // Fixed when the item is added, so later catalogue edits don't reprice the cart
+            final long unitPricePaise;
 
             CartItem(Product product) {
                 this.product = product;
+                this.unitPricePaise = Money.toPaise(product.price);
             }
 
-            double getTotalPrice() {
-                return product.price * quantity.get();
+            long getTotalPaise() {
+                return unitPricePaise * quantity.get();
             }
         }
 
         // Sample product data
-        private final ObservableList<Product> products = FXCollections.observableArrayList(
+        private final List<Product> products = List.of(
                 new Product("p1", "Margherita Pizza", "Classic cheese and tomato pizza.", 5.99, "Pizza",
                         "https://i.pinimg.com/736x/cc/54/dd/cc54dd8f45ed9cdd514e57c0e2afccd3.jpg", 20),
                 new Product("p2", "Veggie Burger", "Delicious vegetable patty with fresh salad.", 3.49, "Burgers",
@@ -74,403 +84,266 @@ import java.util.stream.Collectors;
                         "https://i.pinimg.com/736x/d0/2c/fd/d02cfdbc13aef67e3f01531a137b2d82.jpg", 8)
         );
 
-        // Cart items map keyed by product id
-        private final ObservableMap<String, CartItem> cartItems = FXCollections.observableHashMap();
-
-        // UI Controls that need to be accessed globally in the app
-        private FlowPane productGrid;
-        private VBox cartSidebar;
-        private Label cartCountLabel;
-        private Label totalPriceLabel;
-        private TextField searchField;
-        private ComboBox<String> categoryFilterCombo;
+        // Catalogue orderings and facet counts, plus the search index that follows it; one of
+        // each for all stations
+        private CatalogueModel catalogue;
+        private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+
+        // Confirmed orders, persisted before checkout reports success
+        private volatile OrderLog orderLog;
+        // Copies the order log to a central server in the background (--sync=URL)
+        private volatile OrderSyncer orderSyncer;
+        // Validates, prices and stores checkouts off the FX thread
+        private volatile OrderService orderService;
+        // Where reservations and checkouts go: the local order service, or a server (--server=URL)
+        private OrderingBackend backend;
+
+        // Stock shared with the other terminals; every station's cart reserves from it
+        private final StockLedger stockLedger = new StockLedger(Duration.ofMinutes(10));
+        // Learns what sells and what sells together from confirmed orders
+        private final RecommendationEngine recommendations = new RecommendationEngine(32, Duration.ofHours(4));
+        // Open ordering windows, each with its own cart and theme
+        private final List<OrderingStation> stations = new ArrayList<>();
+        private int stationsOpened;
+        // Latest available stock per product, waiting to be applied on the FX thread
+        private final Map<String, Integer> pendingStock = new ConcurrentHashMap<>();
+        private final AtomicBoolean stockFlushScheduled = new AtomicBoolean();
+        private volatile Path catalogueFile;
+        private boolean thinClient;
+
+        // Live metrics: FX thread latency, a periodic snapshot file and an optional overlay (F12)
+        private final FxStallMonitor stallMonitor = new FxStallMonitor();
+        private final StartupTimer startupTimer = new StartupTimer();
+        private Path metricsFile;
 
         @Override
         public void start(Stage primaryStage) {
-            primaryStage.setTitle("JECRC FOODS - Food Ordering App");
-
-            //root layout
-            BorderPane root = new BorderPane();
-
-            // Scene
-            Scene scene = new Scene(root, 1200, 800);   // Scene is declared here
-            ThemeManager.getInstance().applyTheme(scene);     // Scene is passed here
-
-            // Header
-            root.setTop(createHeader(scene));
-
-
-            // Main layout - three columns: left filters, center products, right cart
-            HBox mainContent = new HBox();
-            mainContent.setSpacing(16);
-            mainContent.setPadding(new Insets(16));
-
-            // Left Sidebar: Filters
-            VBox filterSidebar = createFilterSidebar();
-            filterSidebar.setPrefWidth(180);
-            filterSidebar.setId("filter-sidebar");
-
-            // Center: Product Grid
-            ScrollPane centerScroll = new ScrollPane();
-            centerScroll.setFitToWidth(true);
-            productGrid = new FlowPane();
-            productGrid.setPadding(new Insets(10));
-            productGrid.setHgap(20);
-            productGrid.setVgap(20);
-            productGrid.setPrefWrapLength(800);
-            centerScroll.setContent(productGrid);
-            VBox centerContainer = new VBox(centerScroll);
-            VBox.setVgrow(centerScroll, Priority.ALWAYS);
-
-            // Right Sidebar: Cart
-            cartSidebar = createCartSidebar();
-            cartSidebar.setPrefWidth(350);
-
-            mainContent.getChildren().addAll(filterSidebar, centerContainer, cartSidebar);
-            HBox.setHgrow(centerContainer, Priority.ALWAYS);
-
-            root.setCenter(mainContent);
-
-            // Initial populate product grid
-            updateProductGrid("");
-
-            //Finalized scene here
-            primaryStage.setScene(scene);
-            primaryStage.show();
-        }
-
-        private HBox createHeader(Scene scene) {
-            HBox header = new HBox();
-            header.setStyle("-fx-background-color: linear-gradient(to right, #7c3aed, #c084fc);");
-            header.setPadding(new Insets(10, 20, 10, 20));
-            header.setSpacing(16);
-            header.setAlignment(Pos.CENTER_LEFT);
-
-            // Logo
-            Label logoLabel = new Label("JECRC Foods");
-            logoLabel.setStyle("-fx-font-size: 24px; -fx-text-fill: white; -fx-font-weight: bold;");
-            logoLabel.setMinWidth(200);
-
-            // Search bar
-            searchField = new TextField();
-            searchField.setPromptText("Search food items...");
-            searchField.setPrefWidth(400);
-            searchField.textProperty().addListener((_, oldVal, newVal) -> {
-                updateProductGrid(newVal.trim());
-            });
-
-            // Spacer to push buttons to the right
-            Region spacer = new Region();
-            HBox.setHgrow(spacer, Priority.ALWAYS);
-
-            // Theme toggle button
-            Button themeToggleButton = new Button("☀"); // Use plain sun symbol (U+2600)
-            themeToggleButton.setStyle("-fx-font-size: 16px; -fx-background-color: transparent; -fx-text-fill: white;");
+            Path dataDir = AppPaths.dataDir();
+            String server = getParameters().getNamed().get("server");
+            thinClient = server != null;
+            metricsFile = dataDir.resolve("metrics.txt");
+            Metrics.getInstance().startReporting(metricsFile, Duration.ofSeconds(30));
+            stallMonitor.start();
+            catalogue = "columnar".equals(getParameters().getNamed().get("catalogue"))
+                    ? CatalogueModel.columnar() : new CatalogueModel();
+            catalogue.addListener(searchIndex.listener());
+
+            // Show the first station right away; the catalogue, the order log and the backend come
+            // up in the background and the stations become interactive once they are in
+            OrderingStation first = openStation(primaryStage);
+            startupTimer.watchFirstFrame(first.getScene());
+            int stationCount = Integer.parseInt(getParameters().getNamed().getOrDefault("stations", "1"));
+            for (int i = 1; i < stationCount; i++) {
+                openStation(new Stage());
+            }
 
-            themeToggleButton.setOnAction(e -> {
-                ThemeManager.getInstance().toggleTheme(scene);
-                // Toggle between sun and moon icons
-                if (themeToggleButton.getText().equals("☀")) {
-                    themeToggleButton.setText("🌙"); // Crescent moon (U+1F319)
-                } else {
-                    themeToggleButton.setText("☀");
-                }
+            Thread.ofPlatform().daemon().name("startup-loader").start(() -> {
+                OrderingBackend loaded = server != null ? connect(server) : openLocal(dataDir);
+                Platform.runLater(() -> {
+                    backend = loaded;
+                    // Reservations and checkouts change stock from any thread; apply the latest
+                    // value per product on the FX thread, at most one pending flush at a time
+                    backend.addStockListener((productId, available) -> {
+                        pendingStock.put(productId, available);
+                        if (stockFlushScheduled.compareAndSet(false, true)) {
+                            Platform.runLater(this::flushStockChanges);
+                        }
+                    });
+                    stations.forEach(station -> station.connect(backend));
+                    startupTimer.watchInteractive(first.getScene(), first::isShowingMenu);
+                });
             });
-
-
-            // Cart icon with count
-            StackPane cartIconPane = new StackPane();
-            Label cartIconLabel = new Label("\uD83D\uDED2"); // Shopping cart emoji
-            cartIconLabel.setStyle("-fx-font-size:24px; -fx-text-fill: white;");
-
-            cartCountLabel = new Label("0");
-            cartCountLabel.setStyle(
-                    "-fx-background-color: red; -fx-text-fill: white; -fx-font-weight: bold;" +
-                            " -fx-min-width: 15px; -fx-min-height: 15px; -fx-alignment: center; -fx-background-radius: 10px;"
-            );
-            StackPane.setAlignment(cartCountLabel, Pos.TOP_RIGHT);
-            StackPane.setMargin(cartCountLabel, new Insets(0, 0, 15, 15));
-
-            cartIconPane.getChildren().addAll(cartIconLabel, cartCountLabel);
-
-            // Add all elements to header
-            header.getChildren().addAll(logoLabel, searchField, spacer, themeToggleButton, cartIconPane);
-
-            return header;
         }
 
-
-        private ComboBox<String> priceSortCombo;
-        private VBox createFilterSidebar() {
-            VBox sidebar = new VBox();
-            sidebar.setSpacing(24);
-
-            // Filters title
-            Label filterTitle = new Label("Filters");
-            filterTitle.setFont(Font.font(20));
-
-            // Category Filter
-            Label categoryLabel = new Label("Category");
-            categoryFilterCombo = new ComboBox<>();
-            categoryFilterCombo.getItems().addAll(
-                    "All", "Pizza", "Burgers", "Salads", "Indian", "Desserts"
-            );
-            categoryFilterCombo.setValue("All");
-            categoryFilterCombo.valueProperty().addListener((obs, prev, curr) -> {
-                updateProductGrid(searchField.getText().trim());
-            });
-
-
-            // Sort by Price Filter
-            Label sortLabel = new Label("Sort by Price");
-            priceSortCombo = new ComboBox<>();
-            priceSortCombo.getItems().addAll("Default", "Low to High", "High to Low");
-            priceSortCombo.setValue("Default");
-            priceSortCombo.valueProperty().addListener((obs, oldVal, newVal) -> {
-                updateProductGrid(searchField.getText().trim());  // You will modify this function to sort too
-            });
-
-            // Add all to sidebar
-            sidebar.getChildren().addAll(filterTitle, categoryLabel, categoryFilterCombo, sortLabel, priceSortCombo);
-
-            return sidebar;
+        /**
+         * Opens another ordering window on the shared catalogue and stock.
+         */
+        private OrderingStation openStation(Stage stage) {
+            stationsOpened++;
+            stage.setTitle(stationsOpened == 1 ? "JECRC FOODS - Food Ordering App"
+                    : "JECRC FOODS - Station " + stationsOpened);
+            OrderingStation station = new OrderingStation(stage, catalogue, searchIndex, stockLedger, recommendations, !thinClient,
+                    () -> openStation(new Stage()));
+            stations.add(station);
+            stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> stations.remove(station));
+            if (backend != null) {
+                station.connect(backend);
+            }
+            return station;
         }
 
-        private VBox createCartSidebar() {
-            VBox sidebar = new VBox();
-            sidebar.setSpacing(12);
-            sidebar.setPadding(new Insets(10));
-            sidebar.setId("cart-sidebar");
-
-
-            Label title = new Label("Shopping Cart");
-            title.setId("cart-title");
-            title.setFont(Font.font(20));
-
-            ListView<CartItem> cartListView = new ListView<>();
-            cartListView.getStyleClass().add("cart-item");
-            cartListView.setPrefHeight(500);
-            cartListView.setCellFactory(param -> new CartItemCell());
-
-            // Bind cart items list to ListView
-            ObservableList<CartItem> cartObservableList = FXCollections.observableArrayList();
-            cartListView.setItems(cartObservableList);
-
-            // Update list whenever cartItems map changes
-            cartItems.addListener((MapChangeListener.Change<? extends String, ? extends CartItem> change) -> {
-                cartObservableList.setAll(cartItems.values());
-                updateCartCountAndTotal();
-            });
-
-            // Total price label
-            totalPriceLabel = new Label("Total: ₹0.00");
-            totalPriceLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
-
-            // Checkout button
-            Button checkoutBtn = new Button("Checkout");
-            checkoutBtn.setStyle("-fx-background-color: #7c3aed; -fx-text-fill: white; -fx-font-weight: bold;");
-            checkoutBtn.setMaxWidth(Double.MAX_VALUE);
-            checkoutBtn.setOnAction(e -> handleCheckout());
-
-            sidebar.getChildren().addAll(title, cartListView, totalPriceLabel, checkoutBtn);
-            VBox.setVgrow(cartListView, Priority.ALWAYS);
-
-            return sidebar;
+        /**
+         * Thin client: catalogue, stock and orders all live on the server. Runs on the startup
+         * thread.
+         */
+        private OrderingBackend connect(String server) {
+            OrderingClient client = new OrderingClient(URI.create(server), serverToken());
+            try {
+                addLoaded(client.fetchCatalogue());
+            } catch (IOException e) {
+                System.err.println("Failed to load catalogue from " + server + ": " + e.getMessage());
+            }
+            return client;
         }
 
-        private void updateProductGrid(String filterText) {
-            productGrid.getChildren().clear();
-            String filterCategory = categoryFilterCombo.getValue();
-            String sortOption = priceSortCombo.getValue();
-
-            List<Product> filtered = products.stream()
-                    .filter(p -> {
-                        boolean matchesText = filterText == null || filterText.isEmpty() ||
-                                p.name.toLowerCase().contains(filterText.toLowerCase()) ||
-                                p.description.toLowerCase().contains(filterText.toLowerCase());
-                        boolean matchesCategory = filterCategory == null || filterCategory.equals("All") || p.category.equals(filterCategory);
-                        return matchesText && matchesCategory;
-                    })
-                    .collect(Collectors.toList());
-
-            // Sort by Price
-            if ("Low to High".equals(sortOption)) {
-                filtered.sort(Comparator.comparingDouble(p -> p.price));
-            } else if ("High to Low".equals(sortOption)) {
-                filtered.sort((p1, p2) -> Double.compare(p2.price, p1.price));
+        /**
+         * Standalone: loads the catalogue file and opens the order log. Runs on the startup thread.
+         */
+        private OrderingBackend openLocal(Path dataDir) {
+            catalogueFile = dataDir.resolve("catalogue.bin");
+            OrderLog log = null;
+            List<Order> logged = List.of();
+            try {
+                log = OrderLog.open(dataDir.resolve("orders.log"));
+                log.compactIfNeeded();
+                logged = log.readFrom(0);
+            } catch (IOException e) {
+                System.err.println("Failed to open order log: " + e.getMessage());
             }
-
-
-            for (Product p : filtered) {
-                productGrid.getChildren().add(createProductCard(p));
+            orderLog = log;
+            List<Product> loaded = loadCatalogue(catalogueFile, log);
+            // The saved stock is from the last clean shutdown; after a crash, orders logged since
+            // then still have to come off it
+            long checkpoint = catalogueFile != null ? StockCheckpoint.read(catalogueFile) : -1;
+            int replayed = StockCheckpoint.replay(loaded, logged, checkpoint);
+            if (replayed > 0) {
+                System.err.println("Took the stock of " + replayed + " orders off the saved catalogue after an unclean shutdown");
             }
-        }
-
-        private VBox createProductCard(Product product) {
-            VBox card = new VBox();
-            card.setPrefWidth(200);
-            card.setSpacing(8);
-            card.setPadding(new Insets(10));
-            card.getStyleClass().add("product-card");
-
-            ImageView imageView = new ImageView();
-            Image image = new Image(product.imageUrl, 200, 140, true, true);
-
-            if (image.isError()) {
-                System.out.println("❌ Failed to load image for: " + product.name);
-                System.out.println("URL: " + product.imageUrl);
-                System.out.println("Reason: " + image.getException());
+            addLoaded(loaded);
+            // Past orders seed the recommendations; old ones weigh little after decay
+            logged.forEach(recommendations::record);
+            String syncTarget = getParameters().getNamed().get("sync");
+            if (log != null && syncTarget != null) {
+                try {
+                    orderSyncer = new OrderSyncer(log, dataDir.resolve("orders.sync"),
+                            new OrderingClient(URI.create(syncTarget), serverToken()), 200);
+                    orderSyncer.start();
+                } catch (IOException e) {
+                    System.err.println("Failed to start order sync: " + e.getMessage());
+                }
             }
+            orderService = new OrderService(catalogue, stockLedger, orderLog, 256, 2);
+            OrderSyncer syncer = orderSyncer;
+            if (syncer != null) {
+                // New orders go to the server right away rather than at the next poll
+                orderService.addStoredListener(stored -> syncer.syncSoon());
+            }
+            return orderService;
+        }
 
-            imageView.setImage(image);
-            imageView.setSmooth(true);
-            imageView.setPreserveRatio(true);
-            imageView.setFitWidth(200);
-            imageView.setFitHeight(140);
-            imageView.setAccessibleText(product.name + ", image");
-
-            Label nameLabel = new Label(product.name);
-            nameLabel.setFont(Font.font(16));
-            nameLabel.setWrapText(true);
-
-            Label descLabel = new Label(product.description);
-            descLabel.setStyle("-fx-text-fill: #555;");
-            descLabel.setWrapText(true);
-
-            Label priceLabel = new Label(String.format("₹%.0f", product.price * 83.0)); // approximate conversion rate
-
-            priceLabel.setStyle("-fx-font-weight: bold; -fx-text-fill: #7c3aed;");
-
-            // Add to Cart Button and quantity selector
-            HBox actionBox = new HBox();
-            actionBox.setSpacing(8);
-            actionBox.setAlignment(Pos.CENTER_LEFT);
-
-            Spinner<Integer> quantitySpinner = new Spinner<>(1, product.stock, 1);
-            quantitySpinner.setPrefWidth(80);
-
-            Button addToCartBtn = new Button("Add");
-            addToCartBtn.setStyle("-fx-background-color: #7c3aed; -fx-text-fill: white;");
-
-            addToCartBtn.setOnAction(e -> {
-                int qty = quantitySpinner.getValue();
-                addToCart(product, qty);
-            });
-
-            actionBox.getChildren().addAll(quantitySpinner, addToCartBtn);
-
-            card.getChildren().addAll(imageView, nameLabel, descLabel, priceLabel, actionBox);
+        /**
+         * The shared token of the server behind --server or --sync, from --token or
+         * JECRC_API_TOKEN; null if it does not need one.
+         */
+        private String serverToken() {
+            String token = getParameters().getNamed().getOrDefault("token", System.getenv("JECRC_API_TOKEN"));
+            return token == null || token.isEmpty() ? null : token;
+        }
 
-            // Hover effect
-            card.getStyleClass().add("product-card");
-            return card;
+        /**
+         * Puts loaded products into the catalogue straight from the loading thread; the
+         * catalogue listeners bring the grid and the facets up to date.
+         */
+        private void addLoaded(List<Product> loaded) {
+            catalogue.addAll(loaded);
+            // The catalogue already shows the loaded stock; no per-product flush needed
+            loaded.forEach(p -> stockLedger.loadAvailable(p.id, p.stock));
         }
 
-        private void addToCart(Product product, int quantity) {
-            CartItem existing = cartItems.get(product.id);
-            if (existing != null) {
-                int newQty = existing.quantity.get() + quantity;
-                if (newQty <= product.stock) {
-                    existing.quantity.set(newQty);
-                } else {
-                    existing.quantity.set(product.stock);
+        /**
+         * Loads the catalogue from its binary file, or seeds the file with the sample products
+         * on first run. A file that cannot be read is moved aside first, so the samples never
+         * replace it; if it cannot be moved, nothing is saved at shutdown.
+         */
+        private List<Product> loadCatalogue(Path file, OrderLog log) {
+            if (Files.exists(file)) {
+                try {
+                    return CatalogueFile.read(file);
+                } catch (IOException e) {
+                    Path aside = file.resolveSibling(file.getFileName() + ".corrupt-" + System.currentTimeMillis());
+                    try {
+                        Files.move(file, aside);
+                        System.err.println("Failed to load catalogue from " + file + ": " + e.getMessage()
+                                + "; moved it to " + aside + " and starting with the sample products");
+                    } catch (IOException moveFailed) {
+                        System.err.println("Failed to load catalogue from " + file + ": " + e.getMessage()
+                                + "; it could not be moved aside, so this session will not save the catalogue");
+                        catalogueFile = null;
+                        return products;
+                    }
                 }
-            } else {
-                CartItem newItem = new CartItem(product);
-                newItem.quantity.set(Math.min(quantity, product.stock));
-                cartItems.put(product.id, newItem);
             }
-            updateCartCountAndTotal();
+            try {
+                CatalogueFile.write(file, products);
+                StockCheckpoint.write(file, log != null ? log.lastSeq() : 0);
+            } catch (IOException e) {
+                System.err.println("Failed to create catalogue " + file + ": " + e.getMessage());
+            }
+            return products;
         }
 
-        private void updateCartCountAndTotal() {
-            int totalCount = cartItems.values().stream()
-                    .mapToInt(item -> item.quantity.get())
-                    .sum();
-            cartCountLabel.setText(String.valueOf(totalCount));
-
-            double totalPrice = cartItems.values().stream()
-                    .mapToDouble(CartItem::getTotalPrice)
-                    .sum();
-            totalPriceLabel.setText(String.format("Total: ₹%.0f", totalPrice * 83));
-
+        private void flushStockChanges() {
+            stockFlushScheduled.set(false);
+            Map<String, Integer> batch = new HashMap<>();
+            for (String productId : new ArrayList<>(pendingStock.keySet())) {
+                Integer available = pendingStock.remove(productId);
+                if (available != null) {
+                    batch.put(productId, available);
+                }
+            }
+            catalogue.updateStocks(batch);
+            stations.forEach(OrderingStation::refreshStock);
         }
 
-        private void handleCheckout() {
-            if (cartItems.isEmpty()) {
-                Alert alert = new Alert(Alert.AlertType.INFORMATION, "Your cart is empty.");
-                alert.setHeaderText(null);
-                alert.showAndWait();
+        @Override
+        public void stop() throws IOException {
+            // Every station hands its cart's stock back
+            new ArrayList<>(stations).forEach(OrderingStation::close);
+            stallMonitor.close();
+
+            if (backend == null) {
+                // Closed before startup finished loading; there is nothing to save yet
+                stockLedger.close();
+                Metrics.getInstance().stopReporting(metricsFile);
                 return;
             }
-            // For demo: simple confirmation dialog
-            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
-            confirm.setHeaderText("Confirm Checkout");
-            confirm.setContentText("Proceed with checkout? Total: " + totalPriceLabel.getText());
-            Optional<ButtonType> result = confirm.showAndWait();
 
-            if (result.isPresent() && result.get() == ButtonType.OK) {
-                cartItems.clear();
-                updateCartCountAndTotal();
-                Alert success = new Alert(Alert.AlertType.INFORMATION, "Thank you for your purchase!");
-                success.setHeaderText(null);
-                success.showAndWait();
+            // Keep the remaining stock for the next start
+            try {
+                backend.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stockLedger.close();
+            // The catalogue, not the seed list, also holds imported menus
+            List<Product> current = catalogue.view(CatalogueModel.ALL, CatalogueModel.Sort.DEFAULT);
+            for (Product p : current) {
+                p.stock = stockLedger.available(p.id);
+            }
+            if (catalogueFile != null) {
+                try {
+                    CatalogueFile.write(catalogueFile, current);
+                    if (orderLog != null) {
+                        StockCheckpoint.write(catalogueFile, orderLog.lastSeq());
+                    }
+                } catch (IOException e) {
+                    System.err.println("Failed to save catalogue: " + e.getMessage());
+                }
             }
-        }
-
-        private class CartItemCell extends ListCell<CartItem> {
-            @Override
-            protected void updateItem(CartItem item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty || item == null) {
-                    setGraphic(null);
-                    setText(null);
-                } else {
-                    HBox container = new HBox();
-                    container.setSpacing(10);
-                    container.setAlignment(Pos.CENTER_LEFT);
-
-                    ImageView img = new ImageView();
-                    try {
-                        Image image = new Image(item.product.imageUrl, 60, 45, true, true);
-                        img.setImage(image);
-                    } catch (Exception e) {}
-
-                    img.setFitWidth(60);
-                    img.setFitHeight(45);
-                    img.setPreserveRatio(true);
-
-                    VBox details = new VBox();
-                    Label nameLabel = new Label(item.product.name);
-                    nameLabel.setStyle("-fx-font-weight: bold;");
-                    Label priceLabel = new Label(String.format("₹%.0f each", item.product.price * 83));
-
-
-                    details.getChildren().addAll(nameLabel, priceLabel);
-
-                    // Quantity spinner
-                    Spinner<Integer> qtySpinner = new Spinner<>(1, item.product.stock, item.quantity.get());
-                    qtySpinner.setPrefWidth(75);
-                    qtySpinner.getValueFactory().valueProperty().bindBidirectional(item.quantity.asObject());
-
-
-                    qtySpinner.valueProperty().addListener((obs, oldVal, newVal) -> updateCartCountAndTotal());
-
-                    // Remove button
-                    Button removeBtn = new Button("Remove");
-                    removeBtn.setStyle("-fx-background-color:#ef4444; -fx-text-fill:white;");
-                    removeBtn.setOnAction(e -> {
-                        cartItems.remove(item.product.id);
-                    });
-
-                    Region spacer = new Region();
-                    HBox.setHgrow(spacer, Priority.ALWAYS);
-
-                    container.getChildren().addAll(img, details, spacer, qtySpinner, removeBtn);
 
-                    setGraphic(container);
+            if (orderSyncer != null) {
+                try {
+                    orderSyncer.close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
             }
+            if (orderLog != null) {
+                orderLog.close();
+            }
+            if (metricsFile != null) {
+                Metrics.getInstance().stopReporting(metricsFile);
+            }
         }
 
         public static void main(String[] args) {
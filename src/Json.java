@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Just enough JSON for the ordering API: objects become {@link LinkedHashMap}s, arrays
+ * {@link ArrayList}s, integral numbers {@link Long}s and other numbers {@link Double}s.
+ * The parser reads straight from a {@link Reader}, so request bodies are never buffered as a
+ * String first.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    public static String write(Object value) {
+        StringBuilder out = new StringBuilder(64);
+        write(value, out);
+        return out.toString();
+    }
+
+    public static void write(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String s) {
+            writeString(s, out);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map<?, ?> map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeString(String.valueOf(e.getKey()), out);
+                out.append(':');
+                write(e.getValue(), out);
+            }
+            out.append('}');
+        } else if (value instanceof Collection<?> list) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : list) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                write(item, out);
+            }
+            out.append(']');
+        } else {
+            throw new IllegalArgumentException("Cannot write " + value.getClass().getSimpleName() + " as JSON");
+        }
+    }
+
+    private static void writeString(String s, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    public static Object parse(String text) throws IOException {
+        return parse(new StringReader(text));
+    }
+
+    public static Object parse(Reader in) throws IOException {
+        Parser parser = new Parser(in);
+        Object value = parser.value();
+        if (parser.skipWhitespace() != -1) {
+            throw parser.error("Unexpected content after JSON value");
+        }
+        return value;
+    }
+
+    /**
+     * Reads a top-level JSON array one element at a time, so arrays far larger than memory can
+     * be processed.
+     *
+     * @return the number of elements read
+     */
+    public static long readArray(Reader in, Consumer<Object> element) throws IOException {
+        Parser parser = new Parser(in);
+        if (parser.skipWhitespace() != '[') {
+            throw parser.error("Expected a JSON array");
+        }
+        parser.read();
+        long count = 0;
+        if (parser.skipWhitespace() == ']') {
+            parser.read();
+        } else {
+            while (true) {
+                element.accept(parser.value());
+                count++;
+                int c = parser.skipWhitespace();
+                parser.read();
+                if (c == ']') {
+                    break;
+                }
+                if (c != ',') {
+                    throw parser.error("Expected ',' or ']'");
+                }
+            }
+        }
+        if (parser.skipWhitespace() != -1) {
+            throw parser.error("Unexpected content after JSON value");
+        }
+        return count;
+    }
+
+    private static final class Parser {
+        private final Reader in;
+        // Own buffer rather than a BufferedReader, whose read() locks on every character
+        private final char[] buffer = new char[8192];
+        private int offset;
+        private int limit;
+        private long position;
+
+        Parser(Reader in) {
+            this.in = in;
+        }
+
+        Object value() throws IOException {
+            int c = skipWhitespace();
+            return switch (c) {
+                case '{' -> object();
+                case '[' -> array();
+                case '"' -> string();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                case -1 -> throw error("Unexpected end of JSON");
+                default -> {
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        yield number();
+                    }
+                    throw error("Unexpected character '" + (char) c + "'");
+                }
+            };
+        }
+
+        private Map<String, Object> object() throws IOException {
+            read(); // {
+            Map<String, Object> map = new LinkedHashMap<>();
+            if (skipWhitespace() == '}') {
+                read();
+                return map;
+            }
+            while (true) {
+                if (skipWhitespace() != '"') {
+                    throw error("Expected a field name");
+                }
+                String key = string();
+                if (skipWhitespace() != ':') {
+                    throw error("Expected ':'");
+                }
+                read();
+                map.put(key, value());
+                int c = skipWhitespace();
+                read();
+                if (c == '}') {
+                    return map;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private List<Object> array() throws IOException {
+            read(); // [
+            List<Object> list = new ArrayList<>();
+            if (skipWhitespace() == ']') {
+                read();
+                return list;
+            }
+            while (true) {
+                list.add(value());
+                int c = skipWhitespace();
+                read();
+                if (c == ']') {
+                    return list;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        private String string() throws IOException {
+            read(); // opening quote
+            StringBuilder s = new StringBuilder();
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    throw error("Unterminated string");
+                }
+                if (c == '"') {
+                    return s.toString();
+                }
+                if (c != '\\') {
+                    s.append((char) c);
+                    continue;
+                }
+                int e = read();
+                switch (e) {
+                    case '"', '\\', '/' -> s.append((char) e);
+                    case 'b' -> s.append('\b');
+                    case 'f' -> s.append('\f');
+                    case 'n' -> s.append('\n');
+                    case 'r' -> s.append('\r');
+                    case 't' -> s.append('\t');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw error("Bad \\u escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        s.append((char) code);
+                    }
+                    default -> throw error("Bad escape");
+                }
+            }
+        }
+
+        private Number number() throws IOException {
+            StringBuilder s = new StringBuilder();
+            boolean integral = true;
+            while (true) {
+                int c = peek();
+                if (c == '.' || c == 'e' || c == 'E') {
+                    integral = false;
+                } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                s.append((char) read());
+            }
+            try {
+                return integral ? (Number) Long.parseLong(s.toString()) : (Number) Double.parseDouble(s.toString());
+            } catch (NumberFormatException e) {
+                throw error("Bad number " + s);
+            }
+        }
+
+        private Object literal(String word, Object value) throws IOException {
+            for (int i = 0; i < word.length(); i++) {
+                if (read() != word.charAt(i)) {
+                    throw error("Expected " + word);
+                }
+            }
+            return value;
+        }
+
+        int skipWhitespace() throws IOException {
+            int c = peek();
+            while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                read();
+                c = peek();
+            }
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (offset == limit) {
+                int n = in.read(buffer, 0, buffer.length);
+                if (n <= 0) {
+                    return -1;
+                }
+                offset = 0;
+                limit = n;
+            }
+            return buffer[offset];
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            if (c != -1) {
+                offset++;
+                position++;
+            }
+            return c;
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " at offset " + position);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Tells the kitchen what to cook: splits confirmed orders into tickets, one per order line,
+ * and routes each ticket to the station for its product's category ("Pizza", "Indian", ...).
+ * <p>
+ * Checkout threads only append to a station's lock-free queue, so they never wait for the
+ * kitchen or for each other. A cook asking for work takes everything queued so far under the
+ * station's own monitor, groups it by product and gets the product that has waited longest,
+ * with the same product from later orders added up to {@code maxBatchUnits}: ten Margherita
+ * pizzas become one oven run.
+ * <p>
+ * Each station learns its throughput from finished batches: how many units a cook gets
+ * through per second, smoothed so a single slow batch does not swing it, times the number of
+ * cooks, which is the most batches seen cooking there at once in the last ten to twenty
+ * minutes, so it follows a shift change down as well as up. A new order's estimated wait is
+ * the work queued ahead of it, plus its own, divided by that throughput, taking the slowest of
+ * its stations.
+ * <p>
+ * An order that is submitted again, e.g. a retried checkout, is not cooked twice; it gets
+ * what is left of its first estimate.
+ */
+public class KitchenScheduler {
+
+    /** Station for products that are not in the catalogue (any more). */
+    public static final String DEFAULT_STATION = "Kitchen";
+
+    /** Weight of the newest batch in a station's throughput. */
+    private static final double SMOOTHING = 0.2;
+    /** A station's cooks are the most batches cooking at once in this and the previous window. */
+    private static final long COOKS_WINDOW = TimeUnit.MINUTES.toNanos(10);
+    /** Orders whose estimate is remembered, so a resubmitted one is recognised. */
+    private static final int RECENT_ORDERS = 4096;
+
+    /**
+     * One order line waiting at a station.
+     *
+     * @param queuedAt clock reading when the order was submitted
+     */
+    public record Ticket(String orderId, String productId, String name, int quantity, long queuedAt) {
+    }
+
+    /**
+     * Tickets for one product, cooked together.
+     *
+     * @param startedAt clock reading when a cook took the batch
+     */
+    public record Batch(long id, String station, String productId, String name, int units,
+                        List<Ticket> tickets, long startedAt) {
+    }
+
+    private static final class Station {
+        final String name;
+        // Checkout threads only ever append here
+        final ConcurrentLinkedQueue<Ticket> incoming = new ConcurrentLinkedQueue<>();
+        // Units submitted and not cooked yet, including those in a batch being cooked
+        final AtomicInteger pendingUnits = new AtomicInteger();
+
+        // Guarded by the station: drained tickets by product, longest waiting product first
+        final LinkedHashMap<String, ArrayDeque<Ticket>> waiting = new LinkedHashMap<>();
+        int cookingBatches;
+        // Most batches cooking at once in the current and in the previous window
+        int currentPeak;
+        int previousPeak;
+        long windowStart;
+        // Written under the station, read without it
+        volatile int cooks = 1;
+        volatile double unitsPerNanoPerCook;
+
+        Station(String name, double unitsPerNanoPerCook, long now) {
+            this.name = name;
+            this.unitsPerNanoPerCook = unitsPerNanoPerCook;
+            this.windowStart = now;
+        }
+
+        long nanosFor(int units) {
+            return (long) (units / (unitsPerNanoPerCook * cooks));
+        }
+
+        /** Called under the station whenever {@link #cookingBatches} changes. */
+        void countCooks(long now) {
+            if (now - windowStart >= COOKS_WINDOW) {
+                // A window with no batches at all leaves nothing to remember from before it
+                previousPeak = now - windowStart >= 2 * COOKS_WINDOW ? 0 : currentPeak;
+                currentPeak = 0;
+                windowStart = now;
+            }
+            currentPeak = Math.max(currentPeak, cookingBatches);
+            cooks = Math.max(1, Math.max(currentPeak, previousPeak));
+        }
+    }
+
+    private final CatalogueModel catalogue;
+    private final int maxBatchUnits;
+    private final double defaultUnitsPerNano;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Station> stations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Batch> cooking = new ConcurrentHashMap<>();
+    private final AtomicLong batchIds = new AtomicLong();
+    // Clock reading when each recent order is expected to be ready, and their ids oldest first
+    private final ConcurrentHashMap<String, Long> readyAt = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> recentOrders = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder tickets = Metrics.getInstance().counter("kitchen.tickets");
+    private final LongAdder batches = Metrics.getInstance().counter("kitchen.batches");
+    private final Metrics.Histogram queueWait = Metrics.getInstance().histogram("kitchen.queueWait");
+
+    /**
+     * @param unitTime      how long one unit takes until a station has finished some batches
+     * @param maxBatchUnits the most units of one product cooked together, e.g. what fits in the oven
+     */
+    public KitchenScheduler(CatalogueModel catalogue, Duration unitTime, int maxBatchUnits) {
+        this(catalogue, unitTime, maxBatchUnits, System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond clock for queue times and estimates; simulations pass their own
+     */
+    KitchenScheduler(CatalogueModel catalogue, Duration unitTime, int maxBatchUnits, LongSupplier clock) {
+        this.catalogue = catalogue;
+        this.maxBatchUnits = maxBatchUnits;
+        this.defaultUnitsPerNano = 1.0 / unitTime.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Routes a confirmed order's lines to their stations.
+     *
+     * @return the estimated time until the whole order is ready
+     */
+    public Duration submit(Order order) {
+        long now = clock.getAsLong();
+        // Claimed before routing, so two submissions of an order cannot both route it
+        Long ready = readyAt.putIfAbsent(order.orderId(), now);
+        if (ready != null) {
+            return Duration.ofNanos(Math.max(0, ready - now));
+        }
+        recentOrders.offer(order.orderId());
+        if (readyAt.size() > RECENT_ORDERS) {
+            String oldest = recentOrders.poll();
+            if (oldest != null) {
+                readyAt.remove(oldest);
+            }
+        }
+        // Units per station first, so the estimate counts the whole order at each station
+        Map<Station, Integer> unitsByStation = new HashMap<>();
+        List<Ticket> routed = new ArrayList<>(order.lines().size());
+        List<Station> targets = new ArrayList<>(order.lines().size());
+        for (Order.Line line : order.lines()) {
+            Station station = station(stationOf(line.productId()));
+            routed.add(new Ticket(order.orderId(), line.productId(), line.name(), line.quantity(), now));
+            targets.add(station);
+            unitsByStation.merge(station, line.quantity(), Integer::sum);
+        }
+
+        long slowest = 0;
+        for (Map.Entry<Station, Integer> entry : unitsByStation.entrySet()) {
+            Station station = entry.getKey();
+            int ahead = station.pendingUnits.getAndAdd(entry.getValue());
+            slowest = Math.max(slowest, station.nanosFor(ahead + entry.getValue()));
+        }
+        for (int i = 0; i < routed.size(); i++) {
+            targets.get(i).incoming.offer(routed.get(i));
+        }
+        tickets.add(routed.size());
+        readyAt.replace(order.orderId(), now + slowest);
+        return Duration.ofNanos(slowest);
+    }
+
+    /**
+     * The next batch for a station's cook, or null if nothing is waiting there. The batch
+     * counts as cooking until {@link #complete} is called with its id.
+     */
+    public Batch takeBatch(String stationName) {
+        Station station = stations.get(stationName);
+        if (station == null) {
+            return null;
+        }
+        Batch batch;
+        synchronized (station) {
+            for (Ticket ticket; (ticket = station.incoming.poll()) != null; ) {
+                station.waiting.computeIfAbsent(ticket.productId(), id -> new ArrayDeque<>()).add(ticket);
+            }
+            Iterator<ArrayDeque<Ticket>> groups = station.waiting.values().iterator();
+            if (!groups.hasNext()) {
+                return null;
+            }
+            ArrayDeque<Ticket> group = groups.next();
+            List<Ticket> taken = new ArrayList<>();
+            int units = 0;
+            // Always at least one ticket, even if it alone is larger than a batch
+            while (!group.isEmpty() && (taken.isEmpty() || units + group.peek().quantity() <= maxBatchUnits)) {
+                Ticket ticket = group.poll();
+                taken.add(ticket);
+                units += ticket.quantity();
+            }
+            if (group.isEmpty()) {
+                groups.remove();
+            }
+            Ticket first = taken.get(0);
+            batch = new Batch(batchIds.incrementAndGet(), station.name, first.productId(), first.name(),
+                    units, List.copyOf(taken), clock.getAsLong());
+            station.cookingBatches++;
+            station.countCooks(batch.startedAt());
+        }
+        cooking.put(batch.id(), batch);
+        for (Ticket ticket : batch.tickets()) {
+            queueWait.record(batch.startedAt() - ticket.queuedAt());
+        }
+        batches.increment();
+        return batch;
+    }
+
+    /**
+     * Marks a batch as cooked and updates its station's throughput.
+     *
+     * @return the batch, or null if no batch with this id is cooking
+     */
+    public Batch complete(long batchId) {
+        Batch batch = cooking.remove(batchId);
+        if (batch == null) {
+            return null;
+        }
+        Station station = stations.get(batch.station());
+        long now = clock.getAsLong();
+        synchronized (station) {
+            station.cookingBatches--;
+            station.countCooks(now);
+            double sample = (double) batch.units() / Math.max(1, now - batch.startedAt());
+            station.unitsPerNanoPerCook += SMOOTHING * (sample - station.unitsPerNanoPerCook);
+        }
+        station.pendingUnits.addAndGet(-batch.units());
+        return batch;
+    }
+
+    /** Stations that have received tickets, in no particular order. */
+    public List<String> stations() {
+        return new ArrayList<>(stations.keySet());
+    }
+
+    /** Units at a station that are waiting or cooking. */
+    public int pendingUnits(String stationName) {
+        Station station = stations.get(stationName);
+        return station != null ? station.pendingUnits.get() : 0;
+    }
+
+    /** How long the work now waiting or cooking at a station is expected to take. */
+    public Duration estimatedWait(String stationName) {
+        Station station = stations.get(stationName);
+        return station != null ? Duration.ofNanos(station.nanosFor(station.pendingUnits.get())) : Duration.ZERO;
+    }
+
+    private String stationOf(String productId) {
+        JECRC_FoodsApp.Product product = catalogue.get(productId);
+        return product != null && product.category != null ? product.category : DEFAULT_STATION;
+    }
+
+    private Station station(String name) {
+        return stations.computeIfAbsent(name, n -> new Station(n, defaultUnitsPerNano, clock.getAsLong()));
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the hot paths of the terminal.
+ * <p>
+ * Recording never locks: counters are {@link LongAdder}s and histograms count into power-of-two
+ * buckets with atomic increments, so instrumented code can record from any thread, including
+ * the FX thread. Callers look their metric up once and keep the reference.
+ * <p>
+ * {@link #snapshot()} flattens everything into named values (latencies in milliseconds, rates
+ * per minute). The same values are published over JMX as {@code jecrc.foods:type=Metrics} and,
+ * once {@link #startReporting} is called, written to a local file at a fixed period.
+ */
+public final class Metrics implements MetricsMXBean {
+
+    /**
+     * A latency histogram in nanoseconds. Bucket {@code b} counts values below {@code 2^b} ns,
+     * which bounds the error of a percentile to a factor of two, plenty to tell a 5 ms query
+     * from a 500 ms one.
+     */
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            long seen = max.get();
+            while (value > seen && !max.compareAndSet(seen, value)) {
+                seen = max.get();
+            }
+        }
+
+        /** Records the time elapsed since {@code startNanos}, a {@link System#nanoTime()} reading. */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        /**
+         * The upper bound of the bucket holding the given quantile, in nanoseconds.
+         */
+        public long percentile(double quantile) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int b = 0; b < 64; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) {
+                    return Math.min(b == 63 ? Long.MAX_VALUE : 1L << b, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        public double meanNanos() {
+            long total = count.sum();
+            return total == 0 ? 0 : (double) sum.sum() / total;
+        }
+
+        public long maxNanos() {
+            return max.get();
+        }
+
+        void reset() {
+            for (int b = 0; b < 64; b++) {
+                buckets.set(b, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+    }
+
+    private static final Metrics instance = new Metrics();
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    // Per-minute rates of the counters over the last reporting period, set by the reporter
+    private volatile Map<String, Double> rates = Map.of();
+    private Map<String, Long> lastCounts = Map.of();
+    private long lastRateNanos = System.nanoTime();
+    private ScheduledExecutorService reporter;
+
+    private Metrics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("jecrc.foods:type=Metrics"));
+        } catch (Exception e) {
+            System.err.println("Metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Every metric as a named value: counters as totals and, once reporting runs, as
+     * {@code .perMinute} rates; histograms as {@code .count}, {@code .meanMs}, {@code .p50Ms},
+     * {@code .p90Ms}, {@code .p99Ms} and {@code .maxMs}; plus the image cache hit rate.
+     */
+    public Map<String, Double> snapshot() {
+        TreeMap<String, Double> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, (double) counter.sum()));
+        rates.forEach((name, rate) -> values.put(name + ".perMinute", rate));
+        histograms.forEach((name, h) -> {
+            values.put(name + ".count", (double) h.count());
+            values.put(name + ".meanMs", h.meanNanos() / 1e6);
+            values.put(name + ".p50Ms", h.percentile(0.50) / 1e6);
+            values.put(name + ".p90Ms", h.percentile(0.90) / 1e6);
+            values.put(name + ".p99Ms", h.percentile(0.99) / 1e6);
+            values.put(name + ".maxMs", h.maxNanos() / 1e6);
+        });
+        double hits = values.getOrDefault("image.hit", 0.0);
+        double misses = values.getOrDefault("image.miss", 0.0);
+        if (hits + misses > 0) {
+            values.put("image.hitRate", hits / (hits + misses));
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getValues() {
+        return snapshot();
+    }
+
+    @Override
+    public String getSnapshotText() {
+        StringBuilder out = new StringBuilder();
+        out.append("# ").append(Instant.now()).append('\n');
+        snapshot().forEach((name, value) -> out.append(name).append(' ').append(format(value)).append('\n'));
+        return out.toString();
+    }
+
+    @Override
+    public void reset() {
+        counters.values().forEach(LongAdder::reset);
+        histograms.values().forEach(Histogram::reset);
+        synchronized (this) {
+            lastCounts = Map.of();
+            rates = Map.of();
+            lastRateNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Updates the per-minute rates and rewrites {@code file} with a snapshot every period,
+     * on a daemon thread. The file is replaced atomically so readers never see half of it.
+     */
+    public synchronized void startReporting(Path file, Duration period) {
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = period.toMillis();
+        reporter.scheduleWithFixedDelay(() -> {
+            updateRates();
+            write(file);
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the reporter after writing a last snapshot.
+     */
+    public synchronized void stopReporting(Path file) {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+            updateRates();
+            write(file);
+        }
+    }
+
+    private synchronized void updateRates() {
+        long now = System.nanoTime();
+        double minutes = (now - lastRateNanos) / 60e9;
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, Double> perMinute = new HashMap<>();
+        counters.forEach((name, counter) -> {
+            long count = counter.sum();
+            counts.put(name, count);
+            if (minutes > 0) {
+                perMinute.put(name, (count - lastCounts.getOrDefault(name, 0L)) / minutes);
+            }
+        });
+        lastCounts = counts;
+        lastRateNanos = now;
+        rates = perMinute;
+    }
+
+    private void write(Path file) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, getSnapshotText());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to write metrics snapshot: " + e.getMessage());
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,16 @@
+import java.util.Map;
+
+/**
+ * The JMX view of {@link Metrics}, for JConsole, VisualVM or any JMX client.
+ */
+public interface MetricsMXBean {
+
+    /** Every metric as a flat name to value map. */
+    Map<String, Double> getValues();
+
+    /** The same values as text, one {@code name value} pair per line. */
+    String getSnapshotText();
+
+    /** Zeroes all counters and histograms, e.g. before reproducing a problem. */
+    void reset();
+}
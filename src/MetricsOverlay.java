@@ -0,0 +1,59 @@
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.layout.StackPane;
+import javafx.util.Duration;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A small read-out of the live metrics in the corner of the window, for checking a slow
+ * terminal on the spot. Hidden by default; it only refreshes while it is shown.
+ */
+public class MetricsOverlay extends Label {
+
+    private final Timeline refresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> update()));
+
+    public MetricsOverlay() {
+        setMouseTransparent(true);
+        setPadding(new Insets(8));
+        setStyle("-fx-background-color: rgba(0,0,0,0.75); -fx-text-fill: #a7f3d0;"
+                + " -fx-font-family: monospace; -fx-font-size: 11px; -fx-background-radius: 6;");
+        StackPane.setAlignment(this, Pos.BOTTOM_LEFT);
+        StackPane.setMargin(this, new Insets(12));
+        refresh.setCycleCount(Timeline.INDEFINITE);
+        setVisible(false);
+    }
+
+    public void toggle() {
+        boolean show = !isVisible();
+        setVisible(show);
+        if (show) {
+            update();
+            refresh.play();
+        } else {
+            refresh.stop();
+        }
+    }
+
+    private void update() {
+        Map<String, Double> m = Metrics.getInstance().snapshot();
+        setText(String.format(Locale.ROOT,
+                "query    p50 %6.1f ms  p99 %6.1f ms  (%d)%n"
+                        + "grid     p50 %6.1f ms  p99 %6.1f ms%n"
+                        + "fx wait  p99 %6.1f ms  stalls %d (%d ms)%n"
+                        + "images   hit rate %5.1f%%  failures %d%n"
+                        + "checkout %d done, %.1f / min, p99 %6.1f ms",
+                m.getOrDefault("query.latency.p50Ms", 0.0), m.getOrDefault("query.latency.p99Ms", 0.0),
+                m.getOrDefault("query.latency.count", 0.0).longValue(),
+                m.getOrDefault("grid.rebuild.p50Ms", 0.0), m.getOrDefault("grid.rebuild.p99Ms", 0.0),
+                m.getOrDefault("fx.latency.p99Ms", 0.0),
+                m.getOrDefault("fx.stalls", 0.0).longValue(), m.getOrDefault("fx.stallMs", 0.0).longValue(),
+                100 * m.getOrDefault("image.hitRate", 0.0), m.getOrDefault("image.failures", 0.0).longValue(),
+                m.getOrDefault("checkout.completed", 0.0).longValue(),
+                m.getOrDefault("checkout.completed.perMinute", 0.0), m.getOrDefault("checkout.latency.p99Ms", 0.0)));
+    }
+}
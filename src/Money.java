@@ -0,0 +1,40 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Rupee amounts. Catalogue prices are stored in dollars; everything the customer pays is
+ * converted once, exactly, into whole paise and added up as longs from there on.
+ */
+public final class Money {
+
+    /** Conversion rate used for every price shown in the app. */
+    private static final BigDecimal PAISE_PER_DOLLAR = new BigDecimal("8300"); // ₹83 per $
+
+    private Money() {
+    }
+
+    /**
+     * Converts a catalogue price to paise. Goes through the decimal form of the double, so
+     * 5.99 becomes exactly 49717 paise instead of whatever 5.99 * 83 rounds to in binary.
+     */
+    public static long toPaise(double catalogPrice) {
+        return BigDecimal.valueOf(catalogPrice)
+                .multiply(PAISE_PER_DOLLAR)
+                .setScale(0, RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+    /**
+     * Rounds an amount to whole rupees, half a rupee up, as prices are shown in the app.
+     */
+    public static long rupees(long paise) {
+        return Math.floorDiv(paise + 50, 100);
+    }
+
+    /**
+     * Formats an amount to whole rupees, the way prices are shown in the app.
+     */
+    public static String format(long paise) {
+        return "₹" + rupees(paise);
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.List;
+
+/**
+ * A confirmed order as stored in the {@link OrderLog}. Prices are in paise and copied from the
+ * catalogue at checkout, so later price changes never alter a past order.
+ *
+ * @param seq       position in the order log, assigned when the order is appended
+ * @param orderId   unique id of the order
+ * @param timestamp epoch millis of the checkout
+ */
+public record Order(long seq, String orderId, long timestamp, List<Line> lines) {
+
+    public record Line(String productId, String name, int quantity, long unitPricePaise) {
+
+        public long totalPaise() {
+            return unitPricePaise * quantity;
+        }
+    }
+
+    public Order {
+        lines = List.copyOf(lines);
+    }
+
+    public long totalPaise() {
+        long total = 0;
+        for (Line line : lines) {
+            total += line.totalPaise();
+        }
+        return total;
+    }
+
+    public int itemCount() {
+        int count = 0;
+        for (Line line : lines) {
+            count += line.quantity();
+        }
+        return count;
+    }
+
+    Order withSeq(long seq) {
+        return new Order(seq, orderId, timestamp, lines);
+    }
+}
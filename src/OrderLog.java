@@ -0,0 +1,497 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, checksummed log of confirmed orders.
+ * <p>
+ * Every record is framed as {@code [payload length][CRC32C of payload][payload]}. Appends are
+ * one sequential write followed by a force, so an order is on disk before checkout reports
+ * success; several orders can share one write and one force. On open the log is scanned. A
+ * torn tail, which only a crash in the middle of an append can leave, is cut off; a bad record
+ * with intact records after it is damage to confirmed orders, so the log is copied aside and
+ * not opened.
+ * <p>
+ * Voided orders stay in the file until {@link #compact()} rewrites it with the live orders
+ * only, headed by a record of the last sequence number handed out, so voided orders at the end
+ * do not have their numbers handed out again after a restart. Only one process may have a log
+ * open: the other gets an error instead of a second writer.
+ */
+public class OrderLog implements Closeable {
+
+    private static final byte TYPE_ORDER = 1;
+    private static final byte TYPE_VOID = 2;
+    /** The last sequence number handed out before a compaction, which may have removed its order. */
+    private static final byte TYPE_LAST_SEQ = 3;
+    private static final int FRAME_HEADER = 8;
+    private static final int MAX_RECORD = 16 * 1024 * 1024;
+    private static final int READ_CHUNK = 64 * 1024;
+    /** One order in this many is indexed by position, so reads can start near their first order. */
+    private static final int INDEX_EVERY = 1024;
+
+    /** Compaction is worth it once at least this much of the file is dead. */
+    private static final long COMPACT_MIN_DEAD_BYTES = 1024 * 1024;
+
+    private record Live(long seq, int frameSize) {
+    }
+
+    private final Path file;
+    private FileChannel lockChannel;
+    private FileChannel channel;
+    private long size;
+    private long deadBytes;
+    private long nextSeq = 1;
+    // Sequence number and record size of every live order, by order id
+    private final HashMap<String, Live> liveOrders = new HashMap<>();
+    // File offset of every INDEX_EVERY-th order record, by sequence number
+    private final TreeMap<Long, Long> offsets = new TreeMap<>();
+
+    private OrderLog(Path file) {
+        this.file = file;
+    }
+
+    public static OrderLog open(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        OrderLog log = new OrderLog(file);
+        // Lock a file of its own: compaction replaces the log file, and with it any lock on it
+        log.lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = log.lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Order log " + file + " is in use by another process");
+            }
+            log.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            log.recover();
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        long valid = scan(0, Long.MAX_VALUE, (record, offset) -> {
+            if (record.type == TYPE_ORDER) {
+                liveOrders.put(record.orderId, new Live(record.seq, record.frameSize));
+                index(record.seq, offset);
+                nextSeq = Math.max(nextSeq, record.seq + 1);
+            } else if (record.type == TYPE_LAST_SEQ) {
+                nextSeq = Math.max(nextSeq, record.seq + 1);
+            } else {
+                Live order = liveOrders.remove(record.orderId);
+                deadBytes += record.frameSize + (order != null ? order.frameSize() : 0);
+            }
+        });
+        if (valid < fileSize) {
+            long next = nextIntactFrame(valid + 1, fileSize);
+            if (next >= 0) {
+                Path copy = file.resolveSibling(file.getFileName() + ".corrupt-" + System.currentTimeMillis());
+                Files.copy(file, copy);
+                throw new IOException("Order log " + file + " is damaged at byte " + valid + " with orders after it at byte "
+                        + next + "; not opening it. A copy is in " + copy);
+            }
+            System.err.println("Order log " + file + ": dropping " + (fileSize - valid) + " bytes of incomplete tail");
+            channel.truncate(valid);
+            channel.force(true);
+        }
+        size = valid;
+    }
+
+    /**
+     * Appends orders with one write and one force. The orders get their log sequence numbers here.
+     *
+     * @return the orders as stored, with {@link Order#seq()} set
+     */
+    public synchronized List<Order> appendAll(List<Order> orders) throws IOException {
+        List<Order> stored = new ArrayList<>(orders.size());
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(orders.size() * 256);
+        int[] frameSizes = new int[orders.size()];
+        long seq = nextSeq;
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i).withSeq(seq++);
+            frameSizes[i] = frame(batch, encodeOrder(order));
+            stored.add(order);
+        }
+
+        long offset = size;
+        write(batch.toByteArray());
+        nextSeq = seq;
+        for (int i = 0; i < stored.size(); i++) {
+            Order order = stored.get(i);
+            liveOrders.put(order.orderId(), new Live(order.seq(), frameSizes[i]));
+            index(order.seq(), offset);
+            offset += frameSizes[i];
+        }
+        return stored;
+    }
+
+    /**
+     * Appends only the orders whose id is not already live in the log, e.g. orders another
+     * terminal may be sending for the second time.
+     *
+     * @return the orders that were appended
+     */
+    public synchronized List<Order> appendAbsent(List<Order> orders) throws IOException {
+        List<Order> fresh = new ArrayList<>(orders.size());
+        Set<String> seen = new HashSet<>();
+        for (Order order : orders) {
+            if (!liveOrders.containsKey(order.orderId()) && seen.add(order.orderId())) {
+                fresh.add(order);
+            }
+        }
+        return fresh.isEmpty() ? fresh : appendAll(fresh);
+    }
+
+    public Order append(Order order) throws IOException {
+        return appendAll(List.of(order)).get(0);
+    }
+
+    /**
+     * Marks an order as voided (e.g. refunded). It disappears from reads right away and from
+     * the file at the next compaction.
+     *
+     * @return the voided order, or null if no live order has this id
+     */
+    public synchronized Order voidOrder(String orderId) throws IOException {
+        Live live = liveOrders.get(orderId);
+        if (live == null) {
+            return null;
+        }
+        Order voided = find(orderId);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(TYPE_VOID);
+        data.writeLong(0);
+        CatalogueFile.putString(data, orderId);
+        data.flush();
+
+        ByteArrayOutputStream framed = new ByteArrayOutputStream();
+        int frameSize = frame(framed, out.toByteArray());
+        write(framed.toByteArray());
+        liveOrders.remove(orderId);
+        deadBytes += live.frameSize() + frameSize;
+        return voided;
+    }
+
+    /**
+     * Reads only the stretch of the file between the index entries around the order.
+     *
+     * @return the live order with this id, or null if there is none
+     */
+    public synchronized Order find(String orderId) throws IOException {
+        Live live = liveOrders.get(orderId);
+        if (live == null) {
+            return null;
+        }
+        Map.Entry<Long, Long> start = offsets.floorEntry(live.seq());
+        Map.Entry<Long, Long> end = offsets.higherEntry(live.seq());
+        Order[] found = new Order[1];
+        scan(start != null ? start.getValue() : 0, end != null ? end.getValue() : Long.MAX_VALUE, (record, offset) -> {
+            if (record.type == TYPE_ORDER && record.seq == live.seq()) {
+                found[0] = record.order;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Live orders with a sequence number of at least {@code fromSeq}, oldest first. Reading
+     * starts at the nearest indexed order, so asking for recent orders reads little of the file.
+     */
+    public synchronized List<Order> readFrom(long fromSeq) throws IOException {
+        List<Order> orders = new ArrayList<>();
+        Map.Entry<Long, Long> start = offsets.floorEntry(fromSeq);
+        scan(start != null ? start.getValue() : 0, Long.MAX_VALUE, (record, offset) -> {
+            if (record.type == TYPE_ORDER && record.seq >= fromSeq) {
+                Live live = liveOrders.get(record.orderId);
+                if (live != null && live.seq() == record.seq) {
+                    orders.add(record.order);
+                }
+            }
+        });
+        return orders;
+    }
+
+    public synchronized int liveOrderCount() {
+        return liveOrders.size();
+    }
+
+    /** Sequence number of the last order appended, or 0 if there is none. */
+    public synchronized long lastSeq() {
+        return nextSeq - 1;
+    }
+
+    public synchronized long sizeBytes() {
+        return size;
+    }
+
+    /**
+     * Compacts when voided records make up a large part of the file. Meant to be called
+     * periodically, e.g. at startup or when the terminal is idle.
+     */
+    public synchronized boolean compactIfNeeded() throws IOException {
+        if (deadBytes >= COMPACT_MIN_DEAD_BYTES && deadBytes * 2 >= size) {
+            compact();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Rewrites the log with only the live orders and swaps it in atomically. Sequence numbers
+     * are kept, and so is the last one handed out, so readers that track a position by sequence
+     * are unaffected. If the swap fails the old file stays in use.
+     */
+    public synchronized void compact() throws IOException {
+        List<Order> live = readFrom(0);
+        Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        frame(out, encodeLastSeq(nextSeq - 1));
+        HashMap<String, Live> compacted = new HashMap<>();
+        TreeMap<Long, Long> compactedOffsets = new TreeMap<>();
+        for (Order order : live) {
+            long offset = out.size();
+            if (compactedOffsets.isEmpty() || order.seq() - compactedOffsets.lastKey() >= INDEX_EVERY) {
+                compactedOffsets.put(order.seq(), offset);
+            }
+            compacted.put(order.orderId(), new Live(order.seq(), frame(out, encodeOrder(order))));
+        }
+        try (FileChannel target = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            target.force(true);
+        }
+
+        // Windows cannot replace a file that is open, so close first and reopen whatever is
+        // in place afterwards
+        channel.close();
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        deadBytes = 0;
+        liveOrders.clear();
+        liveOrders.putAll(compacted);
+        offsets.clear();
+        offsets.putAll(compactedOffsets);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            // Closing the channel releases the lock
+            lockChannel.close();
+        }
+    }
+
+    private void index(long seq, long offset) {
+        if (offsets.isEmpty() || seq - offsets.lastKey() >= INDEX_EVERY) {
+            offsets.put(seq, offset);
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = size;
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Never leave a partial record behind for the next append to build on
+            channel.truncate(size);
+            throw e;
+        }
+        size = position;
+    }
+
+    private static int frame(ByteArrayOutputStream out, byte[] payload) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(payload.length);
+        data.writeInt((int) crc.getValue());
+        data.write(payload);
+        data.flush();
+        return FRAME_HEADER + payload.length;
+    }
+
+    private static byte[] encodeOrder(Order order) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(TYPE_ORDER);
+        data.writeLong(order.seq());
+        CatalogueFile.putString(data, order.orderId());
+        data.writeLong(order.timestamp());
+        data.writeInt(order.lines().size());
+        for (Order.Line line : order.lines()) {
+            CatalogueFile.putString(data, line.productId());
+            CatalogueFile.putString(data, line.name());
+            data.writeInt(line.quantity());
+            data.writeLong(line.unitPricePaise());
+        }
+        data.flush();
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeLastSeq(long seq) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(TYPE_LAST_SEQ);
+        data.writeLong(seq);
+        CatalogueFile.putString(data, "");
+        data.flush();
+        return out.toByteArray();
+    }
+
+    private static final class Record {
+        byte type;
+        long seq;
+        String orderId;
+        Order order;
+        int frameSize;
+    }
+
+    private interface RecordVisitor {
+        void visit(Record record, long offset);
+    }
+
+    /**
+     * Reads the file through a window that slides along it, so a scan needs one chunk of heap
+     * whatever the size of the log.
+     */
+    private final class Window {
+        private ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+        private long start;
+        private int valid;
+
+        /**
+         * Makes {@code length} bytes from {@code offset} on available.
+         *
+         * @return their index in {@link #buffer}, or -1 if the file ends first
+         */
+        int load(long offset, int length) throws IOException {
+            if (offset >= start && offset + length <= start + valid) {
+                return (int) (offset - start);
+            }
+            if (length > buffer.capacity()) {
+                buffer = ByteBuffer.allocate(length);
+            }
+            buffer.clear();
+            start = offset;
+            valid = 0;
+            while (valid < length) {
+                int read = channel.read(buffer, start + valid);
+                if (read < 0) {
+                    return -1;
+                }
+                valid += read;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Visits every intact record that starts at or after {@code from} and before {@code to}.
+     *
+     * @return the offset just past the last intact record
+     */
+    private long scan(long from, long to, RecordVisitor visitor) throws IOException {
+        long fileSize = channel.size();
+        Window window = new Window();
+        byte[] scratch = new byte[256];
+        Record record = new Record();
+        CRC32C crc = new CRC32C();
+        long position = from;
+        while (position < to && position + FRAME_HEADER <= fileSize) {
+            int at = window.load(position, FRAME_HEADER);
+            int length = window.buffer.getInt(at);
+            int checksum = window.buffer.getInt(at + 4);
+            if (length <= 0 || length > MAX_RECORD || position + FRAME_HEADER + (long) length > fileSize) {
+                break;
+            }
+            at = window.load(position, FRAME_HEADER + length);
+            if (at < 0) {
+                break;
+            }
+            ByteBuffer payload = window.buffer.slice(at + FRAME_HEADER, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            record.type = payload.get();
+            record.seq = payload.getLong();
+            record.orderId = CatalogueFile.getString(payload, scratch);
+            record.frameSize = FRAME_HEADER + length;
+            if (record.type == TYPE_ORDER) {
+                long timestamp = payload.getLong();
+                int lineCount = payload.getInt();
+                List<Order.Line> lines = new ArrayList<>(lineCount);
+                for (int i = 0; i < lineCount; i++) {
+                    lines.add(new Order.Line(CatalogueFile.getString(payload, scratch),
+                            CatalogueFile.getString(payload, scratch), payload.getInt(), payload.getLong()));
+                }
+                record.order = new Order(record.seq, record.orderId, timestamp, lines);
+            } else if (record.type != TYPE_VOID && record.type != TYPE_LAST_SEQ) {
+                break;
+            }
+            visitor.visit(record, position);
+            position += record.frameSize;
+        }
+        return position;
+    }
+
+    /**
+     * The offset of the first intact record at or after {@code from}, or -1 if there is none,
+     * i.e. the bytes before it are a torn tail rather than damage in the middle of the log.
+     */
+    private long nextIntactFrame(long from, long fileSize) throws IOException {
+        Window window = new Window();
+        CRC32C crc = new CRC32C();
+        for (long position = from; position + FRAME_HEADER <= fileSize; position++) {
+            int at = window.load(position, FRAME_HEADER);
+            int length = window.buffer.getInt(at);
+            if (length <= 0 || length > MAX_RECORD || position + FRAME_HEADER + (long) length > fileSize) {
+                continue;
+            }
+            int checksum = window.buffer.getInt(at + 4);
+            at = window.load(position, FRAME_HEADER + length);
+            crc.reset();
+            crc.update(window.buffer.slice(at + FRAME_HEADER, length));
+            if ((int) crc.getValue() == checksum) {
+                return position;
+            }
+        }
+        return -1;
+    }
+}
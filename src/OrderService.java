@@ -0,0 +1,489 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Takes orders from any front end (a terminal's checkout button, a kiosk, a test harness) and
+ * turns them into stored orders, without touching the UI.
+ * <p>
+ * Submitted orders wait in a bounded queue; when it is full, {@link #submit} answers
+ * {@link Status#BUSY} right away instead of letting a rush pile up. A pool of workers validates
+ * each order, prices it from the catalogue and takes its stock from the {@link StockLedger}.
+ * An order whose id was submitted before is not placed again: the retry gets the first
+ * submission's answer, from memory for recent orders and from the order log for older ones.
+ * A single writer then appends whatever is ready to the {@link OrderLog} in one write and one
+ * force (group commit), so a burst of checkouts costs a handful of disk syncs. Every order's
+ * future completes once its fate is decided, on the writer or a worker thread.
+ * <p>
+ * Without an order log (e.g. it could not be opened) every order is answered
+ * {@link Status#FAILED} and its stock put back.
+ */
+public class OrderService implements OrderingBackend, AutoCloseable {
+
+    public enum Status {
+        /** Stored in the order log; stock is sold. */
+        CONFIRMED,
+        /** Some products don't have enough stock; nothing was sold. */
+        UNAVAILABLE,
+        /** Empty order, unknown product or bad quantity. */
+        INVALID,
+        /** The order could not be stored; its stock was put back. */
+        FAILED,
+        /** The queue is full or the service is shutting down; try again. */
+        BUSY,
+        /** Prices changed since the products were added to the cart; nothing was sold. */
+        PRICE_CHANGED
+    }
+
+    /**
+     * An order to place.
+     *
+     * @param orderId    chosen by the client, so a retried submission can be recognised
+     * @param cartId     the cart whose reservations cover the lines, or null to take the stock directly
+     * @param lines      quantity per product id
+     * @param unitPrices paise per product id as the customer was shown them; products without
+     *                   one are charged the catalogue price
+     */
+    public record OrderRequest(String orderId, String cartId, Map<String, Integer> lines, Map<String, Long> unitPrices) {
+
+        public OrderRequest {
+            lines = Collections.unmodifiableMap(new LinkedHashMap<>(lines));
+            unitPrices = Map.copyOf(unitPrices);
+        }
+
+        public OrderRequest(String orderId, String cartId, Map<String, Integer> lines) {
+            this(orderId, cartId, lines, Map.of());
+        }
+    }
+
+    /**
+     * @param order       the stored order when confirmed, otherwise null
+     * @param unavailable product ids that lacked stock (or were unknown, for INVALID, or
+     *                    repriced, for PRICE_CHANGED)
+     */
+    public record OrderResult(Status status, Order order, List<String> unavailable, String message) {
+
+        public boolean confirmed() {
+            return status == Status.CONFIRMED;
+        }
+    }
+
+    private static final int DEFAULT_MAX_BATCH = 256;
+    /** The order log is compacted, if it needs it, once the writer has been idle this long. */
+    private static final long IDLE_COMPACT_SECONDS = 60;
+    /** Submissions remembered by order id; older retries are looked up in the order log. */
+    private static final int RECENT_ORDERS = 4096;
+
+    private record Pending(OrderRequest request, CompletableFuture<OrderResult> result, long submitted) {
+    }
+
+    private record Priced(Pending pending, Order order) {
+    }
+
+    private static final Pending STOP = new Pending(null, null, 0);
+    private static final Priced STOP_WRITER = new Priced(null, null);
+
+    private final CatalogueModel catalogue;
+    private final StockLedger ledger;
+    private final OrderLog log;
+    private final int maxBatch;
+
+    private final BlockingQueue<Pending> inbound;
+    private final BlockingQueue<Priced> ready = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final Thread writer;
+    private final List<Consumer<List<Order>>> storedListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+    // Guarded by itself: the answer to each recent submission, oldest first
+    private final LinkedHashMap<String, CompletableFuture<OrderResult>> recent = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<OrderResult>> eldest) {
+            return size() > RECENT_ORDERS;
+        }
+    };
+
+    private final Metrics.Histogram latency = Metrics.getInstance().histogram("orders.latency");
+    private final LongAdder confirmed = Metrics.getInstance().counter("orders.confirmed");
+    private final LongAdder declined = Metrics.getInstance().counter("orders.declined");
+    private final LongAdder busy = Metrics.getInstance().counter("orders.busy");
+    private final LongAdder retried = Metrics.getInstance().counter("orders.retried");
+    private final LongAdder batches = Metrics.getInstance().counter("orders.batches");
+
+    public OrderService(CatalogueModel catalogue, StockLedger ledger, OrderLog log, int queueCapacity, int workerCount) {
+        this(catalogue, ledger, log, queueCapacity, workerCount, DEFAULT_MAX_BATCH);
+    }
+
+    public OrderService(CatalogueModel catalogue, StockLedger ledger, OrderLog log,
+                        int queueCapacity, int workerCount, int maxBatch) {
+        this.catalogue = catalogue;
+        this.ledger = ledger;
+        this.log = log;
+        this.maxBatch = maxBatch;
+        this.inbound = new ArrayBlockingQueue<>(queueCapacity);
+
+        AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < workerCount; i++) {
+            Thread t = new Thread(this::work, "order-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            workers.add(t);
+            t.start();
+        }
+        writer = new Thread(this::write, "order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues an order. Never blocks: a full queue answers {@link Status#BUSY}.
+     * <p>
+     * Submitting an order id again while the first submission is still being processed, or
+     * after it was confirmed, returns the first submission's answer. After any other answer
+     * nothing was sold, so the order is tried again.
+     */
+    public CompletableFuture<OrderResult> submit(OrderRequest request) {
+        CompletableFuture<OrderResult> result = new CompletableFuture<>();
+        if (request.orderId() != null) {
+            synchronized (recent) {
+                CompletableFuture<OrderResult> earlier = recent.get(request.orderId());
+                if (earlier != null && (!earlier.isDone() || earlier.join().confirmed())) {
+                    retried.increment();
+                    return earlier;
+                }
+                recent.put(request.orderId(), result);
+            }
+        }
+        if (closed || !inbound.offer(new Pending(request, result, System.nanoTime()))) {
+            busy.increment();
+            result.complete(new OrderResult(Status.BUSY, null, List.of(), "The counter is busy, please try again."));
+        }
+        return result;
+    }
+
+    @Override
+    public int reserve(String cartId, String productId, int quantity) {
+        return ledger.reserve(cartId, productId, quantity);
+    }
+
+    @Override
+    public void release(String cartId, String productId) {
+        ledger.release(cartId, productId);
+    }
+
+    @Override
+    public void releaseCart(String cartId) {
+        ledger.releaseCart(cartId);
+    }
+
+    @Override
+    public CompletableFuture<OrderResult> checkout(OrderRequest request) {
+        return submit(request);
+    }
+
+    @Override
+    public void addStockListener(StockLedger.Listener listener) {
+        ledger.addListener(listener);
+    }
+
+    /**
+     * Hears about every batch of new orders once it is in the order log, e.g. to send them on
+     * to a server. Called on the writer thread, after the orders' checkouts were answered.
+     */
+    public void addStoredListener(Consumer<List<Order>> listener) {
+        storedListeners.add(listener);
+    }
+
+    /** Orders waiting for a worker. */
+    public int queued() {
+        return inbound.size();
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                Pending pending = inbound.take();
+                if (pending == STOP) {
+                    return;
+                }
+                try {
+                    Order order = price(pending);
+                    if (order != null) {
+                        ready.add(new Priced(pending, order));
+                    }
+                } catch (RuntimeException e) {
+                    complete(pending, new OrderResult(Status.FAILED, null, List.of(), "Order failed: " + e.getMessage()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Validates and prices an order and takes its stock.
+     *
+     * @return the order to store, or null if it was already answered
+     */
+    private Order price(Pending pending) {
+        OrderRequest request = pending.request();
+        if (request.lines().isEmpty()) {
+            complete(pending, new OrderResult(Status.INVALID, null, List.of(), "The order is empty."));
+            return null;
+        }
+        List<Order.Line> lines = new ArrayList<>(request.lines().size());
+        List<String> unknown = new ArrayList<>();
+        List<String> repriced = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : request.lines().entrySet()) {
+            JECRC_FoodsApp.Product product = catalogue.get(entry.getKey());
+            if (product == null || entry.getValue() == null || entry.getValue() <= 0) {
+                unknown.add(entry.getKey());
+                continue;
+            }
+            long price = Money.toPaise(product.price);
+            Long shown = request.unitPrices().get(product.id);
+            if (shown != null && shown != price) {
+                repriced.add(product.id);
+            }
+            lines.add(new Order.Line(product.id, product.name, entry.getValue(), price));
+        }
+        if (!unknown.isEmpty()) {
+            complete(pending, new OrderResult(Status.INVALID, null, unknown, "Unknown products or quantities: " + unknown));
+            return null;
+        }
+        if (!repriced.isEmpty()) {
+            // Never charge something else than the customer was shown
+            complete(pending, new OrderResult(Status.PRICE_CHANGED, null, repriced, "Prices have changed."));
+            return null;
+        }
+
+        List<String> unavailable = request.cartId() != null ? commitCart(request) : takeStock(request.lines());
+        if (!unavailable.isEmpty()) {
+            // A cart's retry after a restart: its holds went with the first submission
+            Order placed = placedBefore(request.orderId());
+            if (placed != null) {
+                retried.increment();
+                complete(pending, new OrderResult(Status.CONFIRMED, placed, List.of(), null));
+                return null;
+            }
+            complete(pending, new OrderResult(Status.UNAVAILABLE, null, unavailable, "Not enough stock."));
+            return null;
+        }
+        return new Order(0, request.orderId(), System.currentTimeMillis(), lines);
+    }
+
+    /**
+     * The order stored under this id by an earlier submission that is no longer remembered,
+     * e.g. from before a restart.
+     */
+    private Order placedBefore(String orderId) {
+        if (log == null || orderId == null) {
+            return null;
+        }
+        try {
+            return log.find(orderId);
+        } catch (IOException e) {
+            System.err.println("Failed to look up order " + orderId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sells what the cart has reserved, which must be exactly what the order asks for.
+     *
+     * @return the product ids that could not be sold; empty on success
+     */
+    private List<String> commitCart(OrderRequest request) {
+        StockLedger.CommitResult result = ledger.commit(request.cartId());
+        if (!result.committed()) {
+            return result.unavailable().isEmpty() ? new ArrayList<>(request.lines().keySet()) : result.unavailable();
+        }
+        if (result.lines().equals(request.lines())) {
+            return List.of();
+        }
+        // The cart holds something else than what was ordered: undo the sale, keep the holds
+        List<String> differing = new ArrayList<>();
+        for (String productId : request.lines().keySet()) {
+            if (!request.lines().get(productId).equals(result.lines().get(productId))) {
+                differing.add(productId);
+            }
+        }
+        result.lines().forEach((productId, quantity) -> {
+            ledger.restock(productId, quantity);
+            ledger.reserve(request.cartId(), productId, quantity);
+        });
+        return differing.isEmpty() ? new ArrayList<>(result.lines().keySet()) : differing;
+    }
+
+    private List<String> takeStock(Map<String, Integer> lines) {
+        if (ledger.takeAll(lines)) {
+            return List.of();
+        }
+        List<String> missing = new ArrayList<>();
+        lines.forEach((productId, quantity) -> {
+            if (ledger.available(productId) < quantity) {
+                missing.add(productId);
+            }
+        });
+        return missing.isEmpty() ? new ArrayList<>(lines.keySet()) : missing;
+    }
+
+    private void write() {
+        List<Priced> batch = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Priced first = ready.poll(IDLE_COMPACT_SECONDS, TimeUnit.SECONDS);
+                if (first == null) {
+                    compactWhenIdle();
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            ready.drainTo(batch, maxBatch - 1);
+            if (batch.remove(STOP_WRITER)) {
+                stopping = true;
+                ready.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                store(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Compacts the order log between orders, so voided orders do not pile up in it for as long
+     * as the terminal runs.
+     */
+    private void compactWhenIdle() {
+        if (log == null) {
+            return;
+        }
+        try {
+            if (log.compactIfNeeded()) {
+                System.err.println("Compacted order log to " + log.sizeBytes() + " bytes");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to compact order log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Voids a confirmed order, e.g. a refund, and puts its stock back.
+     *
+     * @return the voided order, or null if there is no such confirmed order
+     */
+    public Order voidOrder(String orderId) throws IOException {
+        if (log == null) {
+            throw new IOException("Orders cannot be changed on this terminal right now.");
+        }
+        Order voided = log.voidOrder(orderId);
+        if (voided != null) {
+            for (Order.Line line : voided.lines()) {
+                ledger.restock(line.productId(), line.quantity());
+            }
+        }
+        return voided;
+    }
+
+    private void store(List<Priced> submitted) {
+        // Retries of orders stored before the service last started are answered from the log
+        List<Priced> batch = new ArrayList<>(submitted.size());
+        for (Priced priced : submitted) {
+            Order placed = placedBefore(priced.order().orderId());
+            if (placed == null) {
+                batch.add(priced);
+                continue;
+            }
+            for (Order.Line line : priced.order().lines()) {
+                ledger.restock(line.productId(), line.quantity());
+            }
+            retried.increment();
+            complete(priced.pending(), new OrderResult(Status.CONFIRMED, placed, List.of(), null));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Order> orders = new ArrayList<>(batch.size());
+        for (Priced priced : batch) {
+            orders.add(priced.order());
+        }
+        List<Order> stored;
+        String failure;
+        try {
+            if (log != null) {
+                stored = log.appendAll(orders);
+                failure = null;
+            } else {
+                stored = null;
+                failure = "Orders cannot be saved on this terminal right now.";
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to store " + orders.size() + " orders: " + e.getMessage());
+            stored = null;
+            failure = "Your order could not be saved: " + e.getMessage();
+        }
+        if (stored == null) {
+            for (Priced priced : batch) {
+                for (Order.Line line : priced.order().lines()) {
+                    ledger.restock(line.productId(), line.quantity());
+                }
+                complete(priced.pending(), new OrderResult(Status.FAILED, null, List.of(), failure));
+            }
+            return;
+        }
+        batches.increment();
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i).pending(), new OrderResult(Status.CONFIRMED, stored.get(i), List.of(), null));
+        }
+        for (Consumer<List<Order>> listener : storedListeners) {
+            try {
+                listener.accept(stored);
+            } catch (RuntimeException e) {
+                System.err.println("Stored order listener failed: " + e);
+            }
+        }
+    }
+
+    private void complete(Pending pending, OrderResult result) {
+        latency.recordSince(pending.submitted());
+        if (result.confirmed()) {
+            confirmed.increment();
+        } else {
+            declined.increment();
+        }
+        pending.result().complete(result);
+    }
+
+    /**
+     * Stops taking orders, finishes every order already queued and waits for the last batch to
+     * be stored. The order log stays open; it belongs to the caller.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < workers.size(); i++) {
+            inbound.put(STOP);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        // Anything that slipped in behind the stop markers
+        Pending late;
+        while ((late = inbound.poll()) != null) {
+            if (late != STOP) {
+                complete(late, new OrderResult(Status.BUSY, null, List.of(), "The counter is closing."));
+            }
+        }
+        ready.add(STOP_WRITER);
+        writer.join();
+    }
+}
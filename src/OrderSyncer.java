@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Copies orders from a standalone terminal's {@link OrderLog} to a central
+ * {@link OrderingServer}, so the terminal keeps selling while the network is down.
+ * <p>
+ * The local log is the queue: checkout never waits for the server. A background thread sends
+ * everything after the last synced sequence number in batches and moves that position
+ * forward only once the server has confirmed a batch. The position is kept in a small file
+ * that is replaced atomically, so after a crash a batch is sent at most once more, and the
+ * server skips orders it already has. When the server cannot be reached the thread backs off
+ * exponentially, with jitter so that terminals coming back from the same outage do not all
+ * retry at the same moment. An order the server refuses as malformed is logged and left behind,
+ * so it does not hold up the orders after it; it stays in the local log.
+ */
+public class OrderSyncer implements AutoCloseable {
+
+    private static final long POLL_MILLIS = 2_000;
+    private static final long MIN_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final OrderLog log;
+    private final Path cursorFile;
+    private final OrderingClient client;
+    private final int batchSize;
+    private final Thread thread;
+    private final Object wakeUp = new Object();
+    // Guarded by wakeUp: a sync was asked for since the last one started
+    private boolean syncRequested;
+    private volatile boolean closed;
+    // Sequence number of the last order the server has confirmed
+    private volatile long syncedSeq;
+
+    private final LongAdder batches = Metrics.getInstance().counter("sync.batches");
+    private final LongAdder synced = Metrics.getInstance().counter("sync.orders");
+    private final LongAdder failures = Metrics.getInstance().counter("sync.failures");
+    private final LongAdder rejected = Metrics.getInstance().counter("sync.rejected");
+    private final Metrics.Histogram latency = Metrics.getInstance().histogram("sync.latency");
+
+    public OrderSyncer(OrderLog log, Path cursorFile, OrderingClient client, int batchSize) throws IOException {
+        this.log = log;
+        this.cursorFile = cursorFile;
+        this.client = client;
+        this.batchSize = batchSize;
+        this.syncedSeq = readCursor(cursorFile);
+        this.thread = Thread.ofPlatform().daemon().name("order-sync").unstarted(this::run);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Asks for a sync right away instead of at the next poll, e.g. after a checkout. While the
+     * server cannot be reached the backoff still applies.
+     */
+    public void syncSoon() {
+        synchronized (wakeUp) {
+            syncRequested = true;
+            wakeUp.notifyAll();
+        }
+    }
+
+    /** Sequence number of the last order the server has confirmed. */
+    public long syncedSeq() {
+        return syncedSeq;
+    }
+
+    /**
+     * Sends everything the server has not confirmed yet, one batch at a time.
+     *
+     * @return the number of orders sent, including any the server refused
+     * @throws IOException if the server cannot be reached; the orders confirmed before that
+     * stay confirmed
+     */
+    public int syncNow() throws IOException {
+        List<Order> pending = log.readFrom(syncedSeq + 1);
+        int sent = 0;
+        while (sent < pending.size() && !closed) {
+            List<Order> batch = pending.subList(sent, Math.min(sent + batchSize, pending.size()));
+            long start = System.nanoTime();
+            try {
+                client.syncOrders(batch);
+            } catch (OrderingClient.RejectedException e) {
+                // One at a time, so only the orders the server cannot read are left behind
+                syncEach(batch);
+            }
+            latency.recordSince(start);
+            long last = batch.get(batch.size() - 1).seq();
+            writeCursor(cursorFile, last);
+            syncedSeq = last;
+            sent += batch.size();
+            batches.increment();
+            synced.add(batch.size());
+        }
+        return sent;
+    }
+
+    private void syncEach(List<Order> batch) throws IOException {
+        for (Order order : batch) {
+            try {
+                client.syncOrders(List.of(order));
+            } catch (OrderingClient.RejectedException e) {
+                rejected.increment();
+                System.err.println("Server refused order " + order.orderId() + " (seq " + order.seq()
+                        + "), leaving it out of the sync: " + e.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        long backoff = 0;
+        while (!closed) {
+            try {
+                syncNow();
+                backoff = 0;
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                backoff = Math.min(MAX_BACKOFF_MILLIS, Math.max(MIN_BACKOFF_MILLIS, backoff * 2));
+                if (backoff == MIN_BACKOFF_MILLIS) {
+                    // Only the first failure of an outage; the rest would flood the log
+                    System.err.println("Order sync failed, will retry: " + e);
+                }
+            }
+            long wait = backoff == 0 ? POLL_MILLIS
+                    : backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+            synchronized (wakeUp) {
+                // A requested sync cuts a poll short, but not a backoff
+                while (!closed && !(syncRequested && backoff == 0)) {
+                    long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (left <= 0) {
+                        break;
+                    }
+                    try {
+                        wakeUp.wait(left);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                syncRequested = false;
+            }
+        }
+    }
+
+    private static long readCursor(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        String text = Files.readString(file, StandardCharsets.UTF_8).trim();
+        try {
+            return text.isEmpty() ? 0 : Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            // Starting over is safe: the server skips what it already has
+            System.err.println("Ignoring unreadable sync position in " + file);
+            return 0;
+        }
+    }
+
+    private static void writeCursor(Path file, long seq) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Long.toString(seq).getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stops the background thread. Orders not synced yet stay in the log for the next start.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        syncSoon();
+        thread.join(5_000);
+        client.close();
+    }
+}
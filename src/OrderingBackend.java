@@ -0,0 +1,37 @@
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * What a terminal needs from the counter it sells for: reservations for its cart, checkout and
+ * a feed of stock changes. Served in-process by {@link OrderService}, or over HTTP by
+ * {@link OrderingClient} when the terminal runs as a thin client of an {@link OrderingServer}.
+ */
+public interface OrderingBackend {
+
+    /**
+     * Sets how many units of a product a cart holds.
+     *
+     * @return the quantity the cart now holds, possibly less than requested
+     * @throws IOException if a remote counter cannot be reached; the cart holds what it did
+     */
+    int reserve(String cartId, String productId, int quantity) throws IOException;
+
+    void release(String cartId, String productId) throws IOException;
+
+    void releaseCart(String cartId) throws IOException;
+
+    CompletableFuture<OrderService.OrderResult> checkout(OrderService.OrderRequest request);
+
+    /** Reports changes of the available stock, on a background thread. */
+    void addStockListener(StockLedger.Listener listener);
+
+    /**
+     * Whether calls wait on the network. A UI makes the calls of a remote backend on a thread
+     * of its own, never on the FX thread.
+     */
+    default boolean isRemote() {
+        return false;
+    }
+
+    void close() throws InterruptedException;
+}
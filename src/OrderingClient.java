@@ -0,0 +1,241 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Talks to an {@link OrderingServer}, for terminals running as thin clients.
+ * <p>
+ * Reservations and releases are synchronous with a short timeout, so a terminal making them one
+ * after another on a thread of its own knows they reach the server in that order; they throw
+ * when the server cannot be reached, rather than looking like a sold-out product. A checkout
+ * that gets no answer within the same timeout comes back {@link OrderService.Status#FAILED}. Stock
+ * changes are polled every {@value #STOCK_POLL_MILLIS} ms, asking only for what changed since
+ * the previous poll.
+ * <p>
+ * If the server requires a token, every request carries it as a bearer token.
+ */
+public class OrderingClient implements OrderingBackend {
+
+    /** The server was reached but refused the request as malformed; sending it again will not help. */
+    public static final class RejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private static final long STOCK_POLL_MILLIS = 2_000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(3);
+
+    private final URI base;
+    // Sent with every request if the server requires it; null otherwise
+    private final String token;
+    private final HttpClient http;
+    private final List<StockLedger.Listener> stockListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "stock-poller");
+        t.setDaemon(true);
+        return t;
+    });
+    private long stockVersion;
+    private boolean polling;
+
+    public OrderingClient(URI base) {
+        this(base, null);
+    }
+
+    /**
+     * @param token the server's shared token, or null if it does not require one
+     */
+    public OrderingClient(URI base, String token) {
+        this.base = base.toString().endsWith("/") ? base : URI.create(base + "/");
+        this.token = token;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Downloads the server's catalogue, with stock as of the download.
+     */
+    public List<JECRC_FoodsApp.Product> fetchCatalogue() throws IOException {
+        HttpResponse<byte[]> response = send(HttpRequest.newBuilder(base.resolve("api/catalogue")).GET(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        return CatalogueFile.read(ByteBuffer.wrap(response.body()));
+    }
+
+    /**
+     * Product ids matching a search, best match first.
+     */
+    public List<String> search(String text, String category, CatalogueModel.Sort sort) throws IOException {
+        String query = "q=" + encode(text) + "&category=" + encode(category) + "&sort=" + encode(sort.label());
+        Map<?, ?> body = sendJson(HttpRequest.newBuilder(base.resolve("api/search?" + query)).GET());
+        List<String> ids = new ArrayList<>();
+        for (Object id : (List<?>) body.get("ids")) {
+            ids.add((String) id);
+        }
+        return ids;
+    }
+
+    @Override
+    public int reserve(String cartId, String productId, int quantity) throws IOException {
+        Map<?, ?> body = sendJson(post("api/carts/" + encode(cartId) + "/items",
+                Map.of("productId", productId, "quantity", quantity)));
+        return ((Long) body.get("quantity")).intValue();
+    }
+
+    @Override
+    public void release(String cartId, String productId) throws IOException {
+        send(HttpRequest.newBuilder(base.resolve("api/carts/" + encode(cartId) + "/items/" + encode(productId))).DELETE(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    @Override
+    public void releaseCart(String cartId) throws IOException {
+        send(HttpRequest.newBuilder(base.resolve("api/carts/" + encode(cartId))).DELETE(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    @Override
+    public boolean isRemote() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<OrderService.OrderResult> checkout(OrderService.OrderRequest request) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("orderId", request.orderId());
+        body.put("lines", request.lines());
+        body.put("unitPrices", request.unitPrices());
+        String path = request.cartId() != null ? "api/carts/" + encode(request.cartId()) + "/checkout" : "api/orders";
+        return http.sendAsync(authorized(post(path, body)).timeout(TIMEOUT).build(), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    try {
+                        return resultFromJson((Map<?, ?>) Json.parse(response.body()));
+                    } catch (IOException | RuntimeException e) {
+                        return new OrderService.OrderResult(OrderService.Status.FAILED, null, List.of(),
+                                "Unexpected answer from the server (HTTP " + response.statusCode() + ")");
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    // The order may have been placed all the same; a retry with the same id finds it
+                    String message = cause instanceof HttpTimeoutException
+                            ? "The server did not answer in time"
+                            : "The server cannot be reached: " + cause.getMessage();
+                    return new OrderService.OrderResult(OrderService.Status.FAILED, null, List.of(), message);
+                });
+    }
+
+    /**
+     * Sends orders that were confirmed at this terminal to the server's log. The server skips
+     * orders it already has, so a batch may be sent again after a failure.
+     *
+     * @return how many of the orders the server did not have yet
+     * @throws RejectedException if the server cannot read one of the orders
+     */
+    public int syncOrders(List<Order> orders) throws IOException {
+        List<Object> body = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            body.add(OrderingServer.orderToJson(order));
+        }
+        Map<?, ?> answer = sendJson(post("api/sync/orders", Map.of("orders", body)));
+        return ((Long) answer.get("recorded")).intValue();
+    }
+
+    @Override
+    public synchronized void addStockListener(StockLedger.Listener listener) {
+        stockListeners.add(listener);
+        if (!polling) {
+            polling = true;
+            poller.scheduleWithFixedDelay(this::pollStock, 0, STOCK_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void pollStock() {
+        try {
+            Map<?, ?> body = sendJson(HttpRequest.newBuilder(base.resolve("api/stock?since=" + stockVersion)).GET());
+            ((Map<?, ?>) body.get("stock")).forEach((productId, available) -> {
+                for (StockLedger.Listener l : stockListeners) {
+                    l.availableChanged((String) productId, ((Long) available).intValue());
+                }
+            });
+            stockVersion = (Long) body.get("version");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to refresh stock: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        http.shutdownNow();
+    }
+
+    static OrderService.OrderResult resultFromJson(Map<?, ?> json) {
+        OrderService.Status status = OrderService.Status.valueOf((String) json.get("status"));
+        List<String> unavailable = new ArrayList<>();
+        if (json.get("unavailable") instanceof List<?> ids) {
+            ids.forEach(id -> unavailable.add((String) id));
+        }
+        Order order = json.get("order") instanceof Map<?, ?> o ? orderFromJson(o) : null;
+        return new OrderService.OrderResult(status, order, unavailable, (String) json.get("message"));
+    }
+
+    /** The inverse of {@link OrderingServer#orderToJson}. */
+    static Order orderFromJson(Map<?, ?> o) {
+        List<Order.Line> lines = new ArrayList<>();
+        for (Object item : (List<?>) o.get("lines")) {
+            Map<?, ?> l = (Map<?, ?>) item;
+            lines.add(new Order.Line((String) l.get("productId"), (String) l.get("name"),
+                    ((Long) l.get("quantity")).intValue(), (Long) l.get("unitPricePaise")));
+        }
+        return new Order((Long) o.get("seq"), (String) o.get("orderId"), (Long) o.get("timestamp"), lines);
+    }
+
+    private HttpRequest.Builder post(String path, Object body) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(body)));
+    }
+
+    private HttpRequest.Builder authorized(HttpRequest.Builder request) {
+        return token != null ? request.header("Authorization", "Bearer " + token) : request;
+    }
+
+    private Map<?, ?> sendJson(HttpRequest.Builder request) throws IOException {
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        return (Map<?, ?>) Json.parse(response.body());
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            HttpResponse<T> response = http.send(authorized(request).timeout(TIMEOUT).build(), handler);
+            if (response.statusCode() == 400) {
+                throw new RejectedException("HTTP 400 from " + response.uri());
+            }
+            if (response.statusCode() >= 400) {
+                throw new IOException("HTTP " + response.statusCode() + " from " + response.uri());
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
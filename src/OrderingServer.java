@@ -0,0 +1,598 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counter's ordering API over HTTP, so kiosks, phones and thin-client terminals all sell
+ * from one catalogue and one stock ledger.
+ * <p>
+ * Runs on the JDK's built-in server with one virtual thread per exchange, so thousands of open
+ * connections cost little more than their sockets. The catalogue is served in the binary
+ * {@link CatalogueFile} format; everything else is small JSON.
+ * <pre>
+ * GET    /api/health
+ * GET    /api/catalogue                          binary catalogue
+ * GET    /api/stock?since=V                      {"version":V2,"stock":{"p1":12,...}}, changes after V
+ * GET    /api/search?q=&amp;category=&amp;sort=&amp;limit=   {"ids":[...]}
+ * POST   /api/carts/{cart}/items                 {"productId":"p1","quantity":3} -> held quantity
+ * DELETE /api/carts/{cart}/items/{product}
+ * DELETE /api/carts/{cart}
+ * POST   /api/carts/{cart}/checkout              {"orderId":"...","lines":{"p1":3},"unitPrices":{"p1":599}}
+ * POST   /api/orders                             same, without a cart reservation
+ * POST   /api/orders/{order}/void                voids a confirmed order (a refund) and restocks it
+ * POST   /api/sync/orders                        {"orders":[order,...]} from a kiosk's own log
+ * GET    /api/kitchen                            {"stations":[{"station":"Pizza","pendingUnits":9,...}]}
+ * POST   /api/kitchen/{station}/next             {"batch":{...}}, or {"batch":null} if nothing waits
+ * POST   /api/kitchen/batches/{id}/done
+ * </pre>
+ * Confirmed checkouts go to the {@link KitchenScheduler}; their answer carries the estimated
+ * wait as "readyInSeconds". Kitchen displays take batches from and report them to the
+ * scheduler.
+ * Synced orders were already sold and paid for at the kiosk that sends them; they are
+ * recorded and sent to the kitchen once each by order id, so a kiosk may safely send the same
+ * batch again.
+ * Headless use: {@code java OrderingServer [--port=8080] [--bind=127.0.0.1] [--token=...]},
+ * serving the catalogue and order log in {@link AppPaths#dataDir()}; synced orders go to a log
+ * of their own there. It only listens on the loopback interface unless told otherwise, and
+ * any other address needs a shared token (also taken from JECRC_API_TOKEN) that clients send
+ * as a bearer token.
+ */
+public class OrderingServer implements AutoCloseable {
+
+    private static final int DEFAULT_SEARCH_LIMIT = 200;
+    private static final int MAX_SEARCH_LIMIT = 10_000;
+
+    private final CatalogueModel catalogue;
+    private final ProductSearchIndex searchIndex;
+    private final StockLedger ledger;
+    private final OrderService orders;
+    // Where synced orders are recorded; null if this server does not accept them
+    private final OrderLog syncLog;
+    // Routes confirmed orders to the kitchen stations
+    private final KitchenScheduler kitchen;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private HttpServer server;
+    // Required as a bearer token on every request but the health check; null to accept anyone
+    private String token;
+
+    // Every stock change gets a version so clients can ask for what changed since their last poll
+    private final AtomicLong stockVersion = new AtomicLong();
+    private final ConcurrentHashMap<String, Long> stockChangedAt = new ConcurrentHashMap<>();
+    // Stock changes not yet copied into the catalogue, applied in batches off the request path
+    private final ConcurrentHashMap<String, Integer> pendingStock = new ConcurrentHashMap<>();
+    private final AtomicBoolean stockApplyScheduled = new AtomicBoolean();
+    private final ExecutorService stockApplier = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("stock-apply").factory());
+
+    // Encoded catalogue, dropped whenever products are added, removed or edited
+    private volatile byte[] encodedCatalogue;
+
+    private final Metrics.Histogram requestTime = Metrics.getInstance().histogram("http.request");
+
+    public OrderingServer(CatalogueModel catalogue, ProductSearchIndex searchIndex, StockLedger ledger,
+                          OrderService orders, OrderLog syncLog) {
+        this.catalogue = catalogue;
+        this.searchIndex = searchIndex;
+        this.ledger = ledger;
+        this.orders = orders;
+        this.syncLog = syncLog;
+        this.kitchen = new KitchenScheduler(catalogue, Duration.ofMinutes(1), 12);
+
+        ledger.addListener((productId, available) -> {
+            stockChangedAt.put(productId, stockVersion.incrementAndGet());
+            // Not under the catalogue's lock here: that would queue every reservation behind it
+            pendingStock.put(productId, available);
+            if (stockApplyScheduled.compareAndSet(false, true)) {
+                stockApplier.execute(this::applyStockChanges);
+            }
+        });
+        catalogue.addListener(new CatalogueModel.Listener() {
+            @Override
+            public void productsAdded(List<JECRC_FoodsApp.Product> products) {
+                encodedCatalogue = null;
+            }
+
+            @Override
+            public void productsRemoved(List<JECRC_FoodsApp.Product> products) {
+                encodedCatalogue = null;
+            }
+
+            @Override
+            public void productsUpdated(List<JECRC_FoodsApp.Product> products) {
+                encodedCatalogue = null;
+            }
+        });
+    }
+
+    public void start(InetSocketAddress address) throws IOException {
+        start(address, null);
+    }
+
+    /**
+     * @param token required from clients as "Authorization: Bearer &lt;token&gt;", or null to
+     *              accept any client that can reach the address
+     */
+    public void start(InetSocketAddress address, String token) throws IOException {
+        this.token = token;
+        // Responses go out as header and body writes; without TCP_NODELAY every small response
+        // waits for the client's delayed ACK (~40 ms). Read once, when the server classes load.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(address, 4096);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(1);
+        }
+        executor.shutdownNow();
+        stockApplier.shutdown();
+    }
+
+    private void applyStockChanges() {
+        stockApplyScheduled.set(false);
+        Map<String, Integer> batch = new HashMap<>();
+        for (String productId : pendingStock.keySet()) {
+            Integer available = pendingStock.remove(productId);
+            if (available != null) {
+                batch.put(productId, available);
+            }
+        }
+        catalogue.updateStocks(batch);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long started = System.nanoTime();
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (token != null && !path[0].equals("health") && !authorized(exchange)) {
+                throw new BadRequest(401, "Missing or wrong token");
+            }
+
+            switch (path[0]) {
+                case "health" -> sendJson(exchange, 200, Map.of("status", "ok"));
+                case "catalogue" -> send(exchange, 200, "application/octet-stream", catalogueBytes());
+                case "stock" -> sendJson(exchange, 200, stockSince(parseLong(query.get("since"), 0)));
+                case "search" -> sendJson(exchange, 200, search(query));
+                case "orders" -> {
+                    requireMethod(method, "POST");
+                    if (path.length == 3 && path[2].equals("void")) {
+                        voidOrder(exchange, path[1]);
+                    } else if (path.length == 1) {
+                        checkout(exchange, null);
+                    } else {
+                        throw new BadRequest(404, "No such endpoint");
+                    }
+                }
+                case "carts" -> carts(exchange, method, path);
+                case "sync" -> {
+                    requireMethod(method, "POST");
+                    if (path.length != 2 || !path[1].equals("orders")) {
+                        throw new BadRequest(404, "No such endpoint");
+                    }
+                    syncOrders(exchange);
+                }
+                case "kitchen" -> kitchen(exchange, method, path);
+                default -> sendError(exchange, 404, "No such endpoint");
+            }
+        } catch (BadRequest e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            // The details are for the server's log, not for whoever sent the request
+            System.err.println("Failed to handle " + exchange.getRequestMethod() + " "
+                    + exchange.getRequestURI().getPath() + ": " + e);
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+            requestTime.recordSince(started);
+        }
+    }
+
+    private void carts(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (path.length < 2 || path[1].isEmpty()) {
+            throw new BadRequest(404, "Missing cart id");
+        }
+        String cartId = path[1];
+        if (path.length == 2) {
+            requireMethod(method, "DELETE");
+            ledger.releaseCart(cartId);
+            sendJson(exchange, 200, Map.of("cartId", cartId));
+        } else if (path[2].equals("items") && path.length == 3) {
+            requireMethod(method, "POST");
+            Map<?, ?> body = readObject(exchange);
+            String productId = requireString(body, "productId");
+            int quantity = requireQuantity(body.get("quantity"), productId);
+            int held = ledger.reserve(cartId, productId, quantity);
+            sendJson(exchange, 200, Map.of("productId", productId, "quantity", held));
+        } else if (path[2].equals("items") && path.length == 4) {
+            requireMethod(method, "DELETE");
+            ledger.release(cartId, path[3]);
+            sendJson(exchange, 200, Map.of("productId", path[3], "quantity", 0));
+        } else if (path[2].equals("checkout") && path.length == 3) {
+            requireMethod(method, "POST");
+            checkout(exchange, cartId);
+        } else {
+            throw new BadRequest(404, "No such endpoint");
+        }
+    }
+
+    private void checkout(HttpExchange exchange, String cartId) throws IOException {
+        Map<?, ?> body = readObject(exchange);
+        String orderId = body.get("orderId") instanceof String s ? s : UUID.randomUUID().toString();
+        if (!(body.get("lines") instanceof Map<?, ?> rawLines)) {
+            throw new BadRequest(400, "Missing lines");
+        }
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        rawLines.forEach((productId, quantity) ->
+                lines.put(String.valueOf(productId), requireQuantity(quantity, productId)));
+        Map<String, Long> unitPrices = new HashMap<>();
+        if (body.get("unitPrices") instanceof Map<?, ?> rawPrices) {
+            rawPrices.forEach((productId, price) -> {
+                if (!(price instanceof Long p)) {
+                    throw new BadRequest(400, "Bad price for " + productId);
+                }
+                unitPrices.put(String.valueOf(productId), p);
+            });
+        }
+
+        // The virtual thread simply waits for the order service
+        OrderService.OrderResult result = orders.submit(new OrderService.OrderRequest(orderId, cartId, lines, unitPrices)).join();
+        if (result.status() == OrderService.Status.BUSY) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendJson(exchange, 503, resultToJson(result));
+        } else if (result.confirmed()) {
+            Map<String, Object> out = resultToJson(result);
+            out.put("readyInSeconds", kitchen.submit(result.order()).toSeconds());
+            sendJson(exchange, 200, out);
+        } else {
+            sendJson(exchange, 200, resultToJson(result));
+        }
+    }
+
+    private void voidOrder(HttpExchange exchange, String orderId) throws IOException {
+        Order voided = orders.voidOrder(orderId);
+        if (voided == null) {
+            throw new BadRequest(404, "No such order");
+        }
+        sendJson(exchange, 200, Map.of("order", orderToJson(voided)));
+    }
+
+    private void kitchen(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (path.length == 1) {
+            List<Object> stations = new ArrayList<>();
+            for (String station : kitchen.stations()) {
+                Map<String, Object> s = new LinkedHashMap<>();
+                s.put("station", station);
+                s.put("pendingUnits", kitchen.pendingUnits(station));
+                s.put("waitSeconds", kitchen.estimatedWait(station).toSeconds());
+                stations.add(s);
+            }
+            sendJson(exchange, 200, Map.of("stations", stations));
+        } else if (path.length == 4 && path[1].equals("batches") && path[3].equals("done")) {
+            requireMethod(method, "POST");
+            if (kitchen.complete(parseLong(path[2], -1)) == null) {
+                throw new BadRequest(404, "No such batch cooking");
+            }
+            sendJson(exchange, 200, Map.of("batchId", path[2]));
+        } else if (path.length == 3 && path[2].equals("next")) {
+            requireMethod(method, "POST");
+            KitchenScheduler.Batch batch = kitchen.takeBatch(path[1]);
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("batch", batch != null ? batchToJson(batch) : null);
+            sendJson(exchange, 200, out);
+        } else {
+            throw new BadRequest(404, "No such endpoint");
+        }
+    }
+
+    private static Map<String, Object> batchToJson(KitchenScheduler.Batch batch) {
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("id", batch.id());
+        b.put("station", batch.station());
+        b.put("productId", batch.productId());
+        b.put("name", batch.name());
+        b.put("units", batch.units());
+        List<String> orderIds = new ArrayList<>(batch.tickets().size());
+        for (KitchenScheduler.Ticket ticket : batch.tickets()) {
+            orderIds.add(ticket.orderId());
+        }
+        b.put("orders", orderIds);
+        return b;
+    }
+
+    private void syncOrders(HttpExchange exchange) throws IOException {
+        if (syncLog == null) {
+            throw new BadRequest(503, "This server does not accept synced orders");
+        }
+        if (!(readObject(exchange).get("orders") instanceof List<?> rawOrders)) {
+            throw new BadRequest(400, "Missing orders");
+        }
+        List<Order> received = new ArrayList<>(rawOrders.size());
+        for (Object o : rawOrders) {
+            try {
+                received.add(OrderingClient.orderFromJson((Map<?, ?>) o));
+            } catch (RuntimeException e) {
+                // Whatever the decode trips over, the order is bad and resending it will not help
+                throw new BadRequest(400, "Malformed order");
+            }
+        }
+        List<Order> recorded = syncLog.appendAbsent(received);
+        // Only orders seen for the first time, so a resent batch is not cooked twice
+        recorded.forEach(kitchen::submit);
+        sendJson(exchange, 200, Map.of("received", received.size(), "recorded", recorded.size()));
+    }
+
+    private byte[] catalogueBytes() throws IOException {
+        byte[] bytes = encodedCatalogue;
+        if (bytes == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CatalogueFile.write(out, catalogue.view(CatalogueModel.ALL, CatalogueModel.Sort.DEFAULT));
+            bytes = out.toByteArray();
+            encodedCatalogue = bytes;
+        }
+        return bytes;
+    }
+
+    private Map<String, Object> stockSince(long since) {
+        // Read the version first: a change racing with the scan is sent now and again next time
+        long version = stockVersion.get();
+        Map<String, Object> stock = new LinkedHashMap<>();
+        stockChangedAt.forEach((productId, changedAt) -> {
+            if (changedAt > since) {
+                stock.put(productId, ledger.available(productId));
+            }
+        });
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("version", version);
+        out.put("stock", stock);
+        return out;
+    }
+
+    private Map<String, Object> search(Map<String, String> query) {
+        String text = query.getOrDefault("q", "").trim();
+        String category = query.getOrDefault("category", CatalogueModel.ALL);
+        CatalogueModel.Sort sort = CatalogueModel.Sort.fromLabel(query.getOrDefault("sort", ""));
+        long limit = parseLong(query.get("limit"), DEFAULT_SEARCH_LIMIT);
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new BadRequest(400, "limit must be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+
+        List<String> matches = text.isEmpty() ? null : searchIndex.search(text);
+        List<JECRC_FoodsApp.Product> results = catalogue.select(category, sort, matches);
+        List<String> ids = new ArrayList<>((int) Math.min(limit, results.size()));
+        for (int i = 0; i < results.size() && i < limit; i++) {
+            ids.add(results.get(i).id);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("total", results.size());
+        out.put("ids", ids);
+        return out;
+    }
+
+    static Map<String, Object> resultToJson(OrderService.OrderResult result) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("status", result.status().name());
+        if (result.message() != null) {
+            out.put("message", result.message());
+        }
+        if (!result.unavailable().isEmpty()) {
+            out.put("unavailable", result.unavailable());
+        }
+        if (result.order() != null) {
+            out.put("order", orderToJson(result.order()));
+        }
+        return out;
+    }
+
+    static Map<String, Object> orderToJson(Order order) {
+        Map<String, Object> o = new LinkedHashMap<>();
+        o.put("seq", order.seq());
+        o.put("orderId", order.orderId());
+        o.put("timestamp", order.timestamp());
+        List<Object> lines = new ArrayList<>();
+        for (Order.Line line : order.lines()) {
+            Map<String, Object> l = new LinkedHashMap<>();
+            l.put("productId", line.productId());
+            l.put("name", line.name());
+            l.put("quantity", line.quantity());
+            l.put("unitPricePaise", line.unitPricePaise());
+            lines.add(l);
+        }
+        o.put("lines", lines);
+        o.put("totalPaise", order.totalPaise());
+        return o;
+    }
+
+    private static final class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new BadRequest(405, "Use " + expected);
+        }
+    }
+
+    private static Map<?, ?> readObject(HttpExchange exchange) throws IOException {
+        Object body;
+        try {
+            body = Json.parse(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new BadRequest(400, "Bad JSON: " + e.getMessage());
+        }
+        if (!(body instanceof Map<?, ?> map)) {
+            throw new BadRequest(400, "Expected a JSON object");
+        }
+        return map;
+    }
+
+    private static String requireString(Map<?, ?> body, String field) {
+        if (body.get(field) instanceof String s && !s.isEmpty()) {
+            return s;
+        }
+        throw new BadRequest(400, "Missing " + field);
+    }
+
+    private static int requireQuantity(Object value, Object productId) {
+        if (value instanceof Long l && l >= 0 && l <= Integer.MAX_VALUE) {
+            return l.intValue();
+        }
+        throw new BadRequest(400, "Bad quantity for " + productId);
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        // Compared in constant time, so response times give nothing away about the token
+        return header != null && MessageDigest.isEqual(header.getBytes(StandardCharsets.UTF_8),
+                ("Bearer " + token).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static long parseLong(String value, long fallback) {
+        try {
+            return value != null ? Long.parseLong(value) : fallback;
+        } catch (NumberFormatException e) {
+            throw new BadRequest(400, "Not a number: " + value);
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", Json.write(body).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            sendJson(exchange, status, Map.of("error", message));
+        } catch (IOException | IllegalStateException e) {
+            // Headers already sent or the client went away; nothing more to tell it
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 8080;
+        String bind = "127.0.0.1";
+        String token = System.getenv("JECRC_API_TOKEN");
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--bind=")) {
+                bind = arg.substring("--bind=".length());
+            } else if (arg.startsWith("--token=")) {
+                token = arg.substring("--token=".length());
+            }
+        }
+        InetSocketAddress address = new InetSocketAddress(bind, port);
+        if (address.isUnresolved()) {
+            System.err.println("Cannot resolve --bind=" + bind);
+            System.exit(1);
+        }
+        if ((token == null || token.isEmpty()) && !address.getAddress().isLoopbackAddress()) {
+            // Anyone on the network could reserve stock and place orders
+            System.err.println("Listening on " + bind + " needs a shared token: pass --token=... or set JECRC_API_TOKEN.");
+            System.exit(1);
+        }
+        Path dataDir = AppPaths.dataDir();
+        Path catalogueFile = dataDir.resolve("catalogue.bin");
+        if (!Files.exists(catalogueFile)) {
+            System.err.println("No catalogue at " + catalogueFile + "; start the app once to create it.");
+            System.exit(1);
+        }
+        List<JECRC_FoodsApp.Product> products = CatalogueFile.read(catalogueFile);
+        OrderLog log = OrderLog.open(dataDir.resolve("orders.log"));
+        // After a crash the saved stock is behind the log; take the missing orders off it
+        int replayed = StockCheckpoint.replay(products, log.readFrom(0), StockCheckpoint.read(catalogueFile));
+        if (replayed > 0) {
+            System.err.println("Took the stock of " + replayed + " orders off the saved catalogue after an unclean shutdown");
+        }
+        // Synced orders never took stock here, so they are kept apart from the checkouts
+        OrderLog syncLog = OrderLog.open(dataDir.resolve("synced-orders.log"));
+
+        CatalogueModel catalogue = new CatalogueModel();
+        ProductSearchIndex searchIndex = new ProductSearchIndex();
+        catalogue.addListener(searchIndex.listener());
+        catalogue.addAll(products);
+        StockLedger ledger = new StockLedger(Duration.ofMinutes(10));
+        products.forEach(p -> ledger.setAvailable(p.id, p.stock));
+        OrderService orders = new OrderService(catalogue, ledger, log,
+                4096, Runtime.getRuntime().availableProcessors());
+
+        OrderingServer server = new OrderingServer(catalogue, searchIndex, ledger, orders, syncLog);
+        server.start(address, token == null || token.isEmpty() ? null : token);
+        Metrics.getInstance().startReporting(dataDir.resolve("metrics.txt"), Duration.ofSeconds(30));
+        System.out.println("Serving " + products.size() + " products on port " + server.port());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                orders.close();
+                ledger.close();
+                for (JECRC_FoodsApp.Product p : products) {
+                    p.stock = ledger.available(p.id) + ledger.reserved(p.id);
+                }
+                CatalogueFile.write(catalogueFile, products);
+                StockCheckpoint.write(catalogueFile, log.lastSeq());
+                log.close();
+                syncLog.close();
+            } catch (Exception e) {
+                System.err.println("Failed to shut down cleanly: " + e.getMessage());
+            }
+        }));
+    }
+}
@@ -0,0 +1,669 @@
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.*;
+import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One ordering window: header, filters, product grid and a cart of its own.
+ * <p>
+ * Several stations can run in one JVM, e.g. a touchscreen per counter. They all read the same
+ * catalogue, search index and image cache and sell from the same stock, so another station
+ * costs its cart, its theme and the nodes on its screen, not another copy of the menu. Each
+ * station reserves stock under its own cart id. Ctrl+N opens another station.
+ */
+public class OrderingStation {
+
+    private static final Metrics.Histogram checkoutLatency = Metrics.getInstance().histogram("checkout.latency");
+    private static final LongAdder checkoutsCompleted = Metrics.getInstance().counter("checkout.completed");
+    private static final LongAdder checkoutsFailed = Metrics.getInstance().counter("checkout.failed");
+
+    // Not a catalogue ordering: ranks the default order by recent sales
+    private static final String POPULAR_SORT = "Popular Now";
+    private static final int SUGGESTIONS = 3;
+
+    // Shared with every other station
+    private final CatalogueModel catalogue;
+    private final ProductSearchIndex searchIndex;
+    private final StockLedger stockLedger;
+    private final RecommendationEngine recommendations;
+    private final boolean canImport;
+    private final Runnable openStation;
+
+    // Cart items with running count and total, reserved under this station's cart id
+    private final CartModel cart = new CartModel();
+    // Sends the cart's changes to the backend once startup has brought it up
+    private final CartReservations reservations = new CartReservations(cart, UUID.randomUUID().toString(),
+            action -> {
+                if (Platform.isFxApplicationThread()) {
+                    action.run();
+                } else {
+                    Platform.runLater(action);
+                }
+            },
+            new CartReservations.Listener() {
+                @Override
+                public void shortage(JECRC_FoodsApp.Product product, int held, int before) {
+                    showShortage(product, held, before);
+                }
+
+                @Override
+                public void unreachable(IOException e) {
+                    showUnreachable(e);
+                }
+            });
+    private Alert unreachableAlert;
+
+    // Bumped whenever facet counts change so the category cells re-render
+    private final IntegerProperty facetVersion = new SimpleIntegerProperty();
+
+    // Filtering and sorting run in the background; only the newest result reaches the grid
+    private final ProductQueryPipeline queryPipeline = new ProductQueryPipeline(
+            this::evaluateQuery, results -> this.productGrid.setProducts(results), Duration.ofMillis(150));
+
+    // Keeps the grid and the facet counts current as the catalogue changes
+    private final CatalogueModel.Listener catalogueListener = new CatalogueModel.Listener() {
+        @Override
+        public void productsAdded(List<JECRC_FoodsApp.Product> added) {
+            queryPipeline.refresh();
+        }
+
+        @Override
+        public void productsRemoved(List<JECRC_FoodsApp.Product> removed) {
+            queryPipeline.refresh();
+        }
+
+        @Override
+        public void productsUpdated(List<JECRC_FoodsApp.Product> updated) {
+            queryPipeline.refresh();
+        }
+
+        @Override
+        public void facetsChanged() {
+            if (Platform.isFxApplicationThread()) {
+                refreshFacets();
+            } else {
+                Platform.runLater(() -> refreshFacets());
+            }
+        }
+    };
+
+    private final Scene scene;
+    private boolean closed;
+
+    // UI Controls that need to be accessed across the station
+    private ProductGrid productGrid;
+    private VBox filterSidebar;
+    private VBox cartSidebar;
+    private Label cartCountLabel;
+    private Label totalPriceLabel;
+    private VBox suggestionBox;
+    private TextField searchField;
+    private ComboBox<String> categoryFilterCombo;
+
+    /**
+     * Builds the station's window and shows it. Until {@link #connect} is called the menu shows
+     * a loading placeholder and the filters and the cart are disabled.
+     *
+     * @param canImport whether the header offers menu import (only into a local catalogue)
+     * @param openStation opens another station, for Ctrl+N
+     */
+    public OrderingStation(Stage stage, CatalogueModel catalogue, ProductSearchIndex searchIndex,
+                           StockLedger stockLedger, RecommendationEngine recommendations,
+                           boolean canImport, Runnable openStation) {
+        this.catalogue = catalogue;
+        this.searchIndex = searchIndex;
+        this.stockLedger = stockLedger;
+        this.recommendations = recommendations;
+        this.canImport = canImport;
+        this.openStation = openStation;
+
+        //root layout
+        BorderPane root = new BorderPane();
+
+        // The metrics overlay floats over the whole window
+        MetricsOverlay metricsOverlay = new MetricsOverlay();
+        StackPane sceneRoot = new StackPane(root, metricsOverlay);
+
+        // Scene
+        scene = new Scene(sceneRoot, 1200, 800);   // Scene is declared here
+        KeyCombination newStation = new KeyCodeCombination(KeyCode.N, KeyCombination.SHORTCUT_DOWN);
+        scene.addEventHandler(KeyEvent.KEY_PRESSED, e -> {
+            if (e.getCode() == KeyCode.F12) {
+                metricsOverlay.toggle();
+            } else if (newStation.match(e)) {
+                openStation.run();
+            }
+        });
+        if (Boolean.getBoolean("jecrc.metrics.overlay")) {
+            metricsOverlay.toggle();
+        }
+        ThemeManager.getInstance().applyTheme(scene);     // Scene is passed here
+
+        // Header
+        root.setTop(createHeader());
+
+
+        // Main layout - three columns: left filters, center products, right cart
+        HBox mainContent = new HBox();
+        mainContent.setSpacing(16);
+        mainContent.setPadding(new Insets(16));
+
+        // Left Sidebar: Filters
+        filterSidebar = createFilterSidebar();
+        filterSidebar.setPrefWidth(180);
+        filterSidebar.setId("filter-sidebar");
+
+        // Center: Product Grid (virtualized, cards are recycled while scrolling)
+        productGrid = new ProductGrid(this::addToCart);
+        productGrid.setPlaceholder(new Label("Loading menu…"));
+        VBox centerContainer = new VBox(productGrid);
+        VBox.setVgrow(productGrid, Priority.ALWAYS);
+
+        // Right Sidebar: Cart
+        cartSidebar = createCartSidebar();
+        cartSidebar.setPrefWidth(350);
+
+        mainContent.getChildren().addAll(filterSidebar, centerContainer, cartSidebar);
+        HBox.setHgrow(centerContainer, Priority.ALWAYS);
+
+        root.setCenter(mainContent);
+
+        catalogue.addListener(catalogueListener);
+        refreshFacets();
+        updateProductGrid();
+
+        filterSidebar.setDisable(true);
+        cartSidebar.setDisable(true);
+        stage.setScene(scene);
+        stage.setOnHidden(e -> close());
+        stage.show();
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * Starts taking orders through the given backend.
+     */
+    public void connect(OrderingBackend backend) {
+        reservations.connect(backend);
+        filterSidebar.setDisable(false);
+        cartSidebar.setDisable(false);
+        productGrid.setPlaceholder(new Label("No products found"));
+    }
+
+    /**
+     * Shows the current stock on the cards on screen. Called after stock changed in place.
+     */
+    public void refreshStock() {
+        productGrid.refreshStock();
+    }
+
+    /** Whether the grid shows the catalogue, or there is nothing to show. */
+    public boolean isShowingMenu() {
+        return catalogue.size() == 0 || !productGrid.getProducts().isEmpty();
+    }
+
+    /**
+     * Hands the cart's stock back and detaches from the shared catalogue. Called when the
+     * window closes and when the app stops.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        catalogue.removeListener(catalogueListener);
+        queryPipeline.close();
+        reservations.close();
+    }
+
+    private HBox createHeader() {
+        HBox header = new HBox();
+        header.setStyle("-fx-background-color: linear-gradient(to right, #7c3aed, #c084fc);");
+        header.setPadding(new Insets(10, 20, 10, 20));
+        header.setSpacing(16);
+        header.setAlignment(Pos.CENTER_LEFT);
+
+        // Logo
+        Label logoLabel = new Label("JECRC Foods");
+        logoLabel.setStyle("-fx-font-size: 24px; -fx-text-fill: white; -fx-font-weight: bold;");
+        logoLabel.setMinWidth(200);
+
+        // Search bar
+        searchField = new TextField();
+        searchField.setPromptText("Search food items...");
+        searchField.setPrefWidth(400);
+        searchField.textProperty().addListener((_, oldVal, newVal) -> {
+            updateProductGrid();
+        });
+
+        // Spacer to push buttons to the right
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        // Theme toggle button
+        Button themeToggleButton = new Button("☀"); // Use plain sun symbol (U+2600)
+        themeToggleButton.setStyle("-fx-font-size: 16px; -fx-background-color: transparent; -fx-text-fill: white;");
+
+        themeToggleButton.setOnAction(e -> {
+            ThemeManager.getInstance().toggleTheme(scene);
+            // Toggle between sun and moon icons
+            if (themeToggleButton.getText().equals("☀")) {
+                themeToggleButton.setText("🌙"); // Crescent moon (U+1F319)
+            } else {
+                themeToggleButton.setText("☀");
+            }
+        });
+
+
+        // Cart icon with count
+        StackPane cartIconPane = new StackPane();
+        Label cartIconLabel = new Label("\uD83D\uDED2"); // Shopping cart emoji
+        cartIconLabel.setStyle("-fx-font-size:24px; -fx-text-fill: white;");
+
+        cartCountLabel = new Label("0");
+        cartCountLabel.textProperty().bind(cart.countProperty().asString());
+        cartCountLabel.setStyle(
+                "-fx-background-color: red; -fx-text-fill: white; -fx-font-weight: bold;" +
+                        " -fx-min-width: 15px; -fx-min-height: 15px; -fx-alignment: center; -fx-background-radius: 10px;"
+        );
+        StackPane.setAlignment(cartCountLabel, Pos.TOP_RIGHT);
+        StackPane.setMargin(cartCountLabel, new Insets(0, 0, 15, 15));
+
+        cartIconPane.getChildren().addAll(cartIconLabel, cartCountLabel);
+
+        // Add all elements to header
+        header.getChildren().addAll(logoLabel, searchField, spacer, themeToggleButton, cartIconPane);
+
+        // Menus can only be imported into the local catalogue, not into a server's
+        if (canImport) {
+            Button importButton = new Button("Import Menu…");
+            importButton.setStyle("-fx-background-color: transparent; -fx-text-fill: white; -fx-border-color: white; -fx-border-radius: 4px;");
+            importButton.setOnAction(e -> importMenu(importButton));
+            header.getChildren().add(2, importButton);
+        }
+
+        return header;
+    }
+
+
+    /**
+     * Imports a vendor menu (CSV or JSON) on a background thread. Batches go straight into the
+     * catalogue, which is safe to update from any thread and refreshes the grid itself;
+     * progress reaches the label at most once per frame.
+     */
+    private void importMenu(Button importButton) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Menu");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Menu files", "*.csv", "*.json"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        java.io.File file = chooser.showOpenDialog(scene.getWindow());
+        if (file == null) {
+            return;
+        }
+
+        importButton.setDisable(true);
+        LongAdder rowsImported = new LongAdder();
+        AtomicBoolean progressScheduled = new AtomicBoolean();
+        CatalogueImporter importer = new CatalogueImporter(5_000, batch -> {
+            catalogue.addAll(batch);
+            // The catalogue already shows the imported stock; no per-product flush needed
+            batch.forEach(p -> stockLedger.loadAvailable(p.id, p.stock));
+            rowsImported.add(batch.size());
+            if (progressScheduled.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    progressScheduled.set(false);
+                    importButton.setText("Importing… " + rowsImported.sum());
+                });
+            }
+        });
+        Thread.ofVirtual().name("menu-import").start(() -> {
+            CatalogueImporter.Result result = null;
+            String failure = null;
+            try {
+                result = importer.importFile(file.toPath());
+            } catch (IOException e) {
+                failure = e.getMessage();
+            } catch (InterruptedException e) {
+                failure = "Import cancelled";
+            }
+            CatalogueImporter.Result outcome = result;
+            String error = failure;
+            Platform.runLater(() -> {
+                importButton.setText("Import Menu…");
+                importButton.setDisable(false);
+                showImportResult(file.getName(), outcome, error);
+            });
+        });
+    }
+
+    private void showImportResult(String fileName, CatalogueImporter.Result result, String error) {
+        if (result == null) {
+            Alert alert = new Alert(Alert.AlertType.ERROR, error);
+            alert.setHeaderText("Could not import " + fileName);
+            alert.showAndWait();
+            return;
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append(result.imported()).append(" products imported from ").append(result.rows())
+                .append(" rows in ").append(result.millis()).append(" ms.");
+        if (result.duplicates() > 0) {
+            summary.append("\n").append(result.duplicates()).append(" duplicate rows replaced earlier ones.");
+        }
+        if (result.invalid() > 0) {
+            summary.append("\n").append(result.invalid()).append(" invalid rows skipped:");
+            result.errors().forEach(line -> summary.append("\n  ").append(line));
+        }
+        Alert alert = new Alert(result.invalid() > 0 ? Alert.AlertType.WARNING : Alert.AlertType.INFORMATION, summary.toString());
+        alert.setHeaderText("Imported " + fileName);
+        alert.showAndWait();
+    }
+
+    private ComboBox<String> priceSortCombo;
+    private VBox priceBandBox;
+    private VBox createFilterSidebar() {
+        VBox sidebar = new VBox();
+        sidebar.setSpacing(24);
+
+        // Filters title
+        Label filterTitle = new Label("Filters");
+        filterTitle.setFont(Font.font(20));
+
+        // Category Filter, filled from the catalogue with live in-stock counts
+        Label categoryLabel = new Label("Category");
+        categoryFilterCombo = new ComboBox<>();
+        categoryFilterCombo.getItems().add(CatalogueModel.ALL);
+        categoryFilterCombo.setValue(CatalogueModel.ALL);
+        categoryFilterCombo.setCellFactory(list -> createCategoryCell());
+        categoryFilterCombo.setButtonCell(createCategoryCell());
+        categoryFilterCombo.valueProperty().addListener((obs, prev, curr) -> {
+            refreshPriceBands();
+            updateProductGrid();
+        });
+
+
+        // Sort by price, or by what sells right now
+        Label sortLabel = new Label("Sort by");
+        priceSortCombo = new ComboBox<>();
+        for (CatalogueModel.Sort sort : CatalogueModel.Sort.values()) {
+            priceSortCombo.getItems().add(sort.label());
+        }
+        priceSortCombo.getItems().add(POPULAR_SORT);
+        priceSortCombo.setValue(CatalogueModel.Sort.DEFAULT.label());
+        priceSortCombo.valueProperty().addListener((obs, oldVal, newVal) -> {
+            updateProductGrid();
+        });
+
+        // In-stock counts per price band for the selected category
+        Label priceBandLabel = new Label("Price Range");
+        priceBandBox = new VBox();
+        priceBandBox.setSpacing(4);
+
+        // Add all to sidebar
+        sidebar.getChildren().addAll(filterTitle, categoryLabel, categoryFilterCombo, sortLabel, priceSortCombo,
+                priceBandLabel, priceBandBox);
+
+        return sidebar;
+    }
+
+    private ListCell<String> createCategoryCell() {
+        ListCell<String> cell = new ListCell<>();
+        cell.textProperty().bind(Bindings.createStringBinding(() -> {
+            String category = cell.getItem();
+            return category == null ? null : category + " (" + catalogue.inStockCount(category) + ")";
+        }, cell.itemProperty(), facetVersion));
+        return cell;
+    }
+
+    /**
+     * Syncs the category combo and the price band counts with the catalogue. Cheap: the
+     * counts are maintained by the model, nothing is recounted here.
+     */
+    private void refreshFacets() {
+        List<String> names = new ArrayList<>();
+        names.add(CatalogueModel.ALL);
+        names.addAll(catalogue.categories());
+        if (!categoryFilterCombo.getItems().equals(names)) {
+            String selected = categoryFilterCombo.getValue();
+            categoryFilterCombo.getItems().setAll(names);
+            categoryFilterCombo.setValue(names.contains(selected) ? selected : CatalogueModel.ALL);
+        }
+        facetVersion.set(facetVersion.get() + 1);
+        refreshPriceBands();
+    }
+
+    private void refreshPriceBands() {
+        Map<String, Integer> bands = catalogue.priceBandCounts(categoryFilterCombo.getValue());
+        if (priceBandBox.getChildren().size() != bands.size()) {
+            priceBandBox.getChildren().clear();
+            for (int i = 0; i < bands.size(); i++) {
+                priceBandBox.getChildren().add(new Label());
+            }
+        }
+        int i = 0;
+        for (Map.Entry<String, Integer> band : bands.entrySet()) {
+            ((Label) priceBandBox.getChildren().get(i++)).setText(band.getKey() + " (" + band.getValue() + ")");
+        }
+    }
+
+    private VBox createCartSidebar() {
+        VBox sidebar = new VBox();
+        sidebar.setSpacing(12);
+        sidebar.setPadding(new Insets(10));
+        sidebar.setId("cart-sidebar");
+
+
+        Label title = new Label("Shopping Cart");
+        title.setId("cart-title");
+        title.setFont(Font.font(20));
+
+        ListView<JECRC_FoodsApp.CartItem> cartListView = new ListView<>();
+        cartListView.getStyleClass().add("cart-item");
+        cartListView.setPrefHeight(500);
+        cartListView.setCellFactory(param -> new CartItemCell(this::removeFromCart));
+
+        // The cart model applies each change to this list directly
+        cartListView.setItems(cart.getItems());
+
+        // Total price label
+        totalPriceLabel = new Label();
+        totalPriceLabel.textProperty().bind(Bindings.createStringBinding(
+                () -> "Total: " + Money.format(cart.getTotalPaise()), cart.totalPaiseProperty()));
+        totalPriceLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
+
+        // Products often bought with what is in the cart
+        Label suggestionTitle = new Label("Goes well with");
+        suggestionTitle.setStyle("-fx-font-weight: bold;");
+        suggestionBox = new VBox();
+        suggestionBox.setSpacing(6);
+        suggestionTitle.visibleProperty().bind(Bindings.isNotEmpty(suggestionBox.getChildren()));
+        suggestionTitle.managedProperty().bind(suggestionTitle.visibleProperty());
+        cart.getItems().addListener((ListChangeListener<JECRC_FoodsApp.CartItem>) change -> refreshSuggestions());
+
+        // Checkout button
+        Button checkoutBtn = new Button("Checkout");
+        checkoutBtn.setStyle("-fx-background-color: #7c3aed; -fx-text-fill: white; -fx-font-weight: bold;");
+        checkoutBtn.setMaxWidth(Double.MAX_VALUE);
+        checkoutBtn.setOnAction(e -> handleCheckout());
+
+        sidebar.getChildren().addAll(title, cartListView, suggestionTitle, suggestionBox, totalPriceLabel, checkoutBtn);
+        VBox.setVgrow(cartListView, Priority.ALWAYS);
+
+        return sidebar;
+    }
+
+    /**
+     * Refills the suggestions from the cart's products. A lookup takes microseconds, so it runs
+     * right here on every cart change.
+     */
+    private void refreshSuggestions() {
+        List<String> inCart = new ArrayList<>(cart.getItems().size());
+        for (JECRC_FoodsApp.CartItem item : cart.getItems()) {
+            inCart.add(item.product.id);
+        }
+        suggestionBox.getChildren().clear();
+        for (String productId : recommendations.goesWellWith(inCart, SUGGESTIONS * 2)) {
+            JECRC_FoodsApp.Product product = catalogue.get(productId);
+            if (product == null || product.stock <= 0) {
+                continue;
+            }
+            Button suggestion = new Button("+ " + product.name + "  " + Money.format(Money.toPaise(product.price)));
+            suggestion.setMaxWidth(Double.MAX_VALUE);
+            suggestion.setOnAction(e -> addToCart(product, 1));
+            suggestionBox.getChildren().add(suggestion);
+            if (suggestionBox.getChildren().size() == SUGGESTIONS) {
+                break;
+            }
+        }
+    }
+
+    private void updateProductGrid() {
+        queryPipeline.submit(new ProductQuery(
+                searchField.getText(), categoryFilterCombo.getValue(), priceSortCombo.getValue()));
+    }
+
+    /**
+     * Filters and sorts the catalogue for a query. Runs on a background thread, so it only
+     * reads the thread-safe search index and never touches the UI.
+     */
+    private List<JECRC_FoodsApp.Product> evaluateQuery(ProductQuery query) {
+        // Index lookup instead of scanning every product; results come back best match first
+        List<String> matches = query.text().isEmpty() ? null : searchIndex.search(query.text());
+
+        // Category and price order come from the catalogue's precomputed views
+        List<JECRC_FoodsApp.Product> selected = catalogue.select(query.category(), CatalogueModel.Sort.fromLabel(query.sort()), matches);
+        return POPULAR_SORT.equals(query.sort()) ? recommendations.rankByPopularity(selected) : selected;
+    }
+
+    private void addToCart(JECRC_FoodsApp.Product product, int quantity) {
+        if (!reservations.isConnected()) {
+            // The menu can show up before the order service is ready
+            return;
+        }
+        reservations.add(product, quantity);
+    }
+
+    private void removeFromCart(JECRC_FoodsApp.Product product) {
+        reservations.remove(product.id);
+    }
+
+    private void showShortage(JECRC_FoodsApp.Product product, int held, int before) {
+        String message = held <= before ? "Sorry, no more " + product.name + " is available right now."
+                : "Sorry, only " + held + " " + product.name + " are available right now.";
+        Alert soldOut = new Alert(Alert.AlertType.INFORMATION, message);
+        soldOut.setHeaderText(null);
+        soldOut.showAndWait();
+    }
+
+    private void showUnreachable(IOException e) {
+        // One at a time: every tap while the network is down fails the same way
+        if (unreachableAlert != null && unreachableAlert.isShowing()) {
+            return;
+        }
+        unreachableAlert = new Alert(Alert.AlertType.ERROR,
+                "The counter cannot be reached right now (" + e.getMessage() + "). Your cart was not changed.");
+        unreachableAlert.setHeaderText("Connection problem");
+        unreachableAlert.show();
+    }
+
+    private void handleCheckout() {
+        if (cart.isEmpty()) {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION, "Your cart is empty.");
+            alert.setHeaderText(null);
+            alert.showAndWait();
+            return;
+        }
+        // For demo: simple confirmation dialog
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setHeaderText("Confirm Checkout");
+        confirm.setContentText("Proceed with checkout? Total: " + totalPriceLabel.getText());
+        Optional<ButtonType> result = confirm.showAndWait();
+
+        if (result.isPresent() && result.get() == ButtonType.OK) {
+            // The cart is frozen until the order service has answered
+            cartSidebar.setDisable(true);
+            long started = System.nanoTime();
+            reservations.checkout()
+                    .whenComplete((outcome, error) -> Platform.runLater(() -> {
+                        cartSidebar.setDisable(false);
+                        showCheckoutResult(outcome != null ? outcome : new OrderService.OrderResult(
+                                OrderService.Status.FAILED, null, List.of(), "Checkout failed: " + error), started);
+                    }));
+        }
+    }
+
+    private void showCheckoutResult(OrderService.OrderResult outcome, long started) {
+        switch (outcome.status()) {
+            case CONFIRMED -> {
+                checkoutLatency.recordSince(started);
+                checkoutsCompleted.increment();
+                if (outcome.order() != null) {
+                    recommendations.record(outcome.order());
+                }
+                cart.clear();
+                Alert success = new Alert(Alert.AlertType.INFORMATION, "Thank you for your purchase!");
+                success.setHeaderText(null);
+                success.showAndWait();
+            }
+            case UNAVAILABLE -> {
+                checkoutsFailed.increment();
+                List<String> names = new ArrayList<>();
+                for (String productId : outcome.unavailable()) {
+                    JECRC_FoodsApp.CartItem item = cart.get(productId);
+                    names.add(item != null ? item.product.name : productId);
+                }
+                Alert unavailable = new Alert(Alert.AlertType.WARNING,
+                        "Not enough stock left for: " + String.join(", ", names) + ". Please update your cart.");
+                unavailable.setHeaderText("Some items are no longer available");
+                unavailable.showAndWait();
+            }
+            case PRICE_CHANGED -> {
+                checkoutsFailed.increment();
+                List<String> names = new ArrayList<>();
+                for (String productId : outcome.unavailable()) {
+                    JECRC_FoodsApp.Product current = catalogue.get(productId);
+                    if (current != null && cart.get(productId) != null) {
+                        reservations.reprice(current);
+                        names.add(current.name);
+                    }
+                }
+                Alert repriced = new Alert(Alert.AlertType.WARNING,
+                        "The price of " + String.join(", ", names) + " has changed. Please check the new total and try again.");
+                repriced.setHeaderText("Prices have changed");
+                repriced.showAndWait();
+            }
+            default -> {
+                checkoutsFailed.increment();
+                if (outcome.status() == OrderService.Status.FAILED) {
+                    // The service put the stock back; hold the cart again
+                    reservations.holdAgain();
+                }
+                Alert error = new Alert(Alert.AlertType.ERROR, outcome.message());
+                error.setHeaderText("Checkout failed");
+                error.showAndWait();
+            }
+        }
+    }
+}
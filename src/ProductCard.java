@@ -0,0 +1,137 @@
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Font;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * A single product tile in the grid.
+ * <p>
+ * The node graph is built once; {@link #bind(JECRC_FoodsApp.Product)} only swaps the data
+ * so pooled cards can be reused as the grid scrolls.
+ */
+public class ProductCard extends VBox {
+
+    static final double WIDTH = 200;
+    static final double HEIGHT = 320;
+    static final int IMAGE_WIDTH = 200;
+    static final int IMAGE_HEIGHT = 140;
+
+    private final ImageView imageView = new ImageView();
+    private final Label nameLabel = new Label();
+    private final Label descLabel = new Label();
+    private final Label priceLabel = new Label();
+    private final SpinnerValueFactory.IntegerSpinnerValueFactory quantityFactory =
+            new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 1, 1);
+    private final Button addToCartBtn = new Button("Add");
+
+    private JECRC_FoodsApp.Product product;
+    // The image request for the product shown; withdrawn when the card moves on
+    private CompletableFuture<Image> imageLoad;
+
+    public ProductCard(BiConsumer<JECRC_FoodsApp.Product, Integer> onAdd) {
+        setPrefWidth(WIDTH);
+        setPrefHeight(HEIGHT);
+        setMaxHeight(HEIGHT);
+        setSpacing(8);
+        setPadding(new Insets(10));
+        getStyleClass().add("product-card");
+
+        imageView.setSmooth(true);
+        imageView.setPreserveRatio(true);
+        imageView.setFitWidth(IMAGE_WIDTH);
+        imageView.setFitHeight(IMAGE_HEIGHT);
+
+        nameLabel.setFont(Font.font(16));
+        nameLabel.setWrapText(true);
+
+        descLabel.setStyle("-fx-text-fill: #555;");
+        descLabel.setWrapText(true);
+        descLabel.setMaxHeight(40);
+
+        priceLabel.setStyle("-fx-font-weight: bold; -fx-text-fill: #7c3aed;");
+
+        // Add to Cart Button and quantity selector
+        HBox actionBox = new HBox();
+        actionBox.setSpacing(8);
+        actionBox.setAlignment(Pos.CENTER_LEFT);
+
+        Spinner<Integer> quantitySpinner = new Spinner<>(quantityFactory);
+        quantitySpinner.setPrefWidth(80);
+
+        addToCartBtn.setStyle("-fx-background-color: #7c3aed; -fx-text-fill: white;");
+        addToCartBtn.setOnAction(e -> {
+            if (product != null) {
+                onAdd.accept(product, quantityFactory.getValue());
+            }
+        });
+
+        actionBox.getChildren().addAll(quantitySpinner, addToCartBtn);
+
+        getChildren().addAll(imageView, nameLabel, descLabel, priceLabel, actionBox);
+    }
+
+    /**
+     * Points this card at another product. Cheap enough to call on every scroll step.
+     */
+    public void bind(JECRC_FoodsApp.Product product) {
+        if (this.product == product) {
+            // Stock is changed in place, so it may differ from the last bind
+            refreshStock();
+            return;
+        }
+        this.product = product;
+        if (imageLoad != null) {
+            // Not wanted any more; the cache skips it if it has not started
+            imageLoad.cancel(false);
+            imageLoad = null;
+        }
+
+        // Show whatever is already decoded; otherwise load in the background and only apply
+        // the result if this card still shows the same product by then
+        Image cached = ImageCache.getInstance().getIfCached(product.imageUrl, IMAGE_WIDTH, IMAGE_HEIGHT);
+        imageView.setImage(cached);
+        if (cached == null) {
+            imageLoad = ImageCache.getInstance().load(product.imageUrl, IMAGE_WIDTH, IMAGE_HEIGHT);
+            imageLoad.whenComplete((image, error) -> Platform.runLater(() -> {
+                // Failures are counted by the cache; the card keeps its placeholder
+                if (error == null && this.product == product) {
+                    imageView.setImage(image);
+                }
+            }));
+        }
+        imageView.setAccessibleText(product.name + ", image");
+
+        nameLabel.setText(product.name);
+        descLabel.setText(product.description);
+        priceLabel.setText(Money.format(Money.toPaise(product.price)));
+
+        quantityFactory.setValue(1);
+        refreshStock();
+    }
+
+    /**
+     * Brings the quantity limit and the Add button in line with the product's current stock.
+     */
+    public void refreshStock() {
+        if (product == null) {
+            return;
+        }
+        quantityFactory.setMax(Math.max(1, product.stock));
+        addToCartBtn.setDisable(product.stock <= 0);
+    }
+
+    public JECRC_FoodsApp.Product getProduct() {
+        return product;
+    }
+}
@@ -0,0 +1,135 @@
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Virtualized product grid.
+ * <p>
+ * The products are chunked into rows and shown through a {@link ListView}, so only the rows
+ * that are on screen have nodes. Each row cell keeps a small pool of {@link ProductCard}s and
+ * rebinds them when the cell is reused, so scrolling and filtering never rebuild cards.
+ */
+public class ProductGrid extends ListView<List<JECRC_FoodsApp.Product>> {
+
+    private static final double HGAP = 20;
+    private static final double VGAP = 20;
+    private static final double PADDING = 10;
+
+    private static final Metrics.Histogram rebuildTime = Metrics.getInstance().histogram("grid.rebuild");
+    private static final LongAdder cardsCreated = Metrics.getInstance().counter("grid.cardsCreated");
+
+    private final BiConsumer<JECRC_FoodsApp.Product, Integer> onAdd;
+    private final ObservableList<List<JECRC_FoodsApp.Product>> rows = FXCollections.observableArrayList();
+    // Every row cell the list has made; only a screenful or so
+    private final List<RowCell> cells = new ArrayList<>();
+    private List<JECRC_FoodsApp.Product> products = List.of();
+    private int columns = 1;
+
+    public ProductGrid(BiConsumer<JECRC_FoodsApp.Product, Integer> onAdd) {
+        this.onAdd = onAdd;
+        getStyleClass().add("product-grid");
+        setItems(rows);
+        setFixedCellSize(ProductCard.HEIGHT + VGAP);
+        setFocusTraversable(false);
+        setCellFactory(list -> {
+            RowCell cell = new RowCell();
+            cells.add(cell);
+            return cell;
+        });
+
+        // Re-chunk only when the number of cards that fit in a row actually changes
+        widthProperty().addListener((obs, oldWidth, newWidth) -> {
+            int fit = columnsFor(newWidth.doubleValue());
+            if (fit != columns) {
+                columns = fit;
+                rebuildRows();
+            }
+        });
+    }
+
+    /**
+     * Replaces the products shown in the grid. Only row slices are created here; the cards
+     * for visible rows are rebound on the next layout pass.
+     */
+    public void setProducts(List<JECRC_FoodsApp.Product> products) {
+        long started = System.nanoTime();
+        this.products = products;
+        rebuildRows();
+        scrollTo(0);
+        rebuildTime.recordSince(started);
+    }
+
+    public List<JECRC_FoodsApp.Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Updates the cards on screen after the stock of their products changed in place.
+     */
+    public void refreshStock() {
+        cells.forEach(RowCell::refreshStock);
+    }
+
+    private void rebuildRows() {
+        List<List<JECRC_FoodsApp.Product>> chunks = new ArrayList<>((products.size() + columns - 1) / columns);
+        for (int from = 0; from < products.size(); from += columns) {
+            chunks.add(products.subList(from, Math.min(from + columns, products.size())));
+        }
+        rows.setAll(chunks);
+    }
+
+    private static int columnsFor(double width) {
+        // Leave room for the vertical scrollbar
+        double usable = width - 2 * PADDING - 20;
+        return Math.max(1, (int) ((usable + HGAP) / (ProductCard.WIDTH + HGAP)));
+    }
+
+    private class RowCell extends ListCell<List<JECRC_FoodsApp.Product>> {
+        private final HBox row = new HBox(HGAP);
+        private final List<ProductCard> pool = new ArrayList<>();
+
+        RowCell() {
+            row.setPadding(new Insets(VGAP / 2, PADDING, VGAP / 2, PADDING));
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(List<JECRC_FoodsApp.Product> item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setGraphic(null);
+                return;
+            }
+
+            while (pool.size() < item.size()) {
+                pool.add(new ProductCard(onAdd));
+                cardsCreated.increment();
+            }
+            for (int i = 0; i < item.size(); i++) {
+                pool.get(i).bind(item.get(i));
+            }
+            // Only touch the children list when the row width actually changed
+            if (row.getChildren().size() != item.size()) {
+                row.getChildren().setAll(pool.subList(0, item.size()));
+            }
+            setGraphic(row);
+        }
+
+        void refreshStock() {
+            List<JECRC_FoodsApp.Product> item = getItem();
+            if (!isEmpty() && item != null) {
+                for (int i = 0; i < item.size(); i++) {
+                    pool.get(i).refreshStock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Everything that decides what the product grid shows: the search text, the selected
+ * category and the sort option. Immutable, so it can be handed to a background thread.
+ */
+public record ProductQuery(String text, String category, String sort) {
+
+    public ProductQuery {
+        text = text == null ? "" : text.trim();
+        category = category == null ? "All" : category;
+        sort = sort == null ? "Default" : sort;
+    }
+
+    /** True when only the search text differs, i.e. the user is still typing. */
+    boolean sameFilters(ProductQuery other) {
+        return other != null && category.equals(other.category) && sort.equals(other.sort);
+    }
+}
@@ -0,0 +1,130 @@
+import javafx.application.Platform;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs product queries off the JavaFX Application Thread.
+ * <p>
+ * Bursts of typing are debounced into one query, filter and sort changes run right away.
+ * Each query is evaluated on a virtual thread; a newer query cancels the one still running,
+ * and only the newest result is published back on the FX thread.
+ */
+public class ProductQueryPipeline implements AutoCloseable {
+
+    private final Function<ProductQuery, List<JECRC_FoodsApp.Product>> evaluator;
+    private final Consumer<List<JECRC_FoodsApp.Product>> publisher;
+    private final long debounceNanos;
+
+    private final Metrics.Histogram latency = Metrics.getInstance().histogram("query.latency");
+    private final LongAdder superseded = Metrics.getInstance().counter("query.superseded");
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "query-debounce");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by this
+    private long generation;
+    private ProductQuery lastSubmitted;
+    private ScheduledFuture<?> pending;
+    private Future<?> running;
+
+    /**
+     * @param evaluator filters and sorts for a query; called on a background thread
+     * @param publisher receives the newest result on the FX thread
+     */
+    public ProductQueryPipeline(Function<ProductQuery, List<JECRC_FoodsApp.Product>> evaluator,
+                                Consumer<List<JECRC_FoodsApp.Product>> publisher,
+                                Duration debounce) {
+        this.evaluator = evaluator;
+        this.publisher = publisher;
+        this.debounceNanos = debounce.toNanos();
+    }
+
+    /**
+     * Queues a query. Text-only changes wait for a short pause in typing; anything else,
+     * or the very first query, starts immediately. Repeating the last query is a no-op.
+     */
+    public synchronized void submit(ProductQuery query) {
+        if (query.equals(lastSubmitted)) {
+            return;
+        }
+        boolean typing = query.sameFilters(lastSubmitted);
+        lastSubmitted = query;
+        long gen = ++generation;
+
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        if (typing && debounceNanos > 0) {
+            pending = timer.schedule(() -> start(gen, query), debounceNanos, TimeUnit.NANOSECONDS);
+        } else {
+            start(gen, query);
+        }
+    }
+
+    /**
+     * Re-runs the last query even though it has not changed, e.g. after the catalogue changed.
+     */
+    public synchronized void refresh() {
+        ProductQuery query = lastSubmitted;
+        if (query != null) {
+            lastSubmitted = null;
+            submit(query);
+        }
+    }
+
+    private synchronized void start(long gen, ProductQuery query) {
+        if (gen != generation) {
+            return;
+        }
+        if (running != null) {
+            running.cancel(true);
+        }
+        running = executor.submit(() -> {
+            List<JECRC_FoodsApp.Product> result;
+            long started = System.nanoTime();
+            try {
+                result = evaluator.apply(query);
+            } catch (CancellationException e) {
+                // Interrupted by a newer query
+                superseded.increment();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Product query failed: " + e.getMessage());
+                return;
+            }
+            if (Thread.currentThread().isInterrupted() || !isCurrent(gen)) {
+                superseded.increment();
+                return;
+            }
+            latency.recordSince(started);
+            Platform.runLater(() -> {
+                // A newer query may have been submitted while this one was waiting for the FX thread
+                if (isCurrent(gen)) {
+                    publisher.accept(result);
+                } else {
+                    superseded.increment();
+                }
+            });
+        });
+    }
+
+    private synchronized boolean isCurrent(long gen) {
+        return gen == generation;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,570 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over product name, description and category.
+ * <p>
+ * Every query token matches terms exactly, by prefix (so results show up while the user is
+ * still typing) or within one edit for longer tokens (so "biryni" still finds "Biryani").
+ * A product has to match all query tokens; results are ranked by where the tokens matched
+ * and how closely. The index is updated per product instead of being rebuilt.
+ * <p>
+ * Only product ids are kept, not the products: a columnar catalogue makes its products on
+ * demand, and the index should not keep every one of them alive.
+ * <p>
+ * Reads and writes may come from different threads. A search whose thread is interrupted stops
+ * with a {@link CancellationException}.
+ */
+public class ProductSearchIndex {
+
+    private static final int NAME = 1;
+    private static final int CATEGORY = 2;
+    private static final int DESCRIPTION = 4;
+
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.7f;
+    private static final float FUZZY = 0.5f;
+
+    /** Tokens shorter than this are never matched fuzzily, they would match almost anything. */
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    /** Long loops look for a cancelled search once per this many steps, plus one. */
+    private static final int CANCEL_CHECK_MASK = 4095;
+
+    /** At most this many spare score buffers are kept between searches. */
+    private static final int MAX_SPARE_SCRATCH = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /** Posting list of one term: the documents that contain it and in which fields. */
+    private static final class Term {
+        final String text;
+        int[] docs = new int[4];
+        byte[] fields = new byte[4];
+        int size;
+
+        Term(String text) {
+            this.text = text;
+        }
+
+        void add(int doc, int fieldMask) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            docs[size] = doc;
+            fields[size] = (byte) fieldMask;
+            size++;
+        }
+    }
+
+    /**
+     * Score buffers, reused between searches so a search allocates almost nothing. They are
+     * pooled rather than kept per thread: queries and server requests run on virtual threads,
+     * a new one each time.
+     */
+    private static final class Scratch {
+        int[] queryStamp = new int[0];
+        int[] tokenStamp = new int[0];
+        int[] matched = new int[0];
+        float[] best = new float[0];
+        float[] total = new float[0];
+        int[] candidates = new int[64];
+        int query;
+        int token;
+
+        void ensure(int capacity) {
+            if (queryStamp.length < capacity) {
+                int size = Math.max(capacity, queryStamp.length * 2);
+                queryStamp = new int[size];
+                tokenStamp = new int[size];
+                matched = new int[size];
+                best = new float[size];
+                total = new float[size];
+                query = 0;
+                token = 0;
+            }
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final HashMap<String, Term> terms = new HashMap<>();
+    private final TreeMap<String, Term> sortedTerms = new TreeMap<>();
+    // Single-deletion variants of every term, used to find terms within one edit of a query token
+    private final HashMap<String, List<Term>> deletions = new HashMap<>();
+
+    private final HashMap<String, Integer> docById = new HashMap<>();
+    // Product id of each document, null once it is removed
+    private String[] docs = new String[64];
+    private int docCount;
+    private int deadDocs;
+
+    // Guarded by itself; the most recently used buffers first, they are the ones already sized
+    private final ArrayDeque<Scratch> spareScratch = new ArrayDeque<>();
+
+    public ProductSearchIndex() {
+    }
+
+    public ProductSearchIndex(Collection<? extends JECRC_FoodsApp.Product> products) {
+        addAll(products);
+    }
+
+    public void addAll(Collection<? extends JECRC_FoodsApp.Product> products) {
+        lock.writeLock().lock();
+        try {
+            for (JECRC_FoodsApp.Product p : products) {
+                removeLocked(p.id);
+                addLocked(p);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(JECRC_FoodsApp.Product product) {
+        update(product);
+    }
+
+    /**
+     * Re-indexes a product after its name, description or category changed.
+     */
+    public void update(JECRC_FoodsApp.Product product) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.id);
+            addLocked(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(JECRC_FoodsApp.Product product) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeAll(Collection<? extends JECRC_FoodsApp.Product> products) {
+        lock.writeLock().lock();
+        try {
+            for (JECRC_FoodsApp.Product p : products) {
+                removeLocked(p.id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Keeps this index in sync with a catalogue model.
+     */
+    public CatalogueModel.Listener listener() {
+        return new CatalogueModel.Listener() {
+            @Override
+            public void productsAdded(List<JECRC_FoodsApp.Product> products) {
+                addAll(products);
+            }
+
+            @Override
+            public void productsRemoved(List<JECRC_FoodsApp.Product> products) {
+                removeAll(products);
+            }
+
+            @Override
+            public void productsUpdated(List<JECRC_FoodsApp.Product> products) {
+                addAll(products);
+            }
+        };
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the products matching every token of the query, best matches first.
+     * A blank query returns all product ids in the order they were added.
+     */
+    public List<String> search(String query) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(query, tokens);
+
+        lock.readLock().lock();
+        try {
+            if (tokens.isEmpty()) {
+                List<String> all = new ArrayList<>(docById.size());
+                for (int doc = 0; doc < docCount; doc++) {
+                    if ((doc & CANCEL_CHECK_MASK) == 0) {
+                        checkCancelled();
+                    }
+                    if (docs[doc] != null) {
+                        all.add(docs[doc]);
+                    }
+                }
+                return all;
+            }
+
+            Scratch s = takeScratch();
+            try {
+                return search(tokens, s);
+            } finally {
+                putBack(s);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Called under the read lock with at least one token. */
+    private List<String> search(List<String> tokens, Scratch s) {
+        s.ensure(docCount);
+        s.query++;
+        int candidateCount = 0;
+
+        for (int k = 0; k < tokens.size(); k++) {
+            checkCancelled();
+            String token = tokens.get(k);
+            s.token++;
+
+            Term exact = terms.get(token);
+            if (exact != null) {
+                candidateCount = score(s, exact, EXACT, k, candidateCount);
+            }
+            for (Term t : sortedTerms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                candidateCount = score(s, t, PREFIX, k, candidateCount);
+            }
+            if (token.length() >= MIN_FUZZY_LENGTH && !hasDigit(token)) {
+                for (Term t : fuzzyMatches(token)) {
+                    if (t != exact && !t.text.startsWith(token)) {
+                        candidateCount = score(s, t, FUZZY, k, candidateCount);
+                    }
+                }
+            }
+        }
+
+        // Sort on packed primitives: higher score first, then insertion order.
+        // Scores are positive, so their float bits order the same way the floats do.
+        int required = tokens.size();
+        long[] hits = new long[candidateCount];
+        int hitCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            if ((i & CANCEL_CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            int doc = s.candidates[i];
+            if (s.matched[doc] == required) {
+                long rank = Integer.MAX_VALUE - Float.floatToIntBits(s.total[doc]);
+                hits[hitCount++] = rank << 32 | doc;
+            }
+        }
+        Arrays.sort(hits, 0, hitCount);
+
+        List<String> results = new ArrayList<>(hitCount);
+        for (int i = 0; i < hitCount; i++) {
+            results.add(docs[(int) hits[i]]);
+        }
+        return results;
+    }
+
+    /**
+     * Folds one term's postings into the running scores for query token {@code k}.
+     * Only documents that matched all previous tokens stay in the race.
+     */
+    private int score(Scratch s, Term term, float weight, int k, int candidateCount) {
+        for (int i = 0; i < term.size; i++) {
+            if ((i & CANCEL_CHECK_MASK) == 0) {
+                checkCancelled();
+            }
+            int doc = term.docs[i];
+            if (docs[doc] == null) {
+                continue;
+            }
+            float score = weight * fieldWeight(term.fields[i]);
+
+            if (k == 0) {
+                if (s.queryStamp[doc] != s.query) {
+                    s.queryStamp[doc] = s.query;
+                    s.tokenStamp[doc] = s.token;
+                    s.matched[doc] = 1;
+                    s.best[doc] = score;
+                    s.total[doc] = score;
+                    if (candidateCount == s.candidates.length) {
+                        s.candidates = Arrays.copyOf(s.candidates, candidateCount * 2);
+                    }
+                    s.candidates[candidateCount++] = doc;
+                } else if (score > s.best[doc]) {
+                    s.total[doc] += score - s.best[doc];
+                    s.best[doc] = score;
+                }
+            } else if (s.queryStamp[doc] == s.query) {
+                if (s.tokenStamp[doc] != s.token) {
+                    if (s.matched[doc] != k) {
+                        continue;
+                    }
+                    s.tokenStamp[doc] = s.token;
+                    s.matched[doc] = k + 1;
+                    s.best[doc] = score;
+                    s.total[doc] += score;
+                } else if (score > s.best[doc]) {
+                    s.total[doc] += score - s.best[doc];
+                    s.best[doc] = score;
+                }
+            }
+        }
+        return candidateCount;
+    }
+
+    /**
+     * Gives up on a search whose thread was interrupted, e.g. by the query pipeline once a newer
+     * query came in.
+     */
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search cancelled");
+        }
+    }
+
+    private Scratch takeScratch() {
+        synchronized (spareScratch) {
+            Scratch s = spareScratch.pollFirst();
+            return s != null ? s : new Scratch();
+        }
+    }
+
+    private void putBack(Scratch s) {
+        synchronized (spareScratch) {
+            if (spareScratch.size() < MAX_SPARE_SCRATCH) {
+                spareScratch.addFirst(s);
+            }
+        }
+    }
+
+    private static float fieldWeight(int fieldMask) {
+        if ((fieldMask & NAME) != 0) {
+            return 3f;
+        }
+        if ((fieldMask & CATEGORY) != 0) {
+            return 2f;
+        }
+        return 1f;
+    }
+
+    private List<Term> fuzzyMatches(String token) {
+        Set<Term> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectFuzzy(token, token, found);
+        for (int i = 0; i < token.length(); i++) {
+            collectFuzzy(token, deleteAt(token, i), found);
+        }
+        return new ArrayList<>(found);
+    }
+
+    private void collectFuzzy(String token, String key, Set<Term> found) {
+        List<Term> bucket = deletions.get(key);
+        if (bucket == null) {
+            return;
+        }
+        for (Term t : bucket) {
+            if (withinOneEdit(token, t.text)) {
+                found.add(t);
+            }
+        }
+    }
+
+    private void addLocked(JECRC_FoodsApp.Product product) {
+        LinkedHashMap<String, Integer> fieldsByTerm = new LinkedHashMap<>();
+        collect(product.name, NAME, fieldsByTerm);
+        collect(product.category, CATEGORY, fieldsByTerm);
+        collect(product.description, DESCRIPTION, fieldsByTerm);
+
+        if (docCount == docs.length) {
+            docs = Arrays.copyOf(docs, docCount * 2);
+        }
+        int doc = docCount++;
+        docs[doc] = product.id;
+        docById.put(product.id, doc);
+
+        for (Map.Entry<String, Integer> e : fieldsByTerm.entrySet()) {
+            Term term = terms.get(e.getKey());
+            if (term == null) {
+                term = new Term(e.getKey());
+                terms.put(term.text, term);
+                sortedTerms.put(term.text, term);
+                indexDeletions(term);
+            }
+            term.add(doc, e.getValue());
+        }
+    }
+
+    private void removeLocked(String id) {
+        Integer doc = docById.remove(id);
+        if (doc == null) {
+            return;
+        }
+        // Postings are cleaned up lazily; dead documents are skipped while scoring
+        docs[doc] = null;
+        deadDocs++;
+        if (deadDocs > 64 && deadDocs > docById.size() / 4) {
+            compact();
+        }
+    }
+
+    /**
+     * Drops dead documents from every posting list, renumbers the live ones and forgets terms
+     * no product uses anymore.
+     */
+    private void compact() {
+        int[] remap = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (docs[doc] != null) {
+                remap[doc] = live;
+                docs[live] = docs[doc];
+                docById.put(docs[live], live);
+                live++;
+            } else {
+                remap[doc] = -1;
+            }
+        }
+        Arrays.fill(docs, live, docCount, null);
+        docCount = live;
+        deadDocs = 0;
+
+        Iterator<Term> it = terms.values().iterator();
+        while (it.hasNext()) {
+            Term term = it.next();
+            int kept = 0;
+            for (int i = 0; i < term.size; i++) {
+                int target = remap[term.docs[i]];
+                if (target >= 0) {
+                    term.docs[kept] = target;
+                    term.fields[kept] = term.fields[i];
+                    kept++;
+                }
+            }
+            term.size = kept;
+            if (kept == 0) {
+                it.remove();
+                sortedTerms.remove(term.text);
+                unindexDeletions(term);
+            }
+        }
+    }
+
+    private void indexDeletions(Term term) {
+        if (term.text.length() < MIN_FUZZY_LENGTH - 1) {
+            return;
+        }
+        deletions.computeIfAbsent(term.text, k -> new ArrayList<>(1)).add(term);
+        for (int i = 0; i < term.text.length(); i++) {
+            deletions.computeIfAbsent(deleteAt(term.text, i), k -> new ArrayList<>(1)).add(term);
+        }
+    }
+
+    private void unindexDeletions(Term term) {
+        if (term.text.length() < MIN_FUZZY_LENGTH - 1) {
+            return;
+        }
+        unindexDeletion(term.text, term);
+        for (int i = 0; i < term.text.length(); i++) {
+            unindexDeletion(deleteAt(term.text, i), term);
+        }
+    }
+
+    private void unindexDeletion(String key, Term term) {
+        List<Term> bucket = deletions.get(key);
+        if (bucket != null) {
+            bucket.remove(term);
+            if (bucket.isEmpty()) {
+                deletions.remove(key);
+            }
+        }
+    }
+
+    private static void collect(String text, int field, Map<String, Integer> fieldsByTerm) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens);
+        for (String token : tokens) {
+            fieldsByTerm.merge(token, field, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * Lower-cases the text and splits it on anything that is not a letter or digit.
+     */
+    static void tokenize(String text, List<String> out) {
+        if (text == null) {
+            return;
+        }
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (!current.isEmpty()) {
+                addDistinct(current.toString(), out);
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) {
+            addDistinct(current.toString(), out);
+        }
+    }
+
+    private static void addDistinct(String token, List<String> out) {
+        if (!out.contains(token)) {
+            out.add(token);
+        }
+    }
+
+    private static boolean hasDigit(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.isDigit(token.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String deleteAt(String s, int i) {
+        return s.substring(0, i) + s.substring(i + 1);
+    }
+
+    /**
+     * True when a and b differ by at most one insertion, deletion, substitution or swap of
+     * two neighbouring characters.
+     */
+    static boolean withinOneEdit(String a, String b) {
+        int la = a.length();
+        int lb = b.length();
+        if (Math.abs(la - lb) > 1) {
+            return false;
+        }
+        int i = 0;
+        while (i < la && i < lb && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (i == la && i == lb) {
+            return true;
+        }
+        if (la == lb) {
+            // substitution, or transposition of i and i + 1
+            if (a.regionMatches(i + 1, b, i + 1, la - i - 1)) {
+                return true;
+            }
+            return i + 1 < la && a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i)
+                    && a.regionMatches(i + 2, b, i + 2, la - i - 2);
+        }
+        return la > lb
+                ? a.regionMatches(i + 1, b, i, lb - i)
+                : b.regionMatches(i + 1, a, i, la - i);
+    }
+}
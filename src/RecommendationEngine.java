@@ -0,0 +1,261 @@
+import java.util.*;
+
+/**
+ * "Goes well with" suggestions and a "popular now" ranking, learned from completed orders.
+ * <p>
+ * Products are numbered on first sight and everything else is kept in primitive arrays
+ * indexed by that number. Every product has a popularity score and a fixed-size table of the
+ * products it was bought together with. When a table is full, a new neighbour takes the slot
+ * of the weakest one and inherits its weight (the Space-Saving scheme), so memory stays at
+ * {@code products × neighbours} no matter how many orders come in, and pairs that are bought
+ * together often always keep their place.
+ * <p>
+ * Both scores decay over time with a configurable half-life. Instead of touching every score
+ * as time passes, each new order is weighted by {@code 2^(age / halfLife)} from a fixed
+ * origin, so newer orders simply count more; the weights are rescaled once they get large.
+ * An update costs a few array scans per order line and a query a few per cart line: both
+ * stay in the microseconds. Thread-safe.
+ */
+public class RecommendationEngine {
+
+    /** Rescale all scores once a single order weighs this much. */
+    private static final double RESCALE_AT = 1e12;
+
+    private final int neighbourSlots;
+    private final double halfLifeMillis;
+
+    private final HashMap<String, Integer> indexById = new HashMap<>();
+    private String[] ids = new String[64];
+    private double[] popularity = new double[64];
+    // Per product: neighbour indexes (-1 for a free slot) and their weights, slot by slot
+    private int[][] neighbours = new int[64][];
+    private double[][] weights = new double[64][];
+    private int size;
+
+    private long originMillis = -1;
+
+    public RecommendationEngine(int neighbourSlots, java.time.Duration halfLife) {
+        this.neighbourSlots = neighbourSlots;
+        this.halfLifeMillis = halfLife.toMillis();
+    }
+
+    /**
+     * Learns from a completed order: every product in it gains popularity in proportion to the
+     * quantity sold, and every pair of distinct products in it is counted once.
+     */
+    public synchronized void record(Order order) {
+        if (order.lines().isEmpty()) {
+            return;
+        }
+        double weight = weightAt(order.timestamp());
+        int[] lines = new int[order.lines().size()];
+        int count = 0;
+        for (Order.Line line : order.lines()) {
+            int index = indexOf(line.productId());
+            popularity[index] += weight * line.quantity();
+            lines[count++] = index;
+        }
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                if (lines[i] != lines[j]) {
+                    addNeighbour(lines[i], lines[j], weight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Up to {@code k} products most often bought together with the given ones, strongest
+     * first, leaving out the given products themselves.
+     */
+    public synchronized List<String> goesWellWith(Collection<String> productIds, int k) {
+        int[] given = new int[productIds.size()];
+        int givenCount = 0;
+        for (String id : productIds) {
+            Integer index = indexById.get(id);
+            if (index != null) {
+                given[givenCount++] = index;
+            }
+        }
+        // At most givenCount × neighbourSlots candidates, so flat arrays and linear probing
+        // beat a map here
+        int[] candidates = new int[givenCount * neighbourSlots];
+        double[] scores = new double[candidates.length];
+        int candidateCount = 0;
+        for (int g = 0; g < givenCount; g++) {
+            int[] slots = neighbours[given[g]];
+            if (slots == null) {
+                continue;
+            }
+            double[] slotWeights = weights[given[g]];
+            for (int s = 0; s < slots.length; s++) {
+                int neighbour = slots[s];
+                if (neighbour < 0 || contains(given, givenCount, neighbour)) {
+                    continue;
+                }
+                int at = 0;
+                while (at < candidateCount && candidates[at] != neighbour) {
+                    at++;
+                }
+                if (at == candidateCount) {
+                    candidates[candidateCount++] = neighbour;
+                }
+                scores[at] += slotWeights[s];
+            }
+        }
+
+        // Partial selection of the k best
+        List<String> top = new ArrayList<>(Math.min(k, candidateCount));
+        for (int n = 0; n < k && n < candidateCount; n++) {
+            int best = n;
+            for (int i = n + 1; i < candidateCount; i++) {
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            int candidate = candidates[best];
+            double score = scores[best];
+            candidates[best] = candidates[n];
+            scores[best] = scores[n];
+            candidates[n] = candidate;
+            scores[n] = score;
+            top.add(ids[candidate]);
+        }
+        return top;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decayed popularity of a product; only meaningful compared with other products' scores.
+     */
+    public synchronized double popularity(String productId) {
+        Integer index = indexById.get(productId);
+        return index != null ? popularity[index] : 0;
+    }
+
+    /**
+     * Orders products by decayed popularity, most popular first. Products that were never
+     * ordered keep their current order after the others. The result reads through to the given
+     * list instead of copying it, so products that are made on demand stay that way.
+     */
+    public List<JECRC_FoodsApp.Product> rankByPopularity(List<JECRC_FoodsApp.Product> products) {
+        List<Scored> sold = new ArrayList<>();
+        int[] order = new int[products.size()];
+        int rest = 0;
+        synchronized (this) {
+            for (int i = 0; i < order.length; i++) {
+                Integer index = indexById.get(products.get(i).id);
+                if (index != null && popularity[index] > 0) {
+                    sold.add(new Scored(i, popularity[index]));
+                } else {
+                    order[rest++] = i;
+                }
+            }
+        }
+        sold.sort((a, b) -> Double.compare(b.score, a.score));
+        // Sold products first, then the rest in their current order
+        System.arraycopy(order, 0, order, sold.size(), rest);
+        for (int i = 0; i < sold.size(); i++) {
+            order[i] = sold.get(i).position;
+        }
+        return new AbstractList<>() {
+            @Override
+            public JECRC_FoodsApp.Product get(int index) {
+                return products.get(order[index]);
+            }
+
+            @Override
+            public int size() {
+                return order.length;
+            }
+        };
+    }
+
+    private record Scored(int position, double score) {
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private int indexOf(String productId) {
+        Integer index = indexById.get(productId);
+        if (index != null) {
+            return index;
+        }
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            popularity = Arrays.copyOf(popularity, capacity);
+            neighbours = Arrays.copyOf(neighbours, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        ids[size] = productId;
+        indexById.put(productId, size);
+        return size++;
+    }
+
+    private void addNeighbour(int product, int neighbour, double weight) {
+        int[] slots = neighbours[product];
+        if (slots == null) {
+            slots = new int[neighbourSlots];
+            Arrays.fill(slots, -1);
+            neighbours[product] = slots;
+            weights[product] = new double[neighbourSlots];
+        }
+        double[] slotWeights = weights[product];
+        int weakest = 0;
+        for (int s = 0; s < slots.length; s++) {
+            if (slots[s] == neighbour) {
+                slotWeights[s] += weight;
+                return;
+            }
+            if (slots[s] < 0) {
+                slots[s] = neighbour;
+                slotWeights[s] = weight;
+                return;
+            }
+            if (slotWeights[s] < slotWeights[weakest]) {
+                weakest = s;
+            }
+        }
+        // Full: the newcomer takes over the weakest slot and its weight, which bounds how far
+        // any count can be overestimated
+        slots[weakest] = neighbour;
+        slotWeights[weakest] += weight;
+    }
+
+    /**
+     * The weight of an order placed at the given time: doubles every half-life after the
+     * origin. Older timestamps weigh less, down to nothing.
+     */
+    private double weightAt(long timestampMillis) {
+        if (originMillis < 0) {
+            originMillis = timestampMillis;
+        }
+        double weight = Math.pow(2, (timestampMillis - originMillis) / halfLifeMillis);
+        if (weight > RESCALE_AT) {
+            // Move the origin forward: scale everything down so the newest order weighs 1
+            double factor = 1 / weight;
+            for (int i = 0; i < size; i++) {
+                popularity[i] *= factor;
+                if (weights[i] != null) {
+                    for (int s = 0; s < weights[i].length; s++) {
+                        weights[i][s] *= factor;
+                    }
+                }
+            }
+            originMillis = timestampMillis;
+            weight = 1;
+        }
+        return weight;
+    }
+}
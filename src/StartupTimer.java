@@ -0,0 +1,62 @@
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Startup milestones, measured from the start of the JVM: the first frame (the window has been
+ * laid out once) and interactive (the menu is on screen and the cart accepts items).
+ * <p>
+ * Both go into the metrics as startup.firstFrame and startup.interactive. With
+ * {@code -Djecrc.startup.report=true} they are also printed as one line, and with
+ * {@code -Djecrc.startup.exit=true} the app quits once interactive, which is how
+ * StartupBenchmark and the AppCDS archive run drive it.
+ */
+final class StartupTimer {
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private long firstFrameMillis = -1;
+
+    /**
+     * Records the first frame at the end of the scene's first layout pass after this call.
+     */
+    void watchFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            firstFrameMillis = sinceJvmStart();
+            Metrics.getInstance().histogram("startup.firstFrame").record(firstFrameMillis * 1_000_000);
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /**
+     * Records interactive at the end of the first layout pass in which {@code ready} holds,
+     * e.g. once the grid shows the loaded catalogue. Must be called on the FX thread.
+     */
+    void watchInteractive(Scene scene, BooleanSupplier ready) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (!ready.getAsBoolean()) {
+                return;
+            }
+            scene.removePostLayoutPulseListener(listener[0]);
+            long interactiveMillis = sinceJvmStart();
+            Metrics.getInstance().histogram("startup.interactive").record(interactiveMillis * 1_000_000);
+            if (Boolean.getBoolean("jecrc.startup.report")) {
+                System.out.println("startup firstFrame=" + firstFrameMillis + " interactive=" + interactiveMillis);
+            }
+            if (Boolean.getBoolean("jecrc.startup.exit")) {
+                Platform.exit();
+            }
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+        // The next pulse may be a while off if nothing else changes
+        Platform.requestNextPulse();
+    }
+
+    private long sinceJvmStart() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records which logged orders the stock in a saved catalogue already accounts for, so stock
+ * survives a crash: on the next start, orders logged after that point are taken off the saved
+ * stock again.
+ * <p>
+ * The checkpoint is a small file next to the catalogue holding the last order sequence number
+ * the stock includes. It is written after the catalogue, so a crash in between replays some
+ * orders twice and undersells a little rather than overselling.
+ */
+final class StockCheckpoint {
+
+    private StockCheckpoint() {
+    }
+
+    static Path fileFor(Path catalogueFile) {
+        return catalogueFile.resolveSibling(catalogueFile.getFileName() + ".seq");
+    }
+
+    /**
+     * @return the last order sequence number the catalogue's stock includes, or -1 if unknown
+     */
+    static long read(Path catalogueFile) {
+        Path file = fileFor(catalogueFile);
+        try {
+            return Files.exists(file) ? Long.parseLong(Files.readString(file, StandardCharsets.UTF_8).trim()) : -1;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring unreadable stock checkpoint " + file + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    static void write(Path catalogueFile, long seq) throws IOException {
+        Path file = fileFor(catalogueFile);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Long.toString(seq).getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Takes the units sold by orders after {@code checkpoint} off the products' stock.
+     *
+     * @param orders logged orders, oldest first
+     * @return the number of orders replayed
+     */
+    static int replay(List<JECRC_FoodsApp.Product> products, List<Order> orders, long checkpoint) {
+        if (checkpoint < 0) {
+            return 0;
+        }
+        Map<String, JECRC_FoodsApp.Product> byId = new HashMap<>();
+        products.forEach(p -> byId.put(p.id, p));
+        int replayed = 0;
+        for (Order order : orders) {
+            if (order.seq() <= checkpoint) {
+                continue;
+            }
+            for (Order.Line line : order.lines()) {
+                JECRC_FoodsApp.Product product = byId.get(line.productId());
+                if (product != null) {
+                    product.stock = Math.max(0, product.stock - line.quantity());
+                }
+            }
+            replayed++;
+        }
+        return replayed;
+    }
+}
@@ -0,0 +1,379 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stock shared by every terminal selling from the same counter.
+ * <p>
+ * Available stock is one atomic counter per product, updated with compare-and-set, so there is
+ * no global lock. Putting an item in a cart reserves it: the stock leaves the available count
+ * right away and comes back if the cart line is removed, the cart is cleared or the reservation
+ * expires. Checkout commits all lines of a cart at once, or none of them.
+ * <p>
+ * Each reservation line has its own monitor; the only other party that locks it is the
+ * expiry sweeper, which handles one line at a time, so commits of different carts never wait
+ * on each other. A line being committed is never replaced or released: changes to it wait until
+ * the commit has either sold it or handed it back to the cart.
+ * <p>
+ * Carts whose lines have all expired are kept for one more reservation period, so a checkout
+ * can still take their stock again, and are then dropped.
+ */
+public class StockLedger implements AutoCloseable {
+
+    /** Told whenever the available stock of a product changes. Called on the changing thread. */
+    @FunctionalInterface
+    public interface Listener {
+        void availableChanged(String productId, int available);
+    }
+
+    /**
+     * Outcome of a checkout.
+     *
+     * @param unavailable product ids that could not be committed; empty on success
+     */
+    public record CommitResult(boolean committed, Map<String, Integer> lines, List<String> unavailable) {
+    }
+
+    private enum State { ACTIVE, COMMITTING, COMMITTED, RELEASED }
+
+    private static final class Reservation {
+        final String productId;
+        int quantity;
+        long expiresAt;
+        State state = State.ACTIVE;
+
+        Reservation(String productId) {
+            this.productId = productId;
+        }
+    }
+
+    private final ConcurrentHashMap<String, AtomicInteger> available = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Reservation>> carts = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final long ttlNanos;
+    private final ScheduledExecutorService sweeper;
+
+    public StockLedger(Duration reservationTtl) {
+        this.ttlNanos = reservationTtl.toNanos();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-reservation-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, Math.min(1_000, reservationTtl.toMillis() / 4));
+        sweeper.scheduleWithFixedDelay(this::expireReservations, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the sellable stock of a product, e.g. when the catalogue is loaded or restocked.
+     * Stock that is currently reserved is not included.
+     */
+    public void setAvailable(String productId, int stock) {
+        counter(productId).set(stock);
+        fire(productId, stock);
+    }
+
+    /**
+     * Like {@link #setAvailable} but without telling the listeners, for bulk loads (e.g. an
+     * import of thousands of products) whose stock the caller already shows.
+     */
+    public void loadAvailable(String productId, int stock) {
+        counter(productId).set(stock);
+    }
+
+    public int available(String productId) {
+        AtomicInteger count = available.get(productId);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Sets how many units of a product a cart holds. Asking for more takes what is available,
+     * asking for less gives the difference back. Every call restarts the line's expiry.
+     *
+     * @return the quantity the cart now holds, possibly less than requested
+     */
+    public int reserve(String cartId, String productId, int quantity) {
+        if (quantity <= 0) {
+            release(cartId, productId);
+            return 0;
+        }
+        while (true) {
+            ConcurrentHashMap<String, Reservation> cart = carts.computeIfAbsent(cartId, id -> new ConcurrentHashMap<>());
+            Reservation line = cart.computeIfAbsent(productId, Reservation::new);
+            synchronized (line) {
+                awaitSettled(line);
+                if (line.state != State.ACTIVE) {
+                    // Expired or committed in the meantime: start a fresh line
+                    cart.remove(productId, line);
+                    continue;
+                }
+                if (carts.get(cartId) != cart) {
+                    // The cart was checked out or cleared while we were getting here
+                    continue;
+                }
+                int delta = quantity - line.quantity;
+                if (delta > 0) {
+                    line.quantity += take(productId, delta, true);
+                } else if (delta < 0) {
+                    give(productId, -delta);
+                    line.quantity = quantity;
+                }
+                line.expiresAt = System.nanoTime() + ttlNanos;
+                if (line.quantity == 0) {
+                    line.state = State.RELEASED;
+                    cart.remove(productId, line);
+                }
+                return line.quantity;
+            }
+        }
+    }
+
+    /**
+     * Keeps a cart's reservations alive, e.g. while the customer is still interacting with it.
+     */
+    public void touch(String cartId) {
+        ConcurrentHashMap<String, Reservation> cart = carts.get(cartId);
+        if (cart == null) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + ttlNanos;
+        for (Reservation line : cart.values()) {
+            synchronized (line) {
+                if (line.state == State.ACTIVE) {
+                    line.expiresAt = expiresAt;
+                }
+            }
+        }
+    }
+
+    public void release(String cartId, String productId) {
+        ConcurrentHashMap<String, Reservation> cart = carts.get(cartId);
+        if (cart == null) {
+            return;
+        }
+        Reservation line = cart.remove(productId);
+        if (line != null) {
+            releaseLine(line);
+        }
+    }
+
+    public void releaseCart(String cartId) {
+        ConcurrentHashMap<String, Reservation> cart = carts.remove(cartId);
+        if (cart != null) {
+            cart.values().forEach(this::releaseLine);
+        }
+    }
+
+    /**
+     * Turns a cart's reservations into a sale. Lines whose reservation expired are taken from
+     * the available stock again if possible. Either every line is committed or none is.
+     */
+    public CommitResult commit(String cartId) {
+        ConcurrentHashMap<String, Reservation> cart = carts.get(cartId);
+        if (cart == null || cart.isEmpty()) {
+            return new CommitResult(false, Map.of(), List.of());
+        }
+
+        List<Reservation> lines = new ArrayList<>(cart.values());
+        List<Reservation> locked = new ArrayList<>(lines.size());
+        List<String> unavailable = new ArrayList<>();
+        for (Reservation line : lines) {
+            synchronized (line) {
+                if (line.state == State.RELEASED && line.quantity > 0) {
+                    // Expired while the customer was deciding; try to take the stock again
+                    if (take(line.productId, line.quantity, false) == line.quantity) {
+                        line.state = State.ACTIVE;
+                    }
+                }
+                if (line.state == State.ACTIVE && line.quantity > 0) {
+                    line.state = State.COMMITTING;
+                    locked.add(line);
+                } else {
+                    unavailable.add(line.productId);
+                }
+            }
+        }
+
+        if (!unavailable.isEmpty()) {
+            for (Reservation line : locked) {
+                synchronized (line) {
+                    if (carts.get(cartId) == cart && cart.get(line.productId) == line) {
+                        line.state = State.ACTIVE;
+                        line.expiresAt = System.nanoTime() + ttlNanos;
+                    } else {
+                        // An expired line that was replaced or dropped while we took its stock
+                        // again; nobody else will give that stock back
+                        give(line.productId, line.quantity);
+                        line.state = State.RELEASED;
+                        line.quantity = 0;
+                    }
+                    line.notifyAll();
+                }
+            }
+            return new CommitResult(false, Map.of(), unavailable);
+        }
+
+        Map<String, Integer> committed = new LinkedHashMap<>();
+        for (Reservation line : locked) {
+            synchronized (line) {
+                line.state = State.COMMITTED;
+                committed.put(line.productId, line.quantity);
+                line.notifyAll();
+            }
+        }
+        carts.remove(cartId, cart);
+        // Lines added by a concurrent reserve() during the commit are not part of this sale
+        for (Reservation line : cart.values()) {
+            if (!locked.contains(line)) {
+                releaseLine(line);
+            }
+        }
+        return new CommitResult(true, committed, List.of());
+    }
+
+    /**
+     * Sells without a prior reservation: takes every line or none.
+     */
+    public boolean takeAll(Map<String, Integer> lines) {
+        Map<String, Integer> taken = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> line : lines.entrySet()) {
+            if (take(line.getKey(), line.getValue(), false) != line.getValue()) {
+                taken.forEach(this::give);
+                return false;
+            }
+            taken.put(line.getKey(), line.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Puts committed stock back, e.g. when an order could not be saved.
+     */
+    public void restock(String productId, int quantity) {
+        give(productId, quantity);
+    }
+
+    /** Units of a product currently held by carts. */
+    public int reserved(String productId) {
+        int total = 0;
+        for (ConcurrentHashMap<String, Reservation> cart : carts.values()) {
+            Reservation line = cart.get(productId);
+            if (line != null) {
+                synchronized (line) {
+                    if (line.state == State.ACTIVE || line.state == State.COMMITTING) {
+                        total += line.quantity;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /** Carts currently held, including expired ones not dropped yet. */
+    int cartCount() {
+        return carts.size();
+    }
+
+    void expireReservations() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, ConcurrentHashMap<String, Reservation>> cart : carts.entrySet()) {
+            boolean abandoned = true;
+            for (Reservation line : cart.getValue().values()) {
+                synchronized (line) {
+                    if (line.state == State.ACTIVE && line.expiresAt - now <= 0) {
+                        line.state = State.RELEASED;
+                        give(line.productId, line.quantity);
+                    }
+                    if (line.state != State.RELEASED || now - line.expiresAt < ttlNanos) {
+                        abandoned = false;
+                    }
+                }
+            }
+            if (abandoned && carts.remove(cart.getKey(), cart.getValue())) {
+                // A reserve() that got in after the check took stock for this cart; hand it back.
+                // Later ones notice that the cart is gone and start a new one.
+                cart.getValue().values().forEach(this::releaseLine);
+            }
+        }
+    }
+
+    /**
+     * Waits while a commit holds the line; it either sells the line or makes it active again.
+     * Called with the line's monitor held.
+     */
+    private static void awaitSettled(Reservation line) {
+        boolean interrupted = false;
+        while (line.state == State.COMMITTING) {
+            try {
+                line.wait();
+            } catch (InterruptedException e) {
+                // A commit takes microseconds; finish waiting and keep the interrupt
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void releaseLine(Reservation line) {
+        synchronized (line) {
+            awaitSettled(line);
+            if (line.state == State.ACTIVE) {
+                give(line.productId, line.quantity);
+            }
+            line.state = State.RELEASED;
+            line.quantity = 0;
+        }
+    }
+
+    /**
+     * Takes up to {@code quantity} units (or exactly {@code quantity}, or nothing, when
+     * partial is false).
+     *
+     * @return the units taken
+     */
+    private int take(String productId, int quantity, boolean partial) {
+        AtomicInteger count = available.get(productId);
+        if (count == null) {
+            return 0;
+        }
+        while (true) {
+            int current = count.get();
+            int granted = Math.min(current, quantity);
+            if (granted <= 0 || (!partial && granted < quantity)) {
+                return 0;
+            }
+            if (count.compareAndSet(current, current - granted)) {
+                fire(productId, current - granted);
+                return granted;
+            }
+        }
+    }
+
+    private void give(String productId, int quantity) {
+        if (quantity > 0) {
+            fire(productId, counter(productId).addAndGet(quantity));
+        }
+    }
+
+    private AtomicInteger counter(String productId) {
+        return available.computeIfAbsent(productId, id -> new AtomicInteger());
+    }
+
+    private void fire(String productId, int now) {
+        for (Listener l : listeners) {
+            l.availableChanged(productId, now);
+        }
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+}
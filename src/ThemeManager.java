@@ -1,9 +1,24 @@
+import javafx.css.PseudoClass;
 import javafx.scene.Scene;
 
+/**
+ * Dark and light themes.
+ * <p>
+ * Both themes live in one stylesheet that is added to a scene once. Its colors are looked-up
+ * colors defined on the root, and the light palette overrides them under the root's
+ * {@code :light} pseudo-class. A toggle only flips that pseudo-class, so JavaFX recomputes the
+ * colors that depend on it instead of reparsing and rematching the whole stylesheet.
+ * <p>
+ * The theme is kept per scene, so every window can have its own. New scenes start dark.
+ */
 public class ThemeManager {
 
     private static final ThemeManager instance = new ThemeManager();
-    private boolean darkMode = true; // Start in dark mode by default
+    private static final PseudoClass LIGHT = PseudoClass.getPseudoClass("light");
+    private static final String DARK_MODE_KEY = "jecrc.theme.dark";
+
+    // Stylesheet URL, looked up on the classpath once
+    private String stylesheet;
 
     private ThemeManager() {
         // Private constructor for singleton pattern
@@ -14,27 +29,45 @@ public class ThemeManager {
     }
 
     public void applyTheme(Scene scene) {
-        scene.getStylesheets().clear();
-
-        String cssFile = darkMode ? "/dark-theme.css" : "/light-theme.css";
+        String url;
         try {
-            var resource = getClass().getResource(cssFile);
-            if (resource == null) {
-                throw new IllegalArgumentException("CSS file not found: " + cssFile);
-            }
-            scene.getStylesheets().add(resource.toExternalForm());
+            url = stylesheet();
         } catch (Exception e) {
             System.err.println("Failed to apply theme: " + e.getMessage());
-            e.printStackTrace();
+            return;
+        }
+        if (!scene.getStylesheets().contains(url)) {
+            scene.getStylesheets().add(url);
+            // The theme belongs to the scene; carry it over when the scene gets a new root
+            scene.rootProperty().addListener((_, oldRoot, newRoot) -> {
+                oldRoot.pseudoClassStateChanged(LIGHT, false);
+                newRoot.pseudoClassStateChanged(LIGHT, !isDarkMode(scene));
+            });
         }
+        scene.getRoot().pseudoClassStateChanged(LIGHT, !isDarkMode(scene));
     }
 
     public void toggleTheme(Scene scene) {
-        darkMode = !darkMode;
+        setDarkMode(scene, !isDarkMode(scene));
+    }
+
+    public void setDarkMode(Scene scene, boolean darkMode) {
+        scene.getProperties().put(DARK_MODE_KEY, darkMode);
         applyTheme(scene);
     }
 
-    public boolean isDarkMode() {
-        return darkMode;
+    public boolean isDarkMode(Scene scene) {
+        return !Boolean.FALSE.equals(scene.getProperties().get(DARK_MODE_KEY));
+    }
+
+    private String stylesheet() {
+        if (stylesheet == null) {
+            var resource = getClass().getResource("/theme.css");
+            if (resource == null) {
+                throw new IllegalStateException("CSS file not found: /theme.css");
+            }
+            stylesheet = resource.toExternalForm();
+        }
+        return stylesheet;
     }
 }